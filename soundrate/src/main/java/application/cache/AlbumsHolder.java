@@ -1,57 +1,89 @@
 package application.cache;
 
 import application.model.CatalogAgent;
+import application.model.ThrottledDeezerClient;
 import deezer.model.Album;
-import org.apache.commons.lang3.tuple.MutablePair;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
-import java.time.Duration;
-import java.time.Instant;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Singleton
+@Startup
 public class AlbumsHolder {
 
-    // expressed in minutes
-    private static final int ENTRY_TTL_THRESHOLD = 5;
+    private static final int MAXIMUM_PARALLEL_LOADS = 8;
 
-    private static final Map<Long, Optional<MutablePair<Album, Instant>>> albumsMap = new ConcurrentHashMap<>();
+    private BoundedCache<Long, Album> albumsCache;
+    private CacheSnapshot<Album> albumSnapshot;
+    private int snapshotSize;
+    private Function<Long, Album> albumLoader;
 
     @Inject
     private CatalogAgent catalogAgent;
 
+    @Resource
+    private ManagedExecutorService executorService;
+
+    @PostConstruct
+    private void init() {
+        final CacheConfiguration configuration = CacheConfiguration.forType("album");
+        this.albumsCache = new BoundedCache<>(configuration,
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.Priority.REFRESH, this.executorService));
+        this.albumSnapshot = new CacheSnapshot<>("album", Album.class);
+        this.snapshotSize = configuration.getSnapshotSize();
+        if (this.snapshotSize > 0)
+            this.albumSnapshot.read(configuration.getExpireAfterWrite())
+                    .forEach((key, entry) -> this.albumsCache.put(key, entry.getValue(), entry.getWriteTime()));
+        this.albumLoader = this.catalogAgent::loadAlbum;
+    }
+
+    @Lock(LockType.READ)
     @Schedule(hour = "*", minute = "*/5", persistent = false)
     private void cleanUpCache() {
-        final Instant now = Instant.now();
-        AlbumsHolder.albumsMap.entrySet().removeIf(entry -> {
-            final Optional<MutablePair<Album, Instant>> optionalAlbumInstantPair = entry.getValue();
-            if (optionalAlbumInstantPair == null || !optionalAlbumInstantPair.isPresent())
-                return true;
-            return Duration.between(optionalAlbumInstantPair.get().getRight(), now)
-                    .toMinutes() >= AlbumsHolder.ENTRY_TTL_THRESHOLD;
-        });
+        this.albumsCache.cleanUp();
+    }
+
+    @PreDestroy
+    @Lock(LockType.READ)
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    private void checkpointCache() {
+        if (this.snapshotSize > 0)
+            this.albumSnapshot.write(this.albumsCache.hottestEntries(this.snapshotSize));
     }
 
     @Lock(LockType.READ)
     public Album getAlbum(@NotNull final Long albumId) {
-        final Optional<MutablePair<Album, Instant>> optionalAlbumInstantPair = AlbumsHolder.albumsMap.get(albumId);
-        if (optionalAlbumInstantPair != null && optionalAlbumInstantPair.isPresent()) {
-            final MutablePair<Album, Instant> albumInstantPair = optionalAlbumInstantPair.get();
-            albumInstantPair.setRight(Instant.now());
-            return albumInstantPair.getLeft();
-        }
-        final Album album = this.catalogAgent.getAlbum(albumId);
-        AlbumsHolder.albumsMap.put(albumId, album == null
-                ? Optional.empty()
-                : Optional.of(MutablePair.of(album, Instant.now())));
-        return album;
+        return this.albumsCache.get(albumId, this.albumLoader);
+    }
+
+    // missing albums are fetched in parallel on behalf of the caller priority class
+    @Lock(LockType.READ)
+    public Map<Long, Album> getAlbums(@NotNull final Collection<Long> albumIds) {
+        return this.albumsCache.getAll(albumIds, this.albumLoader,
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.getCurrentPriority(), this.executorService),
+                AlbumsHolder.MAXIMUM_PARALLEL_LOADS);
+    }
+
+    @Lock(LockType.READ)
+    public CacheStatistics getStatistics() {
+        return this.albumsCache.stats();
+    }
+
+    @Lock(LockType.READ)
+    public Map<Long, Long> getCoalescedLoads() {
+        return this.albumsCache.coalescedLoads();
     }
 
 }
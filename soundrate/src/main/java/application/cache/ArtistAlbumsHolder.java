@@ -1,64 +1,78 @@
 package application.cache;
 
 import application.model.CatalogAgent;
+import application.model.ThrottledDeezerClient;
 import deezer.model.Album;
 import deezer.model.Artist;
-import org.apache.commons.lang3.tuple.MutablePair;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
-import java.time.Duration;
-import java.time.Instant;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Singleton
+@Startup
 public class ArtistAlbumsHolder {
 
+    private static final Type ARTIST_ALBUMS_TYPE = new ArrayList<Album>() {
+    }.getClass().getGenericSuperclass();
 
-    // expressed in minutes
-    private static final int ENTRY_TTL_THRESHOLD = 5;
-
-    private static final Map<Artist, Optional<MutablePair<List<Album>, Instant>>> artistAlbumsMap =
-            new ConcurrentHashMap<>();
+    // keyed on the artist identifier, since the Deezer model objects do not provide a stable identity
+    private BoundedCache<Long, List<Album>> artistAlbumsCache;
+    private CacheSnapshot<List<Album>> artistAlbumsSnapshot;
+    private int snapshotSize;
+    private Function<Long, List<Album>> artistAlbumsLoader;
 
     @Inject
     private CatalogAgent catalogAgent;
 
+    @Resource
+    private ManagedExecutorService executorService;
+
+    @PostConstruct
+    private void init() {
+        final CacheConfiguration configuration = CacheConfiguration.forType("artistAlbums");
+        this.artistAlbumsCache = new BoundedCache<>(configuration,
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.Priority.REFRESH, this.executorService));
+        this.artistAlbumsSnapshot = new CacheSnapshot<>("artistAlbums", ArtistAlbumsHolder.ARTIST_ALBUMS_TYPE);
+        this.snapshotSize = configuration.getSnapshotSize();
+        if (this.snapshotSize > 0)
+            this.artistAlbumsSnapshot.read(configuration.getExpireAfterWrite())
+                    .forEach((key, entry) -> this.artistAlbumsCache.put(key, entry.getValue(), entry.getWriteTime()));
+        this.artistAlbumsLoader = this.catalogAgent::loadArtistAlbums;
+    }
+
+    @Lock(LockType.READ)
     @Schedule(hour = "*", minute = "*/5", persistent = false)
     private void cleanupCache() {
-        final Instant now = Instant.now();
-        ArtistAlbumsHolder.artistAlbumsMap.entrySet().removeIf(entry -> {
-            final Optional<MutablePair<List<Album>, Instant>> optionalArtistAlbumsInstantPair = entry.getValue();
-            if (optionalArtistAlbumsInstantPair == null || !optionalArtistAlbumsInstantPair.isPresent())
-                return true;
-            return Duration.between(optionalArtistAlbumsInstantPair.get().getRight(), now)
-                    .toMinutes() >= ArtistAlbumsHolder.ENTRY_TTL_THRESHOLD;
-        });
+        this.artistAlbumsCache.cleanUp();
+    }
+
+    @PreDestroy
+    @Lock(LockType.READ)
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    private void checkpointCache() {
+        if (this.snapshotSize > 0)
+            this.artistAlbumsSnapshot.write(this.artistAlbumsCache.hottestEntries(this.snapshotSize));
     }
 
     @Lock(LockType.READ)
     public List<Album> getArtistAlbums(@NotNull final Artist artist) {
-        final Optional<MutablePair<List<Album>, Instant>> optionalArtistAlbumsInstantPair =
-                ArtistAlbumsHolder.artistAlbumsMap.get(artist);
-        if (optionalArtistAlbumsInstantPair != null && optionalArtistAlbumsInstantPair.isPresent()) {
-            final MutablePair<List<Album>, Instant> artistAlbumsInstantPair = optionalArtistAlbumsInstantPair.get();
-            artistAlbumsInstantPair.setRight(Instant.now());
-            return artistAlbumsInstantPair.getLeft();
-        }
-        final List<Album> artistAlbums = this.catalogAgent.getArtistAlbums(artist);
-        ArtistAlbumsHolder.artistAlbumsMap.put(artist, artistAlbums == null
-                ? Optional.empty()
-                : Optional.of(MutablePair.of(artistAlbums, Instant.now())));
-        return artistAlbums;
+        return this.artistAlbumsCache.get(artist.getId(), this.artistAlbumsLoader);
     }
 
     @Lock(LockType.READ)
@@ -73,4 +87,14 @@ public class ArtistAlbumsHolder {
                 .collect(Collectors.toList());
     }
 
+    @Lock(LockType.READ)
+    public CacheStatistics getStatistics() {
+        return this.artistAlbumsCache.stats();
+    }
+
+    @Lock(LockType.READ)
+    public Map<Long, Long> getCoalescedLoads() {
+        return this.artistAlbumsCache.coalescedLoads();
+    }
+
 }
@@ -1,57 +1,78 @@
 package application.cache;
 
 import application.model.CatalogAgent;
+import application.model.ThrottledDeezerClient;
 import deezer.model.Artist;
-import org.apache.commons.lang3.tuple.MutablePair;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Singleton
+@Startup
 public class ArtistsHolder {
 
-    // expressed in minutes
-    private static final int ENTRY_TTL_THRESHOLD = 5;
-
-    private static final Map<Long, Optional<MutablePair<Artist, Instant>>> artistsMap = new ConcurrentHashMap<>();
+    private BoundedCache<Long, Artist> artistsCache;
+    private CacheSnapshot<Artist> artistSnapshot;
+    private int snapshotSize;
+    private Function<Long, Artist> artistLoader;
 
     @Inject
     private CatalogAgent catalogAgent;
 
+    @Resource
+    private ManagedExecutorService executorService;
+
+    @PostConstruct
+    private void init() {
+        final CacheConfiguration configuration = CacheConfiguration.forType("artist");
+        this.artistsCache = new BoundedCache<>(configuration,
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.Priority.REFRESH, this.executorService));
+        this.artistSnapshot = new CacheSnapshot<>("artist", Artist.class);
+        this.snapshotSize = configuration.getSnapshotSize();
+        if (this.snapshotSize > 0)
+            this.artistSnapshot.read(configuration.getExpireAfterWrite())
+                    .forEach((key, entry) -> this.artistsCache.put(key, entry.getValue(), entry.getWriteTime()));
+        this.artistLoader = this.catalogAgent::loadArtist;
+    }
+
+    @Lock(LockType.READ)
     @Schedule(hour = "*", minute = "*/5", persistent = false)
     private void cleanUpCache() {
-        final Instant now = Instant.now();
-        ArtistsHolder.artistsMap.entrySet().removeIf(entry -> {
-            final Optional<MutablePair<Artist, Instant>> optionalArtistInstantPair = entry.getValue();
-            if (optionalArtistInstantPair == null || !optionalArtistInstantPair.isPresent())
-                return true;
-            return Duration.between(optionalArtistInstantPair.get().getRight(), now)
-                    .toMinutes() >= ArtistsHolder.ENTRY_TTL_THRESHOLD;
-        });
+        this.artistsCache.cleanUp();
+    }
+
+    @PreDestroy
+    @Lock(LockType.READ)
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    private void checkpointCache() {
+        if (this.snapshotSize > 0)
+            this.artistSnapshot.write(this.artistsCache.hottestEntries(this.snapshotSize));
     }
 
     @Lock(LockType.READ)
     public Artist getArtist(@NotNull final Long artistId) {
-        final Optional<MutablePair<Artist, Instant>> optionalArtistInstantPair = ArtistsHolder.artistsMap.get(artistId);
-        if (optionalArtistInstantPair != null && optionalArtistInstantPair.isPresent()) {
-            final MutablePair<Artist, Instant> artistInstantPair = optionalArtistInstantPair.get();
-            artistInstantPair.setRight(Instant.now());
-            return artistInstantPair.getLeft();
-        }
-        final Artist artist = this.catalogAgent.getArtist(artistId);
-        ArtistsHolder.artistsMap.put(artistId, artist == null
-                ? Optional.empty()
-                : Optional.of(MutablePair.of(artist, Instant.now())));
-        return artist;
+        return this.artistsCache.get(artistId, this.artistLoader);
+    }
+
+    @Lock(LockType.READ)
+    public CacheStatistics getStatistics() {
+        return this.artistsCache.stats();
+    }
+
+    @Lock(LockType.READ)
+    public Map<Long, Long> getCoalescedLoads() {
+        return this.artistsCache.coalescedLoads();
     }
 
 }
@@ -0,0 +1,643 @@
+package application.cache;
+
+import application.cache.exceptions.CacheLoadingException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/*
+ * Size-bounded cache using a W-TinyLFU eviction policy.
+ * Entries weigh one unless a weigher is given, in which case the cache is bounded by the total weight of its entries
+ * and the maximum size is only used to size the frequency sketch.
+ * New entries are admitted into a small LRU window (1% of the capacity); entries leaving the window move into
+ * a segmented LRU main space split into a probation and a protected (80%) segment. When the cache is full the
+ * most recent probation entry competes with the least recent one, and the one with the lower estimated access
+ * frequency is evicted. Reads never block: the policy is updated only if the eviction lock is free, so under
+ * contention some accesses are simply not recorded.
+ * Concurrent misses on the same key performed through `get(key, loader)` are coalesced into a single load whose
+ * outcome, either a value or an exception, is shared by all the waiting callers.
+ * Keys whose loader returns null can be remembered as negative entries, held in a separate bounded cache with its
+ * own size and a write-based TTL, so that unknown keys do not reach the loader again until they expire.
+ * When refreshAfterWrite is configured, `get(key, loader)` keeps serving entries older than it while a single
+ * background load on the refresh executor replaces them; expireAfterWrite bounds how stale a served entry can be.
+ */
+public class BoundedCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int RETIRED = 3;
+
+    private static final double WINDOW_PERCENTAGE = 0.01;
+    private static final double PROTECTED_PERCENTAGE = 0.80;
+
+    private static final Boolean ABSENT = Boolean.TRUE;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightLoads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, LongAdder> coalescedLoads = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final BoundedCache<K, Boolean> negativeEntries;
+
+    private final ToIntFunction<? super V> weigher;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final long expireAfterAccessNanos;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+    private final Executor refreshExecutor;
+    private final long loadTimeoutNanos;
+
+    // guarded by evictionLock
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedSegment = new AccessOrderDeque<>();
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder negativeHitCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder refreshFailureCount = new LongAdder();
+
+    public BoundedCache(final CacheConfiguration configuration) {
+        this(configuration, ForkJoinPool.commonPool());
+    }
+
+    public BoundedCache(final CacheConfiguration configuration, final Executor refreshExecutor) {
+        this(configuration, refreshExecutor, null);
+    }
+
+    public BoundedCache(final CacheConfiguration configuration, final Executor refreshExecutor,
+                        final ToIntFunction<? super V> weigher) {
+        this.weigher = weigher;
+        this.maximumWeight = weigher == null ? configuration.getMaximumSize() : configuration.getMaximumWeight();
+        this.windowMaximum = Math.max(1, (long) (this.maximumWeight * BoundedCache.WINDOW_PERCENTAGE));
+        this.protectedMaximum = (long) ((this.maximumWeight - this.windowMaximum) * BoundedCache.PROTECTED_PERCENTAGE);
+        this.expireAfterAccessNanos = configuration.getExpireAfterAccess().toNanos();
+        this.expireAfterWriteNanos = configuration.getExpireAfterWrite() == null
+                ? Long.MAX_VALUE
+                : configuration.getExpireAfterWrite().toNanos();
+        this.refreshAfterWriteNanos = configuration.getRefreshAfterWrite() == null
+                ? Long.MAX_VALUE
+                : configuration.getRefreshAfterWrite().toNanos();
+        this.refreshExecutor = Objects.requireNonNull(refreshExecutor);
+        this.loadTimeoutNanos = configuration.getLoadTimeout().toNanos();
+        this.sketch = new FrequencySketch(configuration.getMaximumSize());
+        this.negativeEntries = configuration.getNegativeMaximumSize() == 0
+                ? null
+                : new BoundedCache<>(new CacheConfiguration()
+                .setMaximumSize(configuration.getNegativeMaximumSize())
+                .setExpireAfterAccess(configuration.getNegativeExpireAfterWrite())
+                .setExpireAfterWrite(configuration.getNegativeExpireAfterWrite()));
+    }
+
+    public V getIfPresent(final K key) {
+        final Node<K, V> node = this.data.get(key);
+        final long now = System.nanoTime();
+        if (node == null || this.hasExpired(node, now)) {
+            this.missCount.increment();
+            this.afterMiss(key);
+            return null;
+        }
+        return this.recordHit(node, now);
+    }
+
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        final Node<K, V> node = this.data.get(key);
+        final long now = System.nanoTime();
+        if (node != null && !this.hasExpired(node, now))
+            return this.recordHit(node, now, loader);
+        if (this.isAbsent(key)) {
+            this.negativeHitCount.increment();
+            return null;
+        }
+        this.missCount.increment();
+        this.afterMiss(key);
+        return this.load(key, loader);
+    }
+
+    // cached keys are resolved on the calling thread, missing keys are loaded by up to `parallelism` concurrent loads,
+    // the calling thread included; values follow the keys order, keys without a value are mapped to null
+    public Map<K, V> getAll(final Collection<? extends K> keys, final Function<? super K, ? extends V> loader,
+                            final Executor executor, final int parallelism) {
+        final Map<K, V> values = new LinkedHashMap<>();
+        final Queue<K> missingKeys = new ConcurrentLinkedQueue<>();
+        final long now = System.nanoTime();
+        for (K key : keys) {
+            if (values.containsKey(key))
+                continue;
+            final Node<K, V> node = this.data.get(key);
+            if (node != null && !this.hasExpired(node, now))
+                values.put(key, this.recordHit(node, now, loader));
+            else {
+                values.put(key, null);
+                missingKeys.add(key);
+            }
+        }
+        if (missingKeys.isEmpty())
+            return values;
+        final Map<K, V> loadedValues = new ConcurrentHashMap<>();
+        final Runnable loadMissingKeys = () -> {
+            K key;
+            while ((key = missingKeys.poll()) != null) {
+                final V value = this.get(key, loader);
+                if (value != null)
+                    loadedValues.put(key, value);
+            }
+        };
+        final List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (int i = 1; i < Math.min(parallelism, missingKeys.size()); i++)
+            loads.add(CompletableFuture.runAsync(loadMissingKeys, executor));
+        loadMissingKeys.run();
+        // every load is bounded by the loader itself, or by the load timeout when joining an in-flight load
+        for (CompletableFuture<Void> load : loads) {
+            try {
+                load.join();
+            } catch (CompletionException e) {
+                throw BoundedCache.unwrap(e.getCause());
+            }
+        }
+        values.replaceAll((key, value) -> value != null ? value : loadedValues.get(key));
+        return values;
+    }
+
+    public void put(final K key, final V value) {
+        this.put(key, value, true);
+    }
+
+    // restores an entry written at the given time, for instance from a snapshot, so that it expires and gets
+    // refreshed as if it had never left the cache; the restore counts as an access, entries whose time to live
+    // already elapsed are ignored
+    public void put(final K key, final V value, final Instant writeTime) {
+        final long now = System.nanoTime();
+        final long age = Math.max(0, Duration.between(writeTime, Instant.now()).toNanos());
+        if (age >= this.expireAfterWriteNanos)
+            return;
+        this.put(key, value, true, now - age, now);
+    }
+
+    // loaded values are not recorded as accesses, as the miss that triggered the load or the hit that triggered the
+    // refresh already was
+    private void put(final K key, final V value, final boolean recordAccess) {
+        final long now = System.nanoTime();
+        this.put(key, value, recordAccess, now, now);
+    }
+
+    private void put(final K key, final V value, final boolean recordAccess, final long writeTime,
+                     final long accessTime) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        final int weight = this.weigher == null ? 1 : Math.max(1, this.weigher.applyAsInt(value));
+        final Node<K, V> node = new Node<>(key, value, weight, writeTime, accessTime);
+        if (this.negativeEntries != null)
+            this.negativeEntries.invalidate(key);
+        this.evictionLock.lock();
+        try {
+            final Node<K, V> previous = this.data.put(key, node);
+            if (previous != null)
+                this.unlink(previous);
+            if (recordAccess)
+                this.sketch.increment(key);
+            node.queue = BoundedCache.WINDOW;
+            this.window.addLast(node);
+            this.windowWeight += weight;
+            this.evictEntries();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private V load(final K key, final Function<? super K, ? extends V> loader) {
+        final CompletableFuture<V> load = new CompletableFuture<>();
+        final CompletableFuture<V> inFlightLoad = this.inFlightLoads.putIfAbsent(key, load);
+        if (inFlightLoad != null) {
+            this.coalescedCount.increment();
+            this.coalescedLoads.computeIfAbsent(key, k -> new LongAdder()).increment();
+            return this.await(inFlightLoad);
+        }
+        try {
+            // another load may have completed between the cache lookup and the in-flight registration
+            final Node<K, V> node = this.data.get(key);
+            final V value = node != null && !this.hasExpired(node, System.nanoTime())
+                    ? node.value
+                    : this.isAbsentUnrecorded(key) ? null : this.loadValue(key, loader);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlightLoads.remove(key, load);
+        }
+    }
+
+    private V loadValue(final K key, final Function<? super K, ? extends V> loader) {
+        this.loadCount.increment();
+        final V value = loader.apply(key);
+        if (value != null)
+            this.put(key, value, false);
+        else if (this.negativeEntries != null) {
+            // a refresh may find that a cached entry no longer exists
+            this.invalidate(key);
+            this.negativeEntries.put(key, BoundedCache.ABSENT);
+        }
+        return value;
+    }
+
+    private void refresh(final K key, final Function<? super K, ? extends V> loader) {
+        final CompletableFuture<V> refresh = new CompletableFuture<>();
+        if (this.inFlightLoads.putIfAbsent(key, refresh) != null)
+            return;
+        this.refreshCount.increment();
+        try {
+            this.refreshExecutor.execute(() -> {
+                try {
+                    refresh.complete(this.loadValue(key, loader));
+                } catch (RuntimeException | Error e) {
+                    // the stale entry keeps being served until it expires, a new refresh is attempted meanwhile
+                    this.refreshFailureCount.increment();
+                    refresh.completeExceptionally(e);
+                } finally {
+                    this.inFlightLoads.remove(key, refresh);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.refreshFailureCount.increment();
+            refresh.completeExceptionally(e);
+            this.inFlightLoads.remove(key, refresh);
+        }
+    }
+
+    private V await(final CompletableFuture<V> load) {
+        try {
+            return load.get(this.loadTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw BoundedCache.unwrap(e.getCause());
+        } catch (TimeoutException e) {
+            throw new CacheLoadingException("Timed out waiting for an in-flight load", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheLoadingException(e);
+        }
+    }
+
+    private static RuntimeException unwrap(final Throwable cause) {
+        if (cause instanceof RuntimeException)
+            return (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return new CacheLoadingException(cause);
+    }
+
+    public void invalidate(final K key) {
+        if (this.negativeEntries != null)
+            this.negativeEntries.invalidate(key);
+        this.evictionLock.lock();
+        try {
+            final Node<K, V> node = this.data.remove(key);
+            if (node != null)
+                this.unlink(node);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        if (this.negativeEntries != null)
+            this.negativeEntries.invalidateAll();
+        this.evictionLock.lock();
+        try {
+            this.data.clear();
+            this.window.clear();
+            this.probation.clear();
+            this.protectedSegment.clear();
+            this.windowWeight = 0;
+            this.probationWeight = 0;
+            this.protectedWeight = 0;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public void cleanUp() {
+        final long now = System.nanoTime();
+        this.evictionLock.lock();
+        try {
+            this.expireEntries(this.window, now);
+            this.expireEntries(this.probation, now);
+            this.expireEntries(this.protectedSegment, now);
+        } finally {
+            this.evictionLock.unlock();
+        }
+        this.coalescedLoads.keySet().retainAll(this.data.keySet());
+        if (this.negativeEntries != null)
+            this.negativeEntries.cleanUp();
+    }
+
+    public long estimatedSize() {
+        return this.data.mappingCount();
+    }
+
+    public long weightedSize() {
+        this.evictionLock.lock();
+        try {
+            return this.windowWeight + this.probationWeight + this.protectedWeight;
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    public CacheStatistics stats() {
+        return new CacheStatistics(this.hitCount.sum(), this.missCount.sum(), this.evictionCount.sum(),
+                this.loadCount.sum(), this.coalescedCount.sum(), this.refreshCount.sum(),
+                this.refreshFailureCount.sum(), this.estimatedSize(),
+                this.negativeHitCount.sum(),
+                this.negativeEntries == null ? 0 : this.negativeEntries.evictionCount.sum(),
+                this.negativeEntries == null ? 0 : this.negativeEntries.estimatedSize());
+    }
+
+    // non expired entries with their write time, from the hottest to the coldest: protected first, then probation
+    // and finally the window
+    public Map<K, CacheSnapshot.Entry<V>> hottestEntries(final int limit) {
+        final Map<K, CacheSnapshot.Entry<V>> entries = new LinkedHashMap<>();
+        final long now = System.nanoTime();
+        final Instant instant = Instant.now();
+        this.evictionLock.lock();
+        try {
+            for (AccessOrderDeque<K, V> deque : Arrays.asList(this.protectedSegment, this.probation, this.window))
+                for (Node<K, V> node = deque.peekLast(); node != null && entries.size() < limit; node = node.previous)
+                    if (!this.hasExpired(node, now))
+                        entries.put(node.key,
+                                new CacheSnapshot.Entry<>(node.value, instant.minusNanos(now - node.writeTime)));
+        } finally {
+            this.evictionLock.unlock();
+        }
+        return entries;
+    }
+
+    // number of callers that joined an in-flight load instead of loading on their own, for each cached key
+    public Map<K, Long> coalescedLoads() {
+        final Map<K, Long> coalescedLoads = new HashMap<>();
+        this.coalescedLoads.forEach((key, count) -> coalescedLoads.put(key, count.sum()));
+        return Collections.unmodifiableMap(coalescedLoads);
+    }
+
+    private V recordHit(final Node<K, V> node, final long now, final Function<? super K, ? extends V> loader) {
+        final long refreshTime = node.refreshTime;
+        if (now - refreshTime >= this.refreshAfterWriteNanos && node.claimRefresh(refreshTime, now))
+            this.refresh(node.key, loader);
+        return this.recordHit(node, now);
+    }
+
+    private V recordHit(final Node<K, V> node, final long now) {
+        node.accessTime = now;
+        this.hitCount.increment();
+        this.afterHit(node);
+        return node.value;
+    }
+
+    private boolean isAbsent(final K key) {
+        return this.negativeEntries != null && this.negativeEntries.getIfPresent(key) != null;
+    }
+
+    // same as isAbsent, without affecting the negative entries statistics and eviction policy
+    private boolean isAbsentUnrecorded(final K key) {
+        if (this.negativeEntries == null)
+            return false;
+        final Node<K, Boolean> node = this.negativeEntries.data.get(key);
+        return node != null && !this.negativeEntries.hasExpired(node, System.nanoTime());
+    }
+
+    private boolean hasExpired(final Node<K, ?> node, final long now) {
+        return now - node.accessTime >= this.expireAfterAccessNanos
+                || now - node.writeTime >= this.expireAfterWriteNanos;
+    }
+
+    private void afterMiss(final K key) {
+        if (!this.evictionLock.tryLock())
+            return;
+        try {
+            this.sketch.increment(key);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private void afterHit(final Node<K, V> node) {
+        if (!this.evictionLock.tryLock())
+            return;
+        try {
+            this.sketch.increment(node.key);
+            switch (node.queue) {
+                case BoundedCache.WINDOW:
+                    this.window.moveToBack(node);
+                    break;
+                case BoundedCache.PROBATION:
+                    this.probation.remove(node);
+                    this.probationWeight -= node.weight;
+                    node.queue = BoundedCache.PROTECTED;
+                    this.protectedSegment.addLast(node);
+                    this.protectedWeight += node.weight;
+                    this.demoteFromProtected();
+                    break;
+                case BoundedCache.PROTECTED:
+                    this.protectedSegment.moveToBack(node);
+                    break;
+                default:
+                    // the entry was evicted or replaced concurrently
+                    break;
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (this.protectedWeight > this.protectedMaximum) {
+            final Node<K, V> demoted = this.protectedSegment.pollFirst();
+            this.protectedWeight -= demoted.weight;
+            demoted.queue = BoundedCache.PROBATION;
+            this.probation.addLast(demoted);
+            this.probationWeight += demoted.weight;
+        }
+    }
+
+    private void evictEntries() {
+        while (this.windowWeight > this.windowMaximum) {
+            final Node<K, V> candidate = this.window.pollFirst();
+            this.windowWeight -= candidate.weight;
+            candidate.queue = BoundedCache.PROBATION;
+            this.probation.addLast(candidate);
+            this.probationWeight += candidate.weight;
+        }
+        while (this.windowWeight + this.probationWeight + this.protectedWeight > this.maximumWeight) {
+            final Node<K, V> victim = this.probation.peekFirst();
+            final Node<K, V> candidate = this.probation.peekLast();
+            if (victim == null)
+                this.evict(this.protectedSegment.isEmpty() ? this.window.peekFirst() : this.protectedSegment.peekFirst());
+            else if (candidate == victim)
+                this.evict(victim);
+            else if (this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key))
+                this.evict(victim);
+            else
+                this.evict(candidate);
+        }
+    }
+
+    private void expireEntries(final AccessOrderDeque<K, V> deque, final long now) {
+        Node<K, V> node = deque.peekFirst();
+        while (node != null) {
+            final Node<K, V> next = node.next;
+            if (this.hasExpired(node, now)) {
+                this.data.remove(node.key, node);
+                this.unlink(node);
+            }
+            node = next;
+        }
+    }
+
+    private void evict(final Node<K, V> node) {
+        this.data.remove(node.key, node);
+        this.unlink(node);
+        this.evictionCount.increment();
+    }
+
+    private void unlink(final Node<K, V> node) {
+        switch (node.queue) {
+            case BoundedCache.WINDOW:
+                this.window.remove(node);
+                this.windowWeight -= node.weight;
+                break;
+            case BoundedCache.PROBATION:
+                this.probation.remove(node);
+                this.probationWeight -= node.weight;
+                break;
+            case BoundedCache.PROTECTED:
+                this.protectedSegment.remove(node);
+                this.protectedWeight -= node.weight;
+                break;
+            default:
+                break;
+        }
+        node.queue = BoundedCache.RETIRED;
+    }
+
+    private static final class Node<K, V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<Node> REFRESH_TIME =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "refreshTime");
+
+        private final K key;
+        private final V value;
+        private final int weight;
+        private final long writeTime;
+        private volatile long accessTime;
+        // time of the last refresh scheduled for this entry, or of its write
+        private volatile long refreshTime;
+
+        // guarded by evictionLock
+        private int queue = BoundedCache.RETIRED;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(final K key, final V value, final int weight, final long writeTime, final long accessTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+            this.accessTime = accessTime;
+            this.refreshTime = writeTime;
+        }
+
+        private boolean claimRefresh(final long refreshTime, final long now) {
+            return Node.REFRESH_TIME.compareAndSet(this, refreshTime, now);
+        }
+
+    }
+
+    private static final class AccessOrderDeque<K, V> {
+
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        private boolean isEmpty() {
+            return this.head == null;
+        }
+
+        private Node<K, V> peekFirst() {
+            return this.head;
+        }
+
+        private Node<K, V> peekLast() {
+            return this.tail;
+        }
+
+        private Node<K, V> pollFirst() {
+            final Node<K, V> first = this.head;
+            if (first != null)
+                this.remove(first);
+            return first;
+        }
+
+        private void addLast(final Node<K, V> node) {
+            node.previous = this.tail;
+            node.next = null;
+            if (this.tail == null)
+                this.head = node;
+            else
+                this.tail.next = node;
+            this.tail = node;
+        }
+
+        private void remove(final Node<K, V> node) {
+            if (node.previous == null)
+                this.head = node.next;
+            else
+                node.previous.next = node.next;
+            if (node.next == null)
+                this.tail = node.previous;
+            else
+                node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+        }
+
+        private void moveToBack(final Node<K, V> node) {
+            if (this.tail == node)
+                return;
+            this.remove(node);
+            this.addLast(node);
+        }
+
+        private void clear() {
+            Node<K, V> node = this.head;
+            while (node != null) {
+                final Node<K, V> next = node.next;
+                node.previous = null;
+                node.next = null;
+                node.queue = BoundedCache.RETIRED;
+                node = next;
+            }
+            this.head = null;
+            this.tail = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+package application.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.StringJoiner;
+
+public class CacheConfiguration {
+
+    private static final String PROPERTIES_FILE = "cache.properties";
+
+    private static final Properties properties = new Properties();
+
+    static {
+        try (InputStream inputStream =
+                     CacheConfiguration.class.getClassLoader().getResourceAsStream(CacheConfiguration.PROPERTIES_FILE)) {
+            if (inputStream != null)
+                CacheConfiguration.properties.load(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long maximumSize = 10_000;
+    private long maximumWeight = 10_000;
+    private Duration expireAfterAccess = Duration.ofMinutes(5);
+    private Duration expireAfterWrite;
+    private Duration refreshAfterWrite;
+    private Duration loadTimeout = Duration.ofSeconds(10);
+    private long negativeMaximumSize;
+    private Duration negativeExpireAfterWrite = Duration.ofMinutes(1);
+    private int snapshotSize;
+
+    public static CacheConfiguration forType(final String type) {
+        final CacheConfiguration configuration = new CacheConfiguration();
+        final String maximumSize = CacheConfiguration.properties.getProperty(type + ".maximumSize");
+        if (maximumSize != null)
+            configuration.setMaximumSize(Long.parseLong(maximumSize.trim()));
+        final String maximumWeight = CacheConfiguration.properties.getProperty(type + ".maximumWeight");
+        if (maximumWeight != null)
+            configuration.setMaximumWeight(Long.parseLong(maximumWeight.trim()));
+        // expressed in minutes
+        final String expireAfterAccess = CacheConfiguration.properties.getProperty(type + ".expireAfterAccess");
+        if (expireAfterAccess != null)
+            configuration.setExpireAfterAccess(Duration.ofMinutes(Long.parseLong(expireAfterAccess.trim())));
+        // expressed in minutes
+        final String expireAfterWrite = CacheConfiguration.properties.getProperty(type + ".expireAfterWrite");
+        if (expireAfterWrite != null)
+            configuration.setExpireAfterWrite(Duration.ofMinutes(Long.parseLong(expireAfterWrite.trim())));
+        // expressed in minutes
+        final String refreshAfterWrite = CacheConfiguration.properties.getProperty(type + ".refreshAfterWrite");
+        if (refreshAfterWrite != null)
+            configuration.setRefreshAfterWrite(Duration.ofMinutes(Long.parseLong(refreshAfterWrite.trim())));
+        // expressed in seconds
+        final String loadTimeout = CacheConfiguration.properties.getProperty(type + ".loadTimeout");
+        if (loadTimeout != null)
+            configuration.setLoadTimeout(Duration.ofSeconds(Long.parseLong(loadTimeout.trim())));
+        final String negativeMaximumSize = CacheConfiguration.properties.getProperty(type + ".negative.maximumSize");
+        if (negativeMaximumSize != null)
+            configuration.setNegativeMaximumSize(Long.parseLong(negativeMaximumSize.trim()));
+        // expressed in seconds
+        final String negativeExpireAfterWrite =
+                CacheConfiguration.properties.getProperty(type + ".negative.expireAfterWrite");
+        if (negativeExpireAfterWrite != null)
+            configuration.setNegativeExpireAfterWrite
+                    (Duration.ofSeconds(Long.parseLong(negativeExpireAfterWrite.trim())));
+        final String snapshotSize = CacheConfiguration.properties.getProperty(type + ".snapshotSize");
+        if (snapshotSize != null)
+            configuration.setSnapshotSize(Integer.parseInt(snapshotSize.trim()));
+        return configuration;
+    }
+
+    public long getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    public CacheConfiguration setMaximumSize(long maximumSize) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("maximumSize must be positive");
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    public long getMaximumWeight() {
+        return this.maximumWeight;
+    }
+
+    // only applies to caches given a weigher
+    public CacheConfiguration setMaximumWeight(long maximumWeight) {
+        if (maximumWeight < 1)
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    public Duration getExpireAfterAccess() {
+        return this.expireAfterAccess;
+    }
+
+    public CacheConfiguration setExpireAfterAccess(Duration expireAfterAccess) {
+        if (expireAfterAccess == null || expireAfterAccess.isNegative() || expireAfterAccess.isZero())
+            throw new IllegalArgumentException("expireAfterAccess must be positive");
+        this.expireAfterAccess = expireAfterAccess;
+        return this;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return this.expireAfterWrite;
+    }
+
+    public CacheConfiguration setExpireAfterWrite(Duration expireAfterWrite) {
+        if (expireAfterWrite != null && (expireAfterWrite.isNegative() || expireAfterWrite.isZero()))
+            throw new IllegalArgumentException("expireAfterWrite must be positive");
+        this.expireAfterWrite = expireAfterWrite;
+        return this;
+    }
+
+    public Duration getRefreshAfterWrite() {
+        return this.refreshAfterWrite;
+    }
+
+    public CacheConfiguration setRefreshAfterWrite(Duration refreshAfterWrite) {
+        if (refreshAfterWrite != null && (refreshAfterWrite.isNegative() || refreshAfterWrite.isZero()))
+            throw new IllegalArgumentException("refreshAfterWrite must be positive");
+        this.refreshAfterWrite = refreshAfterWrite;
+        return this;
+    }
+
+    public Duration getLoadTimeout() {
+        return this.loadTimeout;
+    }
+
+    public CacheConfiguration setLoadTimeout(Duration loadTimeout) {
+        if (loadTimeout == null || loadTimeout.isNegative() || loadTimeout.isZero())
+            throw new IllegalArgumentException("loadTimeout must be positive");
+        this.loadTimeout = loadTimeout;
+        return this;
+    }
+
+    public long getNegativeMaximumSize() {
+        return this.negativeMaximumSize;
+    }
+
+    // zero disables negative caching
+    public CacheConfiguration setNegativeMaximumSize(long negativeMaximumSize) {
+        if (negativeMaximumSize < 0)
+            throw new IllegalArgumentException("negativeMaximumSize must not be negative");
+        this.negativeMaximumSize = negativeMaximumSize;
+        return this;
+    }
+
+    public Duration getNegativeExpireAfterWrite() {
+        return this.negativeExpireAfterWrite;
+    }
+
+    public CacheConfiguration setNegativeExpireAfterWrite(Duration negativeExpireAfterWrite) {
+        if (negativeExpireAfterWrite == null || negativeExpireAfterWrite.isNegative()
+                || negativeExpireAfterWrite.isZero())
+            throw new IllegalArgumentException("negativeExpireAfterWrite must be positive");
+        this.negativeExpireAfterWrite = negativeExpireAfterWrite;
+        return this;
+    }
+
+    public int getSnapshotSize() {
+        return this.snapshotSize;
+    }
+
+    // zero disables snapshots
+    public CacheConfiguration setSnapshotSize(int snapshotSize) {
+        if (snapshotSize < 0)
+            throw new IllegalArgumentException("snapshotSize must not be negative");
+        this.snapshotSize = snapshotSize;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", CacheConfiguration.class.getSimpleName() + "{", "}")
+                .add("maximumSize=" + this.maximumSize)
+                .add("maximumWeight=" + this.maximumWeight)
+                .add("expireAfterAccess=" + this.expireAfterAccess)
+                .add("expireAfterWrite=" + this.expireAfterWrite)
+                .add("refreshAfterWrite=" + this.refreshAfterWrite)
+                .add("loadTimeout=" + this.loadTimeout)
+                .add("negativeMaximumSize=" + this.negativeMaximumSize)
+                .add("negativeExpireAfterWrite=" + this.negativeExpireAfterWrite)
+                .add("snapshotSize=" + this.snapshotSize)
+                .toString();
+    }
+
+}
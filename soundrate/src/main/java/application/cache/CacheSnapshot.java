@@ -0,0 +1,160 @@
+package application.cache;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Binary checkpoint of the hottest entries of a catalog cache, used to warm it up across restarts.
+ * The file starts with a header made of a magic number, the format version, the creation time and the entries
+ * count, followed by the entries, each one being its key, its write time and the length-prefixed JSON encoding of
+ * its value. Write times are restored along with the values, so that entries expire and get refreshed on schedule.
+ * Snapshots written with another format version, older than the given maximum age or unreadable are discarded.
+ * Files are written to a temporary file first and then atomically moved, so readers never see a partial snapshot.
+ */
+public class CacheSnapshot<V> {
+
+    private static final int MAGIC = 0x534e4150;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private static final Logger logger = Logger.getLogger(CacheSnapshot.class.getSimpleName());
+
+    private final Path file;
+    private final Type valueType;
+
+    public CacheSnapshot(final String type, final Type valueType) {
+        this.file = CacheSnapshot.snapshotsDirectory().resolve(type + ".snapshot");
+        this.valueType = valueType;
+    }
+
+    // the TomEE work directory when running in the container, the temporary directory otherwise
+    private static Path snapshotsDirectory() {
+        final String catalinaBase = System.getProperty("catalina.base");
+        return catalinaBase == null
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "soundrate", "cache")
+                : Paths.get(catalinaBase, "work", "soundrate", "cache");
+    }
+
+    public Map<Long, Entry<V>> read(final Duration maximumAge) {
+        if (!Files.isRegularFile(this.file))
+            return Collections.emptyMap();
+        Map<Long, Entry<V>> entries;
+        try {
+            entries = this.readEntries(maximumAge);
+        } catch (Exception e) {
+            // a corrupted snapshot is simply ignored, the cache warms up through regular loads
+            CacheSnapshot.logger.log(Level.WARNING, "Discarding unreadable cache snapshot " + this.file, e);
+            entries = null;
+        }
+        if (entries == null) {
+            this.discard();
+            return Collections.emptyMap();
+        }
+        return entries;
+    }
+
+    // returns null if the snapshot must be discarded
+    private Map<Long, Entry<V>> readEntries(final Duration maximumAge) throws Exception {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ);
+             Jsonb jsonb = JsonbBuilder.create()) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < CacheSnapshot.HEADER_SIZE
+                    || buffer.getInt() != CacheSnapshot.MAGIC
+                    || buffer.getInt() != CacheSnapshot.FORMAT_VERSION)
+                return null;
+            final long creationTime = buffer.getLong();
+            if (maximumAge != null && System.currentTimeMillis() - creationTime > maximumAge.toMillis())
+                return null;
+            final int count = buffer.getInt();
+            final Map<Long, Entry<V>> entries = new LinkedHashMap<>();
+            byte[] value = new byte[4096];
+            for (int i = 0; i < count; i++) {
+                final long key = buffer.getLong();
+                final Instant writeTime = Instant.ofEpochMilli(buffer.getLong());
+                final int length = buffer.getInt();
+                if (length > value.length)
+                    value = new byte[length];
+                buffer.get(value, 0, length);
+                entries.put(key, new Entry<>(
+                        jsonb.fromJson(new String(value, 0, length, StandardCharsets.UTF_8), this.valueType),
+                        writeTime));
+            }
+            return entries;
+        }
+    }
+
+    public void write(final Map<Long, Entry<V>> entries) {
+        try {
+            Files.createDirectories(this.file.getParent());
+            final Path temporaryFile =
+                    Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+            try (DataOutputStream outputStream =
+                         new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)));
+                 Jsonb jsonb = JsonbBuilder.create()) {
+                outputStream.writeInt(CacheSnapshot.MAGIC);
+                outputStream.writeInt(CacheSnapshot.FORMAT_VERSION);
+                outputStream.writeLong(System.currentTimeMillis());
+                outputStream.writeInt(entries.size());
+                for (Map.Entry<Long, Entry<V>> entry : entries.entrySet()) {
+                    final byte[] value =
+                            jsonb.toJson(entry.getValue().getValue(), this.valueType).getBytes(StandardCharsets.UTF_8);
+                    outputStream.writeLong(entry.getKey());
+                    outputStream.writeLong(entry.getValue().getWriteTime().toEpochMilli());
+                    outputStream.writeInt(value.length);
+                    outputStream.write(value);
+                }
+            } catch (Exception e) {
+                Files.deleteIfExists(temporaryFile);
+                throw e;
+            }
+            Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            // checkpoints are best effort, a failed one leaves the previous snapshot in place
+            CacheSnapshot.logger.log(Level.WARNING, "Could not write cache snapshot " + this.file, e);
+        }
+    }
+
+    private void discard() {
+        try {
+            Files.deleteIfExists(this.file);
+        } catch (IOException e) {
+            CacheSnapshot.logger.log(Level.WARNING, "Could not discard cache snapshot " + this.file, e);
+        }
+    }
+
+    public static final class Entry<V> {
+
+        private final V value;
+        private final Instant writeTime;
+
+        public Entry(final V value, final Instant writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+
+        public V getValue() {
+            return this.value;
+        }
+
+        public Instant getWriteTime() {
+            return this.writeTime;
+        }
+
+    }
+
+}
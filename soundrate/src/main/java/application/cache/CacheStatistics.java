@@ -0,0 +1,102 @@
+package application.cache;
+
+import java.util.StringJoiner;
+
+public class CacheStatistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long loadCount;
+    private final long coalescedCount;
+    private final long refreshCount;
+    private final long refreshFailureCount;
+    private final long estimatedSize;
+    private final long negativeHitCount;
+    private final long negativeEvictionCount;
+    private final long negativeEstimatedSize;
+
+    CacheStatistics(final long hitCount, final long missCount, final long evictionCount,
+                    final long loadCount, final long coalescedCount, final long refreshCount,
+                    final long refreshFailureCount, final long estimatedSize,
+                    final long negativeHitCount, final long negativeEvictionCount, final long negativeEstimatedSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadCount = loadCount;
+        this.coalescedCount = coalescedCount;
+        this.refreshCount = refreshCount;
+        this.refreshFailureCount = refreshFailureCount;
+        this.estimatedSize = estimatedSize;
+        this.negativeHitCount = negativeHitCount;
+        this.negativeEvictionCount = negativeEvictionCount;
+        this.negativeEstimatedSize = negativeEstimatedSize;
+    }
+
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    public long getLoadCount() {
+        return this.loadCount;
+    }
+
+    public long getCoalescedCount() {
+        return this.coalescedCount;
+    }
+
+    public long getRefreshCount() {
+        return this.refreshCount;
+    }
+
+    public long getRefreshFailureCount() {
+        return this.refreshFailureCount;
+    }
+
+    public long getEstimatedSize() {
+        return this.estimatedSize;
+    }
+
+    public long getNegativeHitCount() {
+        return this.negativeHitCount;
+    }
+
+    public long getNegativeEvictionCount() {
+        return this.negativeEvictionCount;
+    }
+
+    public long getNegativeEstimatedSize() {
+        return this.negativeEstimatedSize;
+    }
+
+    public double getHitRate() {
+        final long requestCount = this.hitCount + this.missCount;
+        return requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", CacheStatistics.class.getSimpleName() + "{", "}")
+                .add("hitCount=" + this.hitCount)
+                .add("missCount=" + this.missCount)
+                .add("evictionCount=" + this.evictionCount)
+                .add("loadCount=" + this.loadCount)
+                .add("coalescedCount=" + this.coalescedCount)
+                .add("refreshCount=" + this.refreshCount)
+                .add("refreshFailureCount=" + this.refreshFailureCount)
+                .add("estimatedSize=" + this.estimatedSize)
+                .add("negativeHitCount=" + this.negativeHitCount)
+                .add("negativeEvictionCount=" + this.negativeEvictionCount)
+                .add("negativeEstimatedSize=" + this.negativeEstimatedSize)
+                .toString();
+    }
+
+}
@@ -0,0 +1,87 @@
+package application.cache;
+
+/*
+ * 4-bit Count-Min sketch used to estimate the popularity of keys within a time window.
+ * Each table slot packs sixteen 4-bit counters; every key maps to four counters in distinct slots
+ * and its frequency is the minimum among them. Once the number of recorded increments reaches
+ * the sample size all counters are halved, so that the sketch ages out stale popularity.
+ * Not thread-safe, callers must guard it with the cache eviction lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    FrequencySketch(final long maximumSize) {
+        final int capacity = (int) Math.max(1, Math.min(maximumSize, Integer.MAX_VALUE >>> 1));
+        this.table = new long[FrequencySketch.ceilingPowerOfTwo(capacity)];
+        this.tableMask = this.table.length - 1;
+        this.sampleSize = capacity <= Integer.MAX_VALUE / 10 ? capacity * 10 : Integer.MAX_VALUE;
+    }
+
+    int frequency(final Object key) {
+        final int hash = FrequencySketch.spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final int index = this.indexOf(hash, i);
+            final int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(final Object key) {
+        final int hash = FrequencySketch.spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+            added |= this.incrementAt(this.indexOf(hash, i), start + i);
+        if (added && ++this.size == this.sampleSize)
+            this.reset();
+    }
+
+    private boolean incrementAt(final int index, final int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int oddCounters = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            oddCounters += Long.bitCount(this.table[i] & FrequencySketch.ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & FrequencySketch.RESET_MASK;
+        }
+        this.size = (this.size >>> 1) - (oddCounters >>> 2);
+    }
+
+    private int indexOf(final int hash, final int depth) {
+        long index = (hash + FrequencySketch.SEEDS[depth]) * FrequencySketch.SEEDS[depth];
+        index += index >>> 32;
+        return ((int) index) & this.tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    private static int ceilingPowerOfTwo(final int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+}
@@ -1,57 +1,78 @@
 package application.cache;
 
 import application.model.CatalogAgent;
+import application.model.ThrottledDeezerClient;
 import deezer.model.Genre;
-import org.apache.commons.lang3.tuple.MutablePair;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Singleton
+@Startup
 public class GenresHolder {
 
-    // expressed in minutes
-    private static final int ENTRY_TTL_THRESHOLD = 5;
-
-    private static final Map<Long, Optional<MutablePair<Genre, Instant>>> genresMap = new ConcurrentHashMap<>();
+    private BoundedCache<Long, Genre> genresCache;
+    private CacheSnapshot<Genre> genreSnapshot;
+    private int snapshotSize;
+    private Function<Long, Genre> genreLoader;
 
     @Inject
     private CatalogAgent catalogAgent;
 
+    @Resource
+    private ManagedExecutorService executorService;
+
+    @PostConstruct
+    private void init() {
+        final CacheConfiguration configuration = CacheConfiguration.forType("genre");
+        this.genresCache = new BoundedCache<>(configuration,
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.Priority.REFRESH, this.executorService));
+        this.genreSnapshot = new CacheSnapshot<>("genre", Genre.class);
+        this.snapshotSize = configuration.getSnapshotSize();
+        if (this.snapshotSize > 0)
+            this.genreSnapshot.read(configuration.getExpireAfterWrite())
+                    .forEach((key, entry) -> this.genresCache.put(key, entry.getValue(), entry.getWriteTime()));
+        this.genreLoader = this.catalogAgent::loadGenre;
+    }
+
+    @Lock(LockType.READ)
     @Schedule(hour = "*", minute = "*/5", persistent = false)
-    private void cleanupCache() {
-        final Instant now = Instant.now();
-        GenresHolder.genresMap.entrySet().removeIf(entry -> {
-            final Optional<MutablePair<Genre, Instant>> optionalGenreInstantPair = entry.getValue();
-            if (optionalGenreInstantPair == null || !optionalGenreInstantPair.isPresent())
-                return true;
-            return Duration.between(optionalGenreInstantPair.get().getRight(), now)
-                    .toMinutes() >= GenresHolder.ENTRY_TTL_THRESHOLD;
-        });
+    private void cleanUpCache() {
+        this.genresCache.cleanUp();
+    }
+
+    @PreDestroy
+    @Lock(LockType.READ)
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    private void checkpointCache() {
+        if (this.snapshotSize > 0)
+            this.genreSnapshot.write(this.genresCache.hottestEntries(this.snapshotSize));
     }
 
     @Lock(LockType.READ)
     public Genre getGenre(@NotNull final Long genreId) {
-        final Optional<MutablePair<Genre, Instant>> optionalGenreInstantPair = GenresHolder.genresMap.get(genreId);
-        if (optionalGenreInstantPair != null && optionalGenreInstantPair.isPresent()) {
-            final MutablePair<Genre, Instant> genreInstantPair = optionalGenreInstantPair.get();
-            genreInstantPair.setRight(Instant.now());
-            return genreInstantPair.getLeft();
-        }
-        final Genre genre = this.catalogAgent.getGenre(genreId);
-        GenresHolder.genresMap.put(genreId, genre == null
-                ? Optional.empty()
-                : Optional.of(MutablePair.of(genre, Instant.now())));
-        return genre;
+        return this.genresCache.get(genreId, this.genreLoader);
+    }
+
+    @Lock(LockType.READ)
+    public CacheStatistics getStatistics() {
+        return this.genresCache.stats();
+    }
+
+    @Lock(LockType.READ)
+    public Map<Long, Long> getCoalescedLoads() {
+        return this.genresCache.coalescedLoads();
     }
 
 }
@@ -0,0 +1,114 @@
+package application.cache;
+
+import application.model.CatalogAgent;
+import application.model.ThrottledDeezerClient;
+import deezer.model.Album;
+import deezer.model.Artist;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/*
+ * Full search results are cached once per normalized query, pages are served as views of them.
+ * The caches are bounded by an estimate of the results size in bytes, since the number of results varies widely.
+ */
+@Singleton
+public class SearchResultsHolder {
+
+    private static final int ESTIMATED_ALBUM_BYTES = 2048;
+    private static final int ESTIMATED_ARTIST_BYTES = 512;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    private BoundedCache<String, List<Album>> albumsSearchCache;
+    private BoundedCache<String, List<Artist>> artistsSearchCache;
+
+    @Inject
+    private CatalogAgent catalogAgent;
+
+    @Resource
+    private ManagedExecutorService executorService;
+
+    @PostConstruct
+    private void init() {
+        this.albumsSearchCache = new BoundedCache<>(CacheConfiguration.forType("albumsSearch"),
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.Priority.REFRESH, this.executorService),
+                albums -> SearchResultsHolder.estimateWeight(albums, SearchResultsHolder.ESTIMATED_ALBUM_BYTES));
+        this.artistsSearchCache = new BoundedCache<>(CacheConfiguration.forType("artistsSearch"),
+                ThrottledDeezerClient.withPriority(ThrottledDeezerClient.Priority.REFRESH, this.executorService),
+                artists -> SearchResultsHolder.estimateWeight(artists, SearchResultsHolder.ESTIMATED_ARTIST_BYTES));
+    }
+
+    private static int estimateWeight(final List<?> results, final int estimatedResultBytes) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) results.size() * estimatedResultBytes);
+    }
+
+    // case, diacritics and whitespaces insensitive
+    static String normalizeQuery(final String query) {
+        final String decomposedQuery = Normalizer.normalize(query, Normalizer.Form.NFD);
+        final String foldedQuery = SearchResultsHolder.DIACRITICS.matcher(decomposedQuery).replaceAll("");
+        return SearchResultsHolder.WHITESPACES.matcher(foldedQuery).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static <T> List<T> slice(final List<T> results, final int index, final int limit) {
+        if (results == null || results.isEmpty())
+            return null;
+        final int fromIndex = Math.min(index, results.size());
+        return results.subList(fromIndex, (int) Math.min((long) fromIndex + limit, results.size()));
+    }
+
+    @Lock(LockType.READ)
+    @Schedule(hour = "*", minute = "*/5", persistent = false)
+    private void cleanUpCache() {
+        this.albumsSearchCache.cleanUp();
+        this.artistsSearchCache.cleanUp();
+    }
+
+    @Lock(LockType.READ)
+    public List<Album> searchAlbums(@NotNull final String query) {
+        return this.albumsSearchCache.get(SearchResultsHolder.normalizeQuery(query),
+                normalizedQuery -> this.catalogAgent.loadAlbumsSearchResults(query));
+    }
+
+    @Lock(LockType.READ)
+    public List<Album> searchAlbums
+            (@NotNull final String query, @NotNull @Min(0) final Integer index, @NotNull @Min(1) final Integer limit) {
+        return SearchResultsHolder.slice(this.searchAlbums(query), index, limit);
+    }
+
+    @Lock(LockType.READ)
+    public List<Artist> searchArtists(@NotNull final String query) {
+        return this.artistsSearchCache.get(SearchResultsHolder.normalizeQuery(query),
+                normalizedQuery -> this.catalogAgent.loadArtistsSearchResults(query));
+    }
+
+    @Lock(LockType.READ)
+    public List<Artist> searchArtists
+            (@NotNull final String query, @NotNull @Min(0) final Integer index, @NotNull @Min(1) final Integer limit) {
+        return SearchResultsHolder.slice(this.searchArtists(query), index, limit);
+    }
+
+    @Lock(LockType.READ)
+    public CacheStatistics getAlbumsSearchStatistics() {
+        return this.albumsSearchCache.stats();
+    }
+
+    @Lock(LockType.READ)
+    public CacheStatistics getArtistsSearchStatistics() {
+        return this.artistsSearchCache.stats();
+    }
+
+}
@@ -1,47 +1,86 @@
 package application.cache;
 
 import application.model.CatalogAgent;
+import application.model.ThrottledDeezerClient;
 import deezer.model.Album;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/*
+ * The chart is replaced as a whole by an immutable list, so readers never lock and can be handed views of it.
+ * Refreshes run in background and a failed or empty refresh keeps the last good chart in place.
+ */
 @Singleton
+@Startup
 public class TopAlbumsHolder {
 
-    private static List<Album> topAlbums;
+    private static final Logger logger = Logger.getLogger(TopAlbumsHolder.class.getSimpleName());
+
+    private final AtomicReference<List<Album>> topAlbums = new AtomicReference<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
 
     @Inject
     private CatalogAgent catalogAgent;
 
-    // @fixme could fail at startup if disconnected or API offline
+    @Resource
+    private ManagedExecutorService executorService;
+
     @PostConstruct
+    private void init() {
+        this.executorService.execute(this::refreshTopAlbums);
+    }
+
+    @Lock(LockType.READ)
     @Schedule(hour = "*", minute = "*/30", persistent = false)
-    private void clearCache() {
-        TopAlbumsHolder.topAlbums = this.catalogAgent.getTopAlbums();
+    private void refreshCache() {
+        this.refreshTopAlbums();
+    }
+
+    private void refreshTopAlbums() {
+        if (!this.refreshing.compareAndSet(false, true))
+            return;
+        try {
+            final List<Album> topAlbums = ThrottledDeezerClient.callWithPriority
+                    (ThrottledDeezerClient.Priority.REFRESH, this.catalogAgent::loadTopAlbums);
+            if (topAlbums != null && !topAlbums.isEmpty())
+                this.topAlbums.set(Collections.unmodifiableList(new ArrayList<>(topAlbums)));
+        } catch (RuntimeException e) {
+            TopAlbumsHolder.logger.log(Level.WARNING, "Could not refresh the top albums, keeping the last chart", e);
+        } finally {
+            this.refreshing.set(false);
+        }
     }
 
+    // null until a chart has been loaded
     @Lock(LockType.READ)
     public List<Album> getTopAlbums() {
-        return TopAlbumsHolder.topAlbums;
+        return this.topAlbums.get();
     }
 
     @Lock(LockType.READ)
     public List<Album> getTopAlbums(@NotNull @Min(0) final Integer index, @NotNull @Min(1) final Integer limit) {
-        if (TopAlbumsHolder.topAlbums == null || TopAlbumsHolder.topAlbums.isEmpty())
+        final List<Album> topAlbums = this.topAlbums.get();
+        // same as `CatalogAgent#getTopAlbums`, an empty page is null
+        if (topAlbums == null || index >= topAlbums.size())
             return null;
-        return TopAlbumsHolder.topAlbums.stream()
-                .skip(index)
-                .limit(limit)
-                .collect(Collectors.toList());
+        return topAlbums.subList(index, (int) Math.min((long) index + limit, topAlbums.size()));
     }
 
 }
@@ -0,0 +1,29 @@
+package application.cache.exceptions;
+
+import javax.ejb.ApplicationException;
+
+@ApplicationException
+public class CacheLoadingException extends RuntimeException {
+
+    public CacheLoadingException() {
+        super();
+    }
+
+    public CacheLoadingException(String message) {
+        super(message);
+    }
+
+    public CacheLoadingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    protected CacheLoadingException
+            (String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    public CacheLoadingException(Throwable cause) {
+        super(cause);
+    }
+
+}
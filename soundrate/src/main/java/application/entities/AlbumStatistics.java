@@ -0,0 +1,147 @@
+package application.entities;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/*
+ * Reviews aggregates of an album, kept up to date by every review write so that reads never scan the reviews.
+ */
+@Entity
+@Table(name = "album_stats")
+@NamedQueries({
+        @NamedQuery(name = AlbumStatistics.FIND_ALBUM_ID, query =
+                "SELECT s.albumId FROM AlbumStatistics s WHERE s.albumId = :albumId"),
+        @NamedQuery(name = AlbumStatistics.FIND_BY_ALBUM_IDS, query =
+                "SELECT s FROM AlbumStatistics s WHERE s.albumId IN :albumIds"),
+        @NamedQuery(name = AlbumStatistics.FIND_ALBUM_IDS_AFTER, query =
+                "SELECT s.albumId FROM AlbumStatistics s WHERE s.albumId > :albumId ORDER BY s.albumId"),
+        @NamedQuery(name = AlbumStatistics.FIND_BY_ALBUM_ID_RANGE, query =
+                "SELECT s FROM AlbumStatistics s WHERE s.albumId > :fromAlbumId AND s.albumId <= :toAlbumId")
+})
+public class AlbumStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    public static final String FIND_ALBUM_ID = "AlbumStatistics.findAlbumId";
+    public static final String FIND_BY_ALBUM_IDS = "AlbumStatistics.findByAlbumIds";
+    public static final String FIND_ALBUM_IDS_AFTER = "AlbumStatistics.findAlbumIdsAfter";
+    public static final String FIND_BY_ALBUM_ID_RANGE = "AlbumStatistics.findByAlbumIdRange";
+
+    @Id
+    @Column(name = "albumId")
+    private Long albumId;
+    @Column(name = "reviewsCount", nullable = false)
+    private Integer reviewsCount = 0;
+    @Column(name = "ratingsSum", nullable = false)
+    private Long ratingsSum = 0L;
+    // reviews count per rating, the first element counting the reviews rated Review.MIN_ALLOWED_RATING
+    @Column(name = "ratingsHistogram", nullable = false)
+    @Convert(converter = RatingsHistogramConverter.class)
+    private int[] ratingsHistogram = new int[Review.MAX_ALLOWED_RATING - Review.MIN_ALLOWED_RATING + 1];
+
+    public Long getAlbumId() {
+        return this.albumId;
+    }
+
+    public AlbumStatistics setAlbumId(Long albumId) {
+        this.albumId = albumId;
+        return this;
+    }
+
+    public Integer getReviewsCount() {
+        return this.reviewsCount;
+    }
+
+    public AlbumStatistics setReviewsCount(Integer reviewsCount) {
+        this.reviewsCount = reviewsCount;
+        return this;
+    }
+
+    public Long getRatingsSum() {
+        return this.ratingsSum;
+    }
+
+    public AlbumStatistics setRatingsSum(Long ratingsSum) {
+        this.ratingsSum = ratingsSum;
+        return this;
+    }
+
+    public int[] getRatingsHistogram() {
+        return this.ratingsHistogram.clone();
+    }
+
+    public AlbumStatistics setRatingsHistogram(int[] ratingsHistogram) {
+        this.ratingsHistogram = ratingsHistogram.clone();
+        return this;
+    }
+
+    public int getRatingCount(int rating) {
+        return this.ratingsHistogram[rating - Review.MIN_ALLOWED_RATING];
+    }
+
+    // null if the album has not been reviewed
+    public Double getAverageRating() {
+        return this.reviewsCount == 0 ? null : this.ratingsSum / (double) this.reviewsCount;
+    }
+
+    public AlbumStatistics addRating(int rating) {
+        return this.addRatings(rating, +1);
+    }
+
+    public AlbumStatistics removeRating(int rating) {
+        return this.addRatings(rating, -1);
+    }
+
+    public AlbumStatistics addRatings(int rating, int delta) {
+        /* a new array is assigned so that the change is detected on the converted attribute */
+        final int[] ratingsHistogram = this.ratingsHistogram.clone();
+        ratingsHistogram[rating - Review.MIN_ALLOWED_RATING] += delta;
+        this.ratingsHistogram = ratingsHistogram;
+        this.reviewsCount += delta;
+        this.ratingsSum += (long) delta * rating;
+        return this;
+    }
+
+    public AlbumStatistics clear() {
+        this.reviewsCount = 0;
+        this.ratingsSum = 0L;
+        this.ratingsHistogram = new int[Review.MAX_ALLOWED_RATING - Review.MIN_ALLOWED_RATING + 1];
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return this.reviewsCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", AlbumStatistics.class.getSimpleName() + "{", "}")
+                .add("albumId=" + this.albumId)
+                .add("reviewsCount=" + this.reviewsCount)
+                .add("ratingsSum=" + this.ratingsSum)
+                .add("ratingsHistogram=" + Arrays.toString(this.ratingsHistogram))
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (other == null || this.getClass() != other.getClass())
+            return false;
+        AlbumStatistics albumStatistics = (AlbumStatistics) other;
+        return  Objects.equals(this.albumId, albumStatistics.albumId) &&
+                Objects.equals(this.reviewsCount, albumStatistics.reviewsCount) &&
+                Objects.equals(this.ratingsSum, albumStatistics.ratingsSum) &&
+                Arrays.equals(this.ratingsHistogram, albumStatistics.ratingsHistogram);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.albumId, this.reviewsCount, this.ratingsSum, Arrays.hashCode(this.ratingsHistogram));
+    }
+
+}
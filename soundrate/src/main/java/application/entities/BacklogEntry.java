@@ -10,12 +10,30 @@ import java.util.Objects;
 import java.util.StringJoiner;
 
 @Entity
+@Cacheable
 @Table(name = "backlogEntry")
 @IdClass(BacklogEntry.BacklogEntryId.class)
+@NamedQueries({
+        @NamedQuery(name = BacklogEntry.FIND_ALL, query = "SELECT b FROM BacklogEntry b"),
+        @NamedQuery(name = BacklogEntry.FIND_BY_USERNAME, query =
+                "SELECT b FROM BacklogEntry b WHERE b.user.username = :username ORDER BY b.insertionTime DESC"),
+        @NamedQuery(name = BacklogEntry.COUNT_BY_USERNAME, query =
+                "SELECT COUNT(b) FROM BacklogEntry b WHERE b.user.username = :username"),
+        @NamedQuery(name = BacklogEntry.FIND_ALBUM_IDS_BY_USERNAME, query =
+                "SELECT b.albumId FROM BacklogEntry b WHERE b.user.username = :username ORDER BY b.albumId"),
+        @NamedQuery(name = BacklogEntry.DELETE_BY_USERNAME_AND_ALBUM_IDS, query =
+                "DELETE FROM BacklogEntry b WHERE b.user.username = :username AND b.albumId IN :albumIds")
+})
 public class BacklogEntry implements Serializable {
 
     private static final long serialVersionUID = 1;
 
+    public static final String FIND_ALL = "BacklogEntry.findAll";
+    public static final String FIND_BY_USERNAME = "BacklogEntry.findByUsername";
+    public static final String COUNT_BY_USERNAME = "BacklogEntry.countByUsername";
+    public static final String FIND_ALBUM_IDS_BY_USERNAME = "BacklogEntry.findAlbumIdsByUsername";
+    public static final String DELETE_BY_USERNAME_AND_ALBUM_IDS = "BacklogEntry.deleteByUsernameAndAlbumIds";
+
     @Id
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "username", referencedColumnName = "username")
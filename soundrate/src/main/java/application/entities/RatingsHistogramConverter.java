@@ -0,0 +1,34 @@
+package application.entities;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/*
+ * Stores a ratings histogram as the comma separated list of its counts.
+ */
+@Converter
+public class RatingsHistogramConverter implements AttributeConverter<int[], String> {
+
+    private static final String SEPARATOR = ",";
+
+    @Override
+    public String convertToDatabaseColumn(int[] ratingsHistogram) {
+        return ratingsHistogram == null
+                ? null
+                : Arrays.stream(ratingsHistogram)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(RatingsHistogramConverter.SEPARATOR));
+    }
+
+    @Override
+    public int[] convertToEntityAttribute(String ratingsHistogram) {
+        return ratingsHistogram == null
+                ? null
+                : Arrays.stream(ratingsHistogram.split(RatingsHistogramConverter.SEPARATOR))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+}
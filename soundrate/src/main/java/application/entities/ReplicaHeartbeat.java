@@ -0,0 +1,67 @@
+package application.entities;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/*
+ * Single row written periodically on the primary database, whose replicated value tells how far behind the replica
+ * is. Read and written through plain JDBC by the replica routing, the entity only declares the table.
+ */
+@Entity
+@Table(name = "replica_heartbeat")
+public class ReplicaHeartbeat implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+    // epoch milliseconds at which the row was last written on the primary
+    @Column(name = "beat", nullable = false)
+    private Long beat;
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public ReplicaHeartbeat setId(Integer id) {
+        this.id = id;
+        return this;
+    }
+
+    public Long getBeat() {
+        return this.beat;
+    }
+
+    public ReplicaHeartbeat setBeat(Long beat) {
+        this.beat = beat;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ReplicaHeartbeat.class.getSimpleName() + "{", "}")
+                .add("id=" + this.id)
+                .add("beat=" + this.beat)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (other == null || this.getClass() != other.getClass())
+            return false;
+        ReplicaHeartbeat replicaHeartbeat = (ReplicaHeartbeat) other;
+        return  Objects.equals(this.id, replicaHeartbeat.id) &&
+                Objects.equals(this.beat, replicaHeartbeat.beat);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id, this.beat);
+    }
+
+}
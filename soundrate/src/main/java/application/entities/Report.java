@@ -10,10 +10,55 @@ import java.util.StringJoiner;
 @Entity
 @Table(name = "report")
 @IdClass(Report.ReportId.class)
+@NamedQueries({
+        @NamedQuery(name = Report.FIND_ALL, query = "SELECT r FROM Report r"),
+        @NamedQuery(name = Report.FIND_BY_REVIEW, query =
+                "SELECT r FROM Report r WHERE r.review.reviewer.username = :reviewerUsername" +
+                " AND r.review.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Report.COUNT_BY_REVIEWER_USERNAME_RANGE, query =
+                "SELECT r.review.reviewer.username, r.review.reviewedAlbumId, COUNT(r) FROM Report r" +
+                " WHERE r.review.reviewer.username > :fromReviewerUsername" +
+                " AND r.review.reviewer.username <= :toReviewerUsername" +
+                " GROUP BY r.review.reviewer.username, r.review.reviewedAlbumId"),
+        @NamedQuery(name = Report.DELETE_BY_REVIEW, query =
+                "DELETE FROM Report r WHERE r.review.reviewer.username = :reviewerUsername" +
+                " AND r.review.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Report.DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS, query =
+                "DELETE FROM Report r WHERE r.review.reviewer.username = :reviewerUsername" +
+                " AND r.review.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Report.DELETE_BY_REVIEWED_ALBUM_ID, query =
+                "DELETE FROM Report r WHERE r.review.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Report.FIND_BY_REPORTER, query =
+                "SELECT r FROM Report r WHERE r.reporter.username = :reporterUsername"),
+        @NamedQuery(name = Report.COUNT_BY_REPORTER, query =
+                "SELECT COUNT(r) FROM Report r WHERE r.reporter.username = :reporterUsername"),
+        @NamedQuery(name = Report.FIND_REVIEWED_ALBUM_IDS_BY_REPORTER, query =
+                "SELECT DISTINCT r.review.reviewedAlbumId FROM Report r WHERE r.reporter.username = :reporterUsername" +
+                " ORDER BY r.review.reviewedAlbumId"),
+        @NamedQuery(name = Report.FIND_REVIEWS_BY_REPORTER_AND_REVIEWED_ALBUM_IDS, query =
+                "SELECT r.review.reviewer.username, r.review.reviewedAlbumId FROM Report r" +
+                " WHERE r.reporter.username = :reporterUsername AND r.review.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Report.DELETE_BY_REPORTER_AND_REVIEWED_ALBUM_IDS, query =
+                "DELETE FROM Report r WHERE r.reporter.username = :reporterUsername" +
+                " AND r.review.reviewedAlbumId IN :reviewedAlbumIds")
+})
 public class Report implements Serializable {
 
     private static final long serialVersionUID = 1;
 
+    public static final String FIND_ALL = "Report.findAll";
+    public static final String FIND_BY_REVIEW = "Report.findByReview";
+    public static final String COUNT_BY_REVIEWER_USERNAME_RANGE = "Report.countByReviewerUsernameRange";
+    public static final String DELETE_BY_REVIEW = "Report.deleteByReview";
+    public static final String DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS = "Report.deleteByReviewerAndReviewedAlbumIds";
+    public static final String DELETE_BY_REVIEWED_ALBUM_ID = "Report.deleteByReviewedAlbumId";
+    public static final String FIND_BY_REPORTER = "Report.findByReporter";
+    public static final String COUNT_BY_REPORTER = "Report.countByReporter";
+    public static final String FIND_REVIEWED_ALBUM_IDS_BY_REPORTER = "Report.findReviewedAlbumIdsByReporter";
+    public static final String FIND_REVIEWS_BY_REPORTER_AND_REVIEWED_ALBUM_IDS =
+            "Report.findReviewsByReporterAndReviewedAlbumIds";
+    public static final String DELETE_BY_REPORTER_AND_REVIEWED_ALBUM_IDS = "Report.deleteByReporterAndReviewedAlbumIds";
+
     @Id
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "reporterUsername", referencedColumnName = "username")
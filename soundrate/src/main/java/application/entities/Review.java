@@ -10,8 +10,74 @@ import java.util.Objects;
 import java.util.StringJoiner;
 
 @Entity
+@Cacheable
 @Table(name = "review")
 @IdClass(Review.ReviewId.class)
+@NamedQueries({
+        @NamedQuery(name = Review.FIND_ALL, query = "SELECT r FROM Review r"),
+        @NamedQuery(name = Review.FIND_BY_IDS, query =
+                "SELECT r FROM Review r WHERE r.reviewer.username IN :reviewerUsernames" +
+                " AND r.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Review.FIND_BY_IDS_FETCH_REVIEWER, query =
+                "SELECT r FROM Review r JOIN FETCH r.reviewer WHERE r.reviewer.username IN :reviewerUsernames" +
+                " AND r.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Review.FIND_VOTES_COUNTS_BY_IDS, query =
+                "SELECT r.reviewer.username, r.reviewedAlbumId, r.upvotesCount, r.downvotesCount FROM Review r" +
+                " WHERE r.reviewer.username IN :reviewerUsernames AND r.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Review.FIND_ALL_BY_SCORE, query = "SELECT r FROM Review r ORDER BY r.score DESC"),
+        @NamedQuery(name = Review.FIND_ALL_BY_SCORE_FETCH_REVIEWER, query =
+                "SELECT r FROM Review r JOIN FETCH r.reviewer ORDER BY r.score DESC"),
+        @NamedQuery(name = Review.FIND_REPORTED, query =
+                "SELECT r FROM Review r WHERE r.reportsCount > 0 ORDER BY r.reportsCount DESC"),
+        @NamedQuery(name = Review.FIND_BY_REVIEWED_ALBUM_ID, query =
+                "SELECT r FROM Review r WHERE r.reviewedAlbumId = :reviewedAlbumId ORDER BY r.score DESC"),
+        @NamedQuery(name = Review.FIND_BY_REVIEWED_ALBUM_ID_FETCH_REVIEWER, query =
+                "SELECT r FROM Review r JOIN FETCH r.reviewer WHERE r.reviewedAlbumId = :reviewedAlbumId" +
+                " ORDER BY r.score DESC"),
+        @NamedQuery(name = Review.FIND_REVIEWERS_USERNAMES_BY_REVIEWED_ALBUM_ID, query =
+                "SELECT r.reviewer.username FROM Review r WHERE r.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Review.DELETE_BY_REVIEWED_ALBUM_ID, query =
+                "DELETE FROM Review r WHERE r.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Review.FIND_BY_REVIEWER, query =
+                "SELECT r FROM Review r WHERE r.reviewer.username = :reviewerUsername ORDER BY r.publicationDate DESC"),
+        @NamedQuery(name = Review.FIND_BY_REVIEWER_FETCH_REVIEWER, query =
+                "SELECT r FROM Review r JOIN FETCH r.reviewer WHERE r.reviewer.username = :reviewerUsername" +
+                " ORDER BY r.publicationDate DESC"),
+        @NamedQuery(name = Review.COUNT_BY_REVIEWER, query =
+                "SELECT COUNT(r) FROM Review r WHERE r.reviewer.username = :reviewerUsername"),
+        @NamedQuery(name = Review.AVERAGE_RATING_BY_REVIEWER, query =
+                "SELECT AVG(r.rating) FROM Review r WHERE r.reviewer.username = :reviewerUsername"),
+        @NamedQuery(name = Review.FIND_RATINGS_BY_REVIEWER, query =
+                "SELECT r.reviewedAlbumId, r.rating FROM Review r WHERE r.reviewer.username = :reviewerUsername" +
+                " ORDER BY r.reviewedAlbumId"),
+        @NamedQuery(name = Review.DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS, query =
+                "DELETE FROM Review r WHERE r.reviewer.username = :reviewerUsername" +
+                " AND r.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Review.FIND_ALBUMS_STATISTICS_BY_ARTIST_IDS, query =
+                "SELECT r.reviewedArtistId, r.reviewedAlbumId, COUNT(r), AVG(r.rating) FROM Review r" +
+                " WHERE r.reviewedArtistId IN :groupIds GROUP BY r.reviewedArtistId, r.reviewedAlbumId" +
+                " ORDER BY r.reviewedArtistId, r.reviewedAlbumId"),
+        @NamedQuery(name = Review.FIND_ALBUMS_STATISTICS_BY_GENRE_IDS, query =
+                "SELECT r.reviewedGenreId, r.reviewedAlbumId, COUNT(r), AVG(r.rating) FROM Review r" +
+                " WHERE r.reviewedGenreId IN :groupIds GROUP BY r.reviewedGenreId, r.reviewedAlbumId" +
+                " ORDER BY r.reviewedGenreId, r.reviewedAlbumId"),
+        @NamedQuery(name = Review.UPDATE_REVIEWED_ALBUM_GROUPS, query =
+                "UPDATE Review r SET r.reviewedArtistId = :reviewedArtistId, r.reviewedGenreId = :reviewedGenreId" +
+                " WHERE r.reviewedAlbumId = :reviewedAlbumId AND r.reviewedArtistId IS NULL"),
+        @NamedQuery(name = Review.FIND_REVIEWED_ALBUM_IDS_AFTER, query =
+                "SELECT DISTINCT r.reviewedAlbumId FROM Review r WHERE r.reviewedAlbumId > :reviewedAlbumId" +
+                " ORDER BY r.reviewedAlbumId"),
+        @NamedQuery(name = Review.COUNT_RATINGS_BY_REVIEWED_ALBUM_ID_RANGE, query =
+                "SELECT r.reviewedAlbumId, r.rating, COUNT(r) FROM Review r" +
+                " WHERE r.reviewedAlbumId > :fromAlbumId AND r.reviewedAlbumId <= :toAlbumId" +
+                " GROUP BY r.reviewedAlbumId, r.rating"),
+        @NamedQuery(name = Review.FIND_REVIEWERS_USERNAMES_AFTER, query =
+                "SELECT DISTINCT r.reviewer.username FROM Review r WHERE r.reviewer.username > :reviewerUsername" +
+                " ORDER BY r.reviewer.username"),
+        @NamedQuery(name = Review.FIND_BY_REVIEWER_USERNAME_RANGE, query =
+                "SELECT r FROM Review r WHERE r.reviewer.username > :fromReviewerUsername" +
+                " AND r.reviewer.username <= :toReviewerUsername")
+})
 public class Review implements Serializable {
 
     private static final long serialVersionUID = 1;
@@ -22,6 +88,32 @@ public class Review implements Serializable {
     public static final int MIN_ALLOWED_RATING = 1;
     public static final int MAX_ALLOWED_RATING = 10;
 
+    public static final String FIND_ALL = "Review.findAll";
+    public static final String FIND_BY_IDS = "Review.findByIds";
+    public static final String FIND_BY_IDS_FETCH_REVIEWER = "Review.findByIdsFetchReviewer";
+    public static final String FIND_VOTES_COUNTS_BY_IDS = "Review.findVotesCountsByIds";
+    public static final String FIND_ALL_BY_SCORE = "Review.findAllByScore";
+    public static final String FIND_ALL_BY_SCORE_FETCH_REVIEWER = "Review.findAllByScoreFetchReviewer";
+    public static final String FIND_REPORTED = "Review.findReported";
+    public static final String FIND_BY_REVIEWED_ALBUM_ID = "Review.findByReviewedAlbumId";
+    public static final String FIND_BY_REVIEWED_ALBUM_ID_FETCH_REVIEWER = "Review.findByReviewedAlbumIdFetchReviewer";
+    public static final String FIND_REVIEWERS_USERNAMES_BY_REVIEWED_ALBUM_ID =
+            "Review.findReviewersUsernamesByReviewedAlbumId";
+    public static final String DELETE_BY_REVIEWED_ALBUM_ID = "Review.deleteByReviewedAlbumId";
+    public static final String FIND_BY_REVIEWER = "Review.findByReviewer";
+    public static final String FIND_BY_REVIEWER_FETCH_REVIEWER = "Review.findByReviewerFetchReviewer";
+    public static final String COUNT_BY_REVIEWER = "Review.countByReviewer";
+    public static final String AVERAGE_RATING_BY_REVIEWER = "Review.averageRatingByReviewer";
+    public static final String FIND_RATINGS_BY_REVIEWER = "Review.findRatingsByReviewer";
+    public static final String DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS = "Review.deleteByReviewerAndReviewedAlbumIds";
+    public static final String FIND_ALBUMS_STATISTICS_BY_ARTIST_IDS = "Review.findAlbumsStatisticsByArtistIds";
+    public static final String FIND_ALBUMS_STATISTICS_BY_GENRE_IDS = "Review.findAlbumsStatisticsByGenreIds";
+    public static final String UPDATE_REVIEWED_ALBUM_GROUPS = "Review.updateReviewedAlbumGroups";
+    public static final String FIND_REVIEWED_ALBUM_IDS_AFTER = "Review.findReviewedAlbumIdsAfter";
+    public static final String COUNT_RATINGS_BY_REVIEWED_ALBUM_ID_RANGE = "Review.countRatingsByReviewedAlbumIdRange";
+    public static final String FIND_REVIEWERS_USERNAMES_AFTER = "Review.findReviewersUsernamesAfter";
+    public static final String FIND_BY_REVIEWER_USERNAME_RANGE = "Review.findByReviewerUsernameRange";
+
     @Id
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "reviewerUsername", referencedColumnName = "username")
@@ -31,6 +123,11 @@ public class Review implements Serializable {
     @Column(name = "reviewedAlbumId")
     @NotNull(message = "{review.reviewedAlbumId.NotNull}")
     private Long reviewedAlbumId;
+    // artist and main genre of the reviewed album, so that their rollups never need the Deezer catalog
+    @Column(name = "reviewedArtistId")
+    private Long reviewedArtistId;
+    @Column(name = "reviewedGenreId")
+    private Long reviewedGenreId;
     @Column(name = "content", nullable = false, length = Review.MAX_CONTENT_LENGTH)
     @NotBlank(message = "{review.content.NotBlank}")
     @Size(min = Review.MIN_CONTENT_LENGTH, max = Review.MAX_CONTENT_LENGTH, message = "{review.content.Size}")
@@ -45,12 +142,33 @@ public class Review implements Serializable {
     @NotNull(message = "{review.publicationDate.NotNull}")
     @PastOrPresent(message = "{review.publicationDate.PastOrPresent}")
     private Date publicationDate;
+    // votes aggregates, maintained along with the votes so that rankings never aggregate the vote table
+    @Column(name = "upvotesCount", nullable = false)
+    private Integer upvotesCount = 0;
+    @Column(name = "downvotesCount", nullable = false)
+    private Integer downvotesCount = 0;
+    @Column(name = "score", nullable = false)
+    private Integer score = 0;
+    // reports aggregate, the moderation queue is the index on it
+    @Column(name = "reportsCount", nullable = false)
+    private Integer reportsCount = 0;
 
     @OneToMany(mappedBy = "review", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Vote> votes;
     @OneToMany(mappedBy = "review", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Report> reports;
 
+    // rating as last read from or written to the database, managed instances may be modified before being merged
+    @Transient
+    private Integer storedRating;
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    private void storeRating() {
+        this.storedRating = this.rating;
+    }
+
     @JsonbTransient
     public User getReviewer() {
         return this.reviewer;
@@ -70,6 +188,24 @@ public class Review implements Serializable {
         return this;
     }
 
+    public Long getReviewedArtistId() {
+        return this.reviewedArtistId;
+    }
+
+    public Review setReviewedArtistId(Long reviewedArtistId) {
+        this.reviewedArtistId = reviewedArtistId;
+        return this;
+    }
+
+    public Long getReviewedGenreId() {
+        return this.reviewedGenreId;
+    }
+
+    public Review setReviewedGenreId(Long reviewedGenreId) {
+        this.reviewedGenreId = reviewedGenreId;
+        return this;
+    }
+
     public String getContent() {
         return this.content;
     }
@@ -88,6 +224,11 @@ public class Review implements Serializable {
         return this;
     }
 
+    @JsonbTransient
+    public Integer getStoredRating() {
+        return this.storedRating;
+    }
+
     public Date getPublicationDate() {
         return this.publicationDate;
     }
@@ -97,6 +238,52 @@ public class Review implements Serializable {
         return this;
     }
 
+    public Integer getUpvotesCount() {
+        return this.upvotesCount;
+    }
+
+    public Review setUpvotesCount(Integer upvotesCount) {
+        this.upvotesCount = upvotesCount;
+        this.score = this.upvotesCount - this.downvotesCount;
+        return this;
+    }
+
+    public Integer getDownvotesCount() {
+        return this.downvotesCount;
+    }
+
+    public Review setDownvotesCount(Integer downvotesCount) {
+        this.downvotesCount = downvotesCount;
+        this.score = this.upvotesCount - this.downvotesCount;
+        return this;
+    }
+
+    public Integer getScore() {
+        return this.score;
+    }
+
+    public Review addVote(boolean upvote) {
+        return upvote
+                ? this.setUpvotesCount(this.upvotesCount + 1)
+                : this.setDownvotesCount(this.downvotesCount + 1);
+    }
+
+    public Review removeVote(boolean upvote) {
+        return upvote
+                ? this.setUpvotesCount(this.upvotesCount - 1)
+                : this.setDownvotesCount(this.downvotesCount - 1);
+    }
+
+    @JsonbTransient
+    public Integer getReportsCount() {
+        return this.reportsCount;
+    }
+
+    public Review setReportsCount(Integer reportsCount) {
+        this.reportsCount = reportsCount;
+        return this;
+    }
+
     @JsonbTransient
     public List<Vote> getVotes() {
         return this.votes;
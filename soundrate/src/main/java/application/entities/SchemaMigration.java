@@ -0,0 +1,95 @@
+package application.entities;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/*
+ * Migration script applied to the database schema, recorded along with the checksum of the applied script so that
+ * scripts are never edited once they have been applied.
+ */
+@Entity
+@Table(name = "schema_migration")
+public class SchemaMigration implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    @Id
+    @Column(name = "version")
+    private Integer version;
+    @Column(name = "description", nullable = false)
+    private String description;
+    // hexadecimal SHA-256 digest of the script
+    @Column(name = "checksum", nullable = false, length = 64)
+    private String checksum;
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "appliedOn", nullable = false)
+    private Date appliedOn;
+
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public SchemaMigration setVersion(Integer version) {
+        this.version = version;
+        return this;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public SchemaMigration setDescription(String description) {
+        this.description = description;
+        return this;
+    }
+
+    public String getChecksum() {
+        return this.checksum;
+    }
+
+    public SchemaMigration setChecksum(String checksum) {
+        this.checksum = checksum;
+        return this;
+    }
+
+    public Date getAppliedOn() {
+        return this.appliedOn;
+    }
+
+    public SchemaMigration setAppliedOn(Date appliedOn) {
+        this.appliedOn = appliedOn;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", SchemaMigration.class.getSimpleName() + "{", "}")
+                .add("version=" + this.version)
+                .add("description=" + this.description)
+                .add("checksum=" + this.checksum)
+                .add("appliedOn=" + this.appliedOn)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (other == null || this.getClass() != other.getClass())
+            return false;
+        SchemaMigration schemaMigration = (SchemaMigration) other;
+        return  Objects.equals(this.version, schemaMigration.version) &&
+                Objects.equals(this.description, schemaMigration.description) &&
+                Objects.equals(this.checksum, schemaMigration.checksum) &&
+                Objects.equals(this.appliedOn, schemaMigration.appliedOn);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.version, this.description, this.checksum, this.appliedOn);
+    }
+
+}
@@ -12,7 +12,14 @@ import java.util.Objects;
 import java.util.StringJoiner;
 
 @Entity
+@Cacheable
 @Table(name = "user")
+@NamedQueries({
+        @NamedQuery(name = User.FIND_ALL, query = "SELECT u FROM User u"),
+        @NamedQuery(name = User.FIND_BY_EMAIL, query = "SELECT u FROM User u WHERE u.email = :email"),
+        @NamedQuery(name = User.FIND_BY_USERNAMES, query = "SELECT u FROM User u WHERE u.username IN :usernames"),
+        @NamedQuery(name = User.DELETE_BY_USERNAME, query = "DELETE FROM User u WHERE u.username = :username")
+})
 public class User implements Serializable {
 
     private static final long serialVersionUID = 1;
@@ -20,6 +27,11 @@ public class User implements Serializable {
     public static final String USERNAME_PATTERN = "^(?=.{3,36}$)[a-zA-Z0-9]+([_ -]?[a-zA-Z0-9])*$";
     public static final String PASSWORD_PATTERN = "^(?=(.*\\d){2})[0-9a-zA-Z]{8,72}$";
 
+    public static final String FIND_ALL = "User.findAll";
+    public static final String FIND_BY_EMAIL = "User.findByEmail";
+    public static final String FIND_BY_USERNAMES = "User.findByUsernames";
+    public static final String DELETE_BY_USERNAME = "User.deleteByUsername";
+
     public enum Role {USER, MODERATOR, ADMINISTRATOR}
 
     @Id
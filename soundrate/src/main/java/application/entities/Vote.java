@@ -10,10 +10,71 @@ import java.util.StringJoiner;
 @Entity
 @Table(name = "vote")
 @IdClass(Vote.VoteId.class)
+@NamedQueries({
+        @NamedQuery(name = Vote.FIND_ALL, query = "SELECT v FROM Vote v"),
+        @NamedQuery(name = Vote.FIND_BY_REVIEW, query =
+                "SELECT v FROM Vote v WHERE v.review.reviewer.username = :reviewerUsername" +
+                " AND v.review.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Vote.FIND_BY_REVIEW_AND_VALUE, query =
+                "SELECT v FROM Vote v WHERE v.review.reviewer.username = :reviewerUsername" +
+                " AND v.review.reviewedAlbumId = :reviewedAlbumId AND v.value = :value"),
+        @NamedQuery(name = Vote.COUNT_BY_REVIEWER_USERNAME_RANGE_AND_VALUE, query =
+                "SELECT v.review.reviewer.username, v.review.reviewedAlbumId, v.value, COUNT(v) FROM Vote v" +
+                " WHERE v.review.reviewer.username > :fromReviewerUsername" +
+                " AND v.review.reviewer.username <= :toReviewerUsername" +
+                " GROUP BY v.review.reviewer.username, v.review.reviewedAlbumId, v.value"),
+        @NamedQuery(name = Vote.DELETE_BY_REVIEW, query =
+                "DELETE FROM Vote v WHERE v.review.reviewer.username = :reviewerUsername" +
+                " AND v.review.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Vote.DELETE_BY_REVIEW_AND_VALUE, query =
+                "DELETE FROM Vote v WHERE v.review.reviewer.username = :reviewerUsername" +
+                " AND v.review.reviewedAlbumId = :reviewedAlbumId AND v.value = :value"),
+        @NamedQuery(name = Vote.DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS, query =
+                "DELETE FROM Vote v WHERE v.review.reviewer.username = :reviewerUsername" +
+                " AND v.review.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Vote.DELETE_BY_REVIEWED_ALBUM_ID, query =
+                "DELETE FROM Vote v WHERE v.review.reviewedAlbumId = :reviewedAlbumId"),
+        @NamedQuery(name = Vote.FIND_BY_VOTER, query = "SELECT v FROM Vote v WHERE v.voter.username = :voterUsername"),
+        @NamedQuery(name = Vote.FIND_BY_VOTER_AND_VALUE, query =
+                "SELECT v FROM Vote v WHERE v.voter.username = :voterUsername AND v.value = :value"),
+        @NamedQuery(name = Vote.COUNT_BY_VOTER, query =
+                "SELECT COUNT(v) FROM Vote v WHERE v.voter.username = :voterUsername"),
+        @NamedQuery(name = Vote.COUNT_BY_VOTER_AND_VALUE, query =
+                "SELECT COUNT(v) FROM Vote v WHERE v.voter.username = :voterUsername AND v.value = :value"),
+        @NamedQuery(name = Vote.FIND_REVIEWED_ALBUM_IDS_BY_VOTER, query =
+                "SELECT DISTINCT v.review.reviewedAlbumId FROM Vote v WHERE v.voter.username = :voterUsername" +
+                " ORDER BY v.review.reviewedAlbumId"),
+        @NamedQuery(name = Vote.FIND_VALUES_BY_VOTER_AND_REVIEWED_ALBUM_IDS, query =
+                "SELECT v.review.reviewer.username, v.review.reviewedAlbumId, v.value FROM Vote v" +
+                " WHERE v.voter.username = :voterUsername AND v.review.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Vote.DELETE_BY_VOTER_AND_REVIEWED_ALBUM_IDS, query =
+                "DELETE FROM Vote v WHERE v.voter.username = :voterUsername" +
+                " AND v.review.reviewedAlbumId IN :reviewedAlbumIds"),
+        @NamedQuery(name = Vote.DELETE_BY_VOTER_AND_VALUE, query =
+                "DELETE FROM Vote v WHERE v.voter.username = :voterUsername AND v.value = :value")
+})
 public class Vote implements Serializable {
 
     private static final long serialVersionUID = 1;
 
+    public static final String FIND_ALL = "Vote.findAll";
+    public static final String FIND_BY_REVIEW = "Vote.findByReview";
+    public static final String FIND_BY_REVIEW_AND_VALUE = "Vote.findByReviewAndValue";
+    public static final String COUNT_BY_REVIEWER_USERNAME_RANGE_AND_VALUE = "Vote.countByReviewerUsernameRangeAndValue";
+    public static final String DELETE_BY_REVIEW = "Vote.deleteByReview";
+    public static final String DELETE_BY_REVIEW_AND_VALUE = "Vote.deleteByReviewAndValue";
+    public static final String DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS = "Vote.deleteByReviewerAndReviewedAlbumIds";
+    public static final String DELETE_BY_REVIEWED_ALBUM_ID = "Vote.deleteByReviewedAlbumId";
+    public static final String FIND_BY_VOTER = "Vote.findByVoter";
+    public static final String FIND_BY_VOTER_AND_VALUE = "Vote.findByVoterAndValue";
+    public static final String COUNT_BY_VOTER = "Vote.countByVoter";
+    public static final String COUNT_BY_VOTER_AND_VALUE = "Vote.countByVoterAndValue";
+    public static final String FIND_REVIEWED_ALBUM_IDS_BY_VOTER = "Vote.findReviewedAlbumIdsByVoter";
+    public static final String FIND_VALUES_BY_VOTER_AND_REVIEWED_ALBUM_IDS =
+            "Vote.findValuesByVoterAndReviewedAlbumIds";
+    public static final String DELETE_BY_VOTER_AND_REVIEWED_ALBUM_IDS = "Vote.deleteByVoterAndReviewedAlbumIds";
+    public static final String DELETE_BY_VOTER_AND_VALUE = "Vote.deleteByVoterAndValue";
+
     @Id
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "voterUsername", referencedColumnName = "username")
@@ -31,6 +92,17 @@ public class Vote implements Serializable {
     @NotNull(message = "{vote.value.NotNull}")
     private Integer value;
 
+    // value as last read from or written to the database, managed instances may be modified before being merged
+    @Transient
+    private Integer storedValue;
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    private void storeValue() {
+        this.storedValue = this.value;
+    }
+
     @JsonbTransient
     public User getVoter() {
         return this.voter;
@@ -67,6 +139,13 @@ public class Vote implements Serializable {
         return this;
     }
 
+    @JsonbTransient
+    public Boolean getStoredValue() {
+        if (this.storedValue == null)
+            return null;
+        return this.storedValue == +1;
+    }
+
     public String getVoterUsername() {
         return this.voter.getUsername();
     }
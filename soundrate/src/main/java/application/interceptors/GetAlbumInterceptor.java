@@ -7,6 +7,7 @@ import javax.inject.Inject;
 import javax.interceptor.AroundInvoke;
 import javax.interceptor.Interceptor;
 import javax.interceptor.InvocationContext;
+import java.util.Collection;
 
 @Interceptor
 @Cacheable(type = "album")
@@ -15,13 +16,14 @@ public class GetAlbumInterceptor {
     @Inject
     private AlbumsHolder albumsHolder;
 
+    // the holder loads missing entries through the uncached `CatalogAgent#loadAlbum`, so it never re-enters here
     @AroundInvoke
-    public Object interceptGetTopAlbumsCall(InvocationContext invocationContext) throws Exception {
-        for (StackTraceElement stackTraceElement : Thread.currentThread().getStackTrace())
-            if (AlbumsHolder.class.getName().equals(stackTraceElement.getClassName()))
-                return invocationContext.proceed();
-        final Long albumId = (Long) invocationContext.getParameters()[0];
-        return this.albumsHolder.getAlbum(albumId);
+    @SuppressWarnings("unchecked")
+    public Object interceptGetAlbumCall(InvocationContext invocationContext) throws Exception {
+        final Object parameter = invocationContext.getParameters()[0];
+        if (parameter instanceof Collection)
+            return this.albumsHolder.getAlbums((Collection<Long>) parameter);
+        return this.albumsHolder.getAlbum((Long) parameter);
     }
 
 }
@@ -18,9 +18,6 @@ public class GetArtistAlbumsInterceptor {
 
     @AroundInvoke
     private Object interceptGetArtistAlbumsCalls(InvocationContext invocationContext) throws Exception {
-        for (StackTraceElement stackTraceElement : Thread.currentThread().getStackTrace())
-            if (ArtistAlbumsHolder.class.getName().equals(stackTraceElement.getClassName()))
-                return invocationContext.proceed();
         Object[] parameters = invocationContext.getParameters();
         final Artist artist = (Artist) parameters[0];
         if (parameters.length == 1)
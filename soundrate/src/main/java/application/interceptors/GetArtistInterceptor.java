@@ -16,10 +16,7 @@ public class GetArtistInterceptor {
     private ArtistsHolder artistsHolder;
 
     @AroundInvoke
-    public Object interceptGetTopAlbumsCall(InvocationContext invocationContext) throws Exception {
-        for (StackTraceElement stackTraceElement : Thread.currentThread().getStackTrace())
-            if (ArtistsHolder.class.getName().equals(stackTraceElement.getClassName()))
-                return invocationContext.proceed();
+    public Object interceptGetArtistCall(InvocationContext invocationContext) throws Exception {
         final Long artistId = (Long) invocationContext.getParameters()[0];
         return this.artistsHolder.getArtist(artistId);
     }
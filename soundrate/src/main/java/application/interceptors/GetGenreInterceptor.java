@@ -16,10 +16,7 @@ public class GetGenreInterceptor {
     private GenresHolder genresHolder;
 
     @AroundInvoke
-    public Object interceptGetTopAlbumsCall(InvocationContext invocationContext) throws Exception {
-        for (StackTraceElement stackTraceElement : Thread.currentThread().getStackTrace())
-            if (GenresHolder.class.getName().equals(stackTraceElement.getClassName()))
-                return invocationContext.proceed();
+    public Object interceptGetGenreCall(InvocationContext invocationContext) throws Exception {
         final Long genreId = (Long) invocationContext.getParameters()[0];
         return this.genresHolder.getGenre(genreId);
     }
@@ -17,15 +17,13 @@ public class GetTopAlbumsInterceptor {
 
     @AroundInvoke
     public Object interceptGetTopAlbumsCall(InvocationContext invocationContext) throws Exception {
-        for (StackTraceElement stackTraceElement : Thread.currentThread().getStackTrace())
-            if (TopAlbumsHolder.class.getName().equals(stackTraceElement.getClassName()))
-                return invocationContext.proceed();
         Object[] parameters = invocationContext.getParameters();
-        if (parameters == null)
-            return this.topAlbumsHolder.getTopAlbums();
-        final Integer index = (Integer) parameters[0];
-        final Integer limit = (Integer) parameters[1];
-        return this.topAlbumsHolder.getTopAlbums(index, limit);
+        // the chart is loaded in background at startup, until then the lookup goes straight to Deezer
+        if (this.topAlbumsHolder.getTopAlbums() == null)
+            return invocationContext.proceed();
+        return parameters == null || parameters.length == 0
+                ? this.topAlbumsHolder.getTopAlbums()
+                : this.topAlbumsHolder.getTopAlbums((Integer) parameters[0], (Integer) parameters[1]);
     }
 
 }
@@ -0,0 +1,19 @@
+package application.interceptors;
+
+import application.interceptors.bindings.ReadOnly;
+import storage.ReplicaRoutingDataSource;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+
+@Interceptor
+@ReadOnly
+public class ReadOnlyInterceptor {
+
+    @AroundInvoke
+    public Object interceptReadOnlyCall(InvocationContext invocationContext) throws Exception {
+        return ReplicaRoutingDataSource.callReadOnly(invocationContext::proceed);
+    }
+
+}
@@ -0,0 +1,29 @@
+package application.interceptors;
+
+import application.cache.SearchResultsHolder;
+import application.interceptors.bindings.Cacheable;
+
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+
+@Interceptor
+@Cacheable(type = "albumsSearch")
+public class SearchAlbumsInterceptor {
+
+    @Inject
+    private SearchResultsHolder searchResultsHolder;
+
+    @AroundInvoke
+    public Object interceptSearchAlbumsCall(InvocationContext invocationContext) throws Exception {
+        Object[] parameters = invocationContext.getParameters();
+        final String query = (String) parameters[0];
+        if (parameters.length == 1)
+            return this.searchResultsHolder.searchAlbums(query);
+        final Integer index = (Integer) parameters[1];
+        final Integer limit = (Integer) parameters[2];
+        return this.searchResultsHolder.searchAlbums(query, index, limit);
+    }
+
+}
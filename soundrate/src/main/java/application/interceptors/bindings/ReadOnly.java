@@ -0,0 +1,17 @@
+package application.interceptors.bindings;
+
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * Marks the agent methods that only query the database, which may be served by the read replica when they are
+ * invoked outside of any transaction, hence their SUPPORTS transaction attribute.
+ */
+@InterceptorBinding
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+}
@@ -0,0 +1,53 @@
+package application.model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+ * Reviews count and average rating of a set of albums, held in parallel arrays sorted by album identifier.
+ */
+public class AlbumsStatistics {
+
+    private final long[] albumIds;
+    private final int[] reviewsCounts;
+    private final double[] averageRatings;
+
+    AlbumsStatistics(final long[] albumIds, final int[] reviewsCounts, final double[] averageRatings) {
+        this.albumIds = albumIds;
+        this.reviewsCounts = reviewsCounts;
+        this.averageRatings = averageRatings;
+    }
+
+    public int size() {
+        return this.albumIds.length;
+    }
+
+    public int getReviewsCount(final long albumId) {
+        final int index = Arrays.binarySearch(this.albumIds, albumId);
+        return index < 0 ? 0 : this.reviewsCounts[index];
+    }
+
+    // null if the album has not been reviewed
+    public Double getAverageRating(final long albumId) {
+        final int index = Arrays.binarySearch(this.albumIds, albumId);
+        return index < 0 || this.reviewsCounts[index] == 0 ? null : this.averageRatings[index];
+    }
+
+    public int getTotalReviewsCount() {
+        return IntStream.of(this.reviewsCounts).sum();
+    }
+
+    // average of the reviewed albums average ratings, null if none of the albums has been reviewed
+    public Double getAverageOfAverageRatings() {
+        double sum = 0;
+        int reviewedAlbums = 0;
+        for (int i = 0; i < this.albumIds.length; i++) {
+            if (this.reviewsCounts[i] != 0) {
+                sum += this.averageRatings[i];
+                reviewedAlbums++;
+            }
+        }
+        return reviewedAlbums == 0 ? null : sum / reviewedAlbums;
+    }
+
+}
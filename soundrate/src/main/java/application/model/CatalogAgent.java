@@ -2,6 +2,7 @@ package application.model;
 
 import application.entities.*;
 import application.interceptors.bindings.Cacheable;
+import application.interceptors.bindings.ReadOnly;
 import application.model.exceptions.BacklogEntryNotFoundException;
 import application.model.exceptions.ConflictingBacklogEntryException;
 import deezer.client.DeezerClient;
@@ -15,18 +16,25 @@ import deezer.model.search.AlbumsSearch;
 import deezer.model.search.ArtistsSearch;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
+import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Singleton
 @Lock(LockType.READ)
@@ -35,25 +43,48 @@ public class CatalogAgent {
     @PersistenceContext
     private EntityManager entityManager;
 
-    private DeezerClient client;
+    @Resource
+    private SessionContext sessionContext;
+
+    @Inject
+    private StatisticsAgent statisticsAgent;
+
+    @Inject
+    private LeaderboardAgent leaderboardAgent;
+
+    @Inject
+    private EntityCacheAgent entityCacheAgent;
+
+    private ThrottledDeezerClient client;
 
     @PostConstruct
-    private void init() {
-        this.client = new DeezerClient();
+    private void init() throws IOException {
+        Properties properties = new Properties();
+        properties.load(this.getClass().getClassLoader().getResourceAsStream("application.properties"));
+        this.client = new ThrottledDeezerClient(
+                new DeezerClient(),
+                Integer.parseInt(properties.getProperty("deezer.quota.requests", "50")),
+                Duration.ofSeconds(Long.parseLong(properties.getProperty("deezer.quota.period", "5"))),
+                Duration.ofMillis(Long.parseLong(properties.getProperty("deezer.quota.interactiveMaximumWait", "2000")))
+        );
     }
 
+    public ThrottledDeezerClient.Usage getQuotaUsage() {
+        return this.client.getUsage();
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<BacklogEntry> getBacklogEntries() {
         return this.getBacklogEntries(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<BacklogEntry> getBacklogEntries(@Min(0) final Integer index,
                                                 @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<BacklogEntry> query = builder.createQuery(BacklogEntry.class);
-        Root<BacklogEntry> backlogEntry = query.from(BacklogEntry.class);
-        query.select(backlogEntry);
-
-        TypedQuery<BacklogEntry> getBacklogEntriesQuery = this.entityManager.createQuery(query);
+        TypedQuery<BacklogEntry> getBacklogEntriesQuery =
+                this.entityManager.createNamedQuery(BacklogEntry.FIND_ALL, BacklogEntry.class);
         if (index != null)
             getBacklogEntriesQuery.setFirstResult(index);
         if (limit != null)
@@ -91,6 +122,10 @@ public class CatalogAgent {
 
     @Cacheable(type = "album")
     public Album getAlbum(@NotNull final Long albumId) {
+        return this.loadAlbum(albumId);
+    }
+
+    public Album loadAlbum(@NotNull final Long albumId) {
         try {
             return this.client.getAlbum(albumId);
         } catch (DeezerClientException e) {
@@ -100,8 +135,22 @@ public class CatalogAgent {
         }
     }
 
+    // albums in the order of the given identifiers, albums not found are mapped to null
+    @Cacheable(type = "album")
+    public @NotNull Map<Long, Album> getAlbums(@NotNull final Collection<Long> albumIds) {
+        final Map<Long, Album> albums = new LinkedHashMap<>();
+        for (Long albumId : albumIds)
+            if (!albums.containsKey(albumId))
+                albums.put(albumId, this.loadAlbum(albumId));
+        return albums;
+    }
+
     @Cacheable(type = "artist")
     public Artist getArtist(@NotNull final Long artistId) {
+        return this.loadArtist(artistId);
+    }
+
+    public Artist loadArtist(@NotNull final Long artistId) {
         try {
             return this.client.getArtist(artistId);
         } catch (DeezerClientException e) {
@@ -113,6 +162,10 @@ public class CatalogAgent {
 
     @Cacheable(type = "genre")
     public Genre getGenre(@NotNull final Long genreId) {
+        return this.loadGenre(genreId);
+    }
+
+    public Genre loadGenre(@NotNull final Long genreId) {
         try {
             return this.client.getGenre(genreId);
         } catch (DeezerClientException e) {
@@ -122,32 +175,41 @@ public class CatalogAgent {
         }
     }
 
+    // records the artist and the main genre of the reviewed album along with its identifier
+    public @NotNull Review setReviewedAlbum(@NotNull final Review review, @NotNull final Album album) {
+        return review
+                .setReviewedAlbumId(album.getId())
+                .setReviewedArtistId(album.getArtist() == null ? null : album.getArtist().getId())
+                .setReviewedGenreId(album.getGenres() == null || album.getGenres().isEmpty()
+                        ? null
+                        : album.getGenres().getData().get(0).getId());
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getAlbumReviews(@NotNull final Album album) {
         return this.getAlbumReviews(album, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getAlbumReviews(@NotNull final Album album,
                                         @Min(0) final Integer index,
                                         @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Review> query = builder.createQuery(Review.class);
-        Root<Review> review = query.from(Review.class);
-        Join<Review, Vote> vote = review.join(Review_.votes, JoinType.LEFT);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(review)
-                .groupBy(review)
-                .where(builder.equal(
-                        review.get(Review_.reviewedAlbumId),
-                        reviewedAlbumIdParameter
-                ))
-                .orderBy(builder.desc(builder.coalesce(
-                        builder.sum(vote.get(Vote_.value)),
-                        builder.literal(0)
-                )));
+        return this.getAlbumReviews(album, index, limit, false);
+    }
 
-        TypedQuery<Review> getTopReviewsQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewedAlbumIdParameter, album.getId());
+    // the reviewers are loaded by the same statement when fetchReviewers is true
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Review> getAlbumReviews(@NotNull final Album album,
+                                        @Min(0) final Integer index,
+                                        @Min(1) final Integer limit,
+                                        final boolean fetchReviewers) {
+        TypedQuery<Review> getTopReviewsQuery = this.entityManager.createNamedQuery(fetchReviewers
+                ? Review.FIND_BY_REVIEWED_ALBUM_ID_FETCH_REVIEWER
+                : Review.FIND_BY_REVIEWED_ALBUM_ID, Review.class)
+                .setParameter("reviewedAlbumId", album.getId());
         if (index != null)
             getTopReviewsQuery.setFirstResult(index);
         if (limit != null)
@@ -156,85 +218,84 @@ public class CatalogAgent {
         return topReviews == null || topReviews.isEmpty() ? null : topReviews;
     }
 
-    public @NotNull Integer getAlbumReviewsCount(@NotNull final Album album) {
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Review> getAlbumReviewsPage(@NotNull final Album album,
+                                                     @NotNull final String cursor,
+                                                     @Min(1) final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<Review> query = builder.createQuery(Review.class);
         Root<Review> review = query.from(Review.class);
         ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
+        final List<Order> orders = Arrays.asList(
+                builder.desc(review.get(Review_.score)),
+                builder.asc(review.get(Review_.reviewer).get(User_.username))
+        );
         query
-                .select(builder.count(review))
-                .where(builder.equal(
-                        review.get(Review_.reviewedAlbumId),
-                        reviewedAlbumIdParameter
-                ));
+                .select(review)
+                .where(builder.and(
+                        builder.equal(
+                                review.get(Review_.reviewedAlbumId),
+                                reviewedAlbumIdParameter
+                        ),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getAlbumReviewsCountQuery = this.entityManager.createQuery(query)
+        TypedQuery<Review> getAlbumReviewsQuery = this.entityManager.createQuery(query)
                 .setParameter(reviewedAlbumIdParameter, album.getId());
-        try {
-            Long albumReviewsCount = getAlbumReviewsCountQuery.getSingleResult();
-            return albumReviewsCount == null ? 0 : Math.toIntExact(albumReviewsCount);
-        } catch (NoResultException e) {
-            return 0;
-        }
+        getAlbumReviewsQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getAlbumReviewsQuery.getResultList(), limit,
+                lastReview -> new PageCursor(lastReview.getScore(), lastReview.getReviewerUsername()));
     }
 
-    public @NotEmpty Map<Album, Integer> getAlbumsReviewsCount(@NotEmpty final Collection<Album> albums) {
-        return albums.stream().collect(
-                HashMap::new,
-                (map, album) -> map.put(album, this.getAlbumReviewsCount(album)),
-                HashMap::putAll
-        );
+    public @NotNull Integer getAlbumReviewsCount(@NotNull final Album album) {
+        AlbumStatistics albumStatistics = this.statisticsAgent.getAlbumStatistics(album.getId());
+        return albumStatistics == null ? 0 : albumStatistics.getReviewsCount();
     }
 
     public void deleteAlbumReviews(@NotNull final Album album) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Review> delete = builder.createCriteriaDelete(Review.class);
-        Root<Review> review = delete.from(Review.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        delete
-                .where(builder.equal(
-                        review.get(Review_.reviewedAlbumId),
-                        reviewedAlbumIdParameter
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(reviewedAlbumIdParameter, album.getId())
-                .executeUpdate();
+        final List<String> reviewersUsernames = this.entityManager
+                .createNamedQuery(Review.FIND_REVIEWERS_USERNAMES_BY_REVIEWED_ALBUM_ID, String.class)
+                .setParameter("reviewedAlbumId", album.getId())
+                .getResultList();
+        reviewersUsernames.forEach(reviewerUsername ->
+                this.leaderboardAgent.removeReview(reviewerUsername, album.getId()));
+        /* set-based deletes, the votes and reports first as they reference the reviews */
+        for (String deleteQueryName : new String[]{
+                Vote.DELETE_BY_REVIEWED_ALBUM_ID,
+                Report.DELETE_BY_REVIEWED_ALBUM_ID,
+                Review.DELETE_BY_REVIEWED_ALBUM_ID})
+            this.entityManager.createNamedQuery(deleteQueryName)
+                    .setParameter("reviewedAlbumId", album.getId())
+                    .executeUpdate();
+        reviewersUsernames.forEach(reviewerUsername -> this.entityCacheAgent.evict(Review.class, new Review.ReviewId()
+                .setReviewerUsername(reviewerUsername)
+                .setReviewedAlbumId(album.getId())));
+        this.statisticsAgent.deleteAlbumStatistics(album.getId());
     }
 
     public Double getAlbumAverageRating(@NotNull final Album album) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Double> query = builder.createQuery(Double.class);
-        Root<Review> review = query.from(Review.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(builder.avg(review.get(Review_.rating)))
-                .where(builder.equal(
-                        review.get(Review_.reviewedAlbumId),
-                        reviewedAlbumIdParameter
-                ));
-
-        TypedQuery<Double> getAlbumAverageRatingQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewedAlbumIdParameter, album.getId());
-        try {
-            return getAlbumAverageRatingQuery.getSingleResult();
-        } catch (NoResultException e) {
-            return null;
-        }
+        AlbumStatistics albumStatistics = this.statisticsAgent.getAlbumStatistics(album.getId());
+        return albumStatistics == null ? null : albumStatistics.getAverageRating();
     }
 
-    public @NotEmpty Map<Album, Double> getAlbumsAverageRatings(@NotEmpty final Collection<Album> albums) {
-        return albums.stream().collect(
-                HashMap::new,
-                (map, album) -> map.put(album, this.getAlbumAverageRating(album)),
-                HashMap::putAll
-        );
+    // reviews count and average rating of all the given albums, read from the materialized statistics
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull AlbumsStatistics getAlbumsStatistics(@NotNull final Collection<Long> albumIds) {
+        return this.statisticsAgent.getAlbumsStatistics(albumIds);
     }
 
     @Cacheable(type = "artistAlbums")
     public List<Album> getArtistAlbums(@NotNull final Artist artist) {
+        return this.loadArtistAlbums(artist.getId());
+    }
+
+    public List<Album> loadArtistAlbums(@NotNull final Long artistId) {
         try {
-            Albums artistAlbums = this.client.getArtistAlbums(artist.getId(), 0, Integer.MAX_VALUE);
+            Albums artistAlbums = this.client.getArtistAlbums(artistId, 0, Integer.MAX_VALUE);
             return artistAlbums == null || artistAlbums.isEmpty() ? null : artistAlbums.getData();
         } catch (DeezerClientException e) {
             if (e.getErrorCode() != null && e.getErrorCode().equals(DeezerClientException.DATA_NOT_FOUND))
@@ -257,56 +318,125 @@ public class CatalogAgent {
         }
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public @NotNull Integer getArtistReviewsCount(@NotNull final Artist artist) {
-        List<Album> artistAlbums = this.getArtistAlbums(artist);
-        return artistAlbums == null
-                ? 0
-                : artistAlbums.stream()
-                .mapToInt(this::getAlbumReviewsCount)
-                .sum();
+        return this.getArtistsReviewsCount(Collections.singletonList(artist)).get(artist);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public @NotEmpty Map<Artist, Integer> getArtistsReviewsCount(@NotEmpty final Collection<Artist> artists) {
+        final Map<Long, AlbumsStatistics> artistsAlbumsStatistics = this.getReviewedAlbumsStatistics(
+                Review.FIND_ALBUMS_STATISTICS_BY_ARTIST_IDS,
+                artists.stream().map(Artist::getId).collect(Collectors.toList()));
         return artists.stream().collect(
                 HashMap::new,
-                (map, artist) -> map.put(artist, this.getArtistReviewsCount(artist)),
+                (map, artist) -> map.put(artist, artistsAlbumsStatistics.containsKey(artist.getId())
+                        ? artistsAlbumsStatistics.get(artist.getId()).getTotalReviewsCount()
+                        : 0),
                 HashMap::putAll
         );
     }
 
+    // average of the artist reviewed albums average ratings, null if none of them has been reviewed
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public Double getArtistAverageRating(@NotNull final Artist artist) {
-        List<Album> artistAlbums = this.getArtistAlbums(artist);
-        OptionalDouble averageRating = artistAlbums == null
-                ? OptionalDouble.empty()
-                : artistAlbums.stream()
-                .filter(album -> this.getAlbumReviewsCount(album) != 0)
-                .mapToDouble(this::getAlbumAverageRating)
-                .average();
-        return averageRating.isPresent() ? averageRating.getAsDouble() : null;
+        return this.getArtistsAverageRatings(Collections.singletonList(artist)).get(artist);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public @NotEmpty Map<Artist, Double> getArtistsAverageRatings(@NotEmpty final Collection<Artist> artists) {
+        final Map<Long, AlbumsStatistics> artistsAlbumsStatistics = this.getReviewedAlbumsStatistics(
+                Review.FIND_ALBUMS_STATISTICS_BY_ARTIST_IDS,
+                artists.stream().map(Artist::getId).collect(Collectors.toList()));
         return artists.stream().collect(
                 HashMap::new,
-                (map, artist) -> map.put(artist, this.getArtistAverageRating(artist)),
+                (map, artist) -> map.put(artist, artistsAlbumsStatistics.containsKey(artist.getId())
+                        ? artistsAlbumsStatistics.get(artist.getId()).getAverageOfAverageRatings()
+                        : null),
                 HashMap::putAll
         );
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Integer getGenreReviewsCount(@NotNull final Genre genre) {
+        final AlbumsStatistics genreAlbumsStatistics = this.getReviewedAlbumsStatistics(
+                Review.FIND_ALBUMS_STATISTICS_BY_GENRE_IDS,
+                Collections.singletonList(genre.getId())).get(genre.getId());
+        return genreAlbumsStatistics == null ? 0 : genreAlbumsStatistics.getTotalReviewsCount();
+    }
+
+    // average of the genre reviewed albums average ratings, null if none of them has been reviewed
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Double getGenreAverageRating(@NotNull final Genre genre) {
+        final AlbumsStatistics genreAlbumsStatistics = this.getReviewedAlbumsStatistics(
+                Review.FIND_ALBUMS_STATISTICS_BY_GENRE_IDS,
+                Collections.singletonList(genre.getId())).get(genre.getId());
+        return genreAlbumsStatistics == null ? null : genreAlbumsStatistics.getAverageOfAverageRatings();
+    }
+
+    /*
+     * Statistics of the reviewed albums of each of the given artists or genres, computed by a single query grouped
+     * by artist or genre and album. Reviews written before their artist and genre were recorded are not counted
+     * until they are backfilled. The named query selects the artist or genre identifier as the first column.
+     */
+    private Map<Long, AlbumsStatistics> getReviewedAlbumsStatistics(final String queryName,
+                                                                    final Collection<Long> groupIds) {
+        final Map<Long, AlbumsStatistics> groupsAlbumsStatistics = new HashMap<>();
+        if (groupIds.isEmpty())
+            return groupsAlbumsStatistics;
+
+        List<Object[]> rows = this.entityManager.createNamedQuery(queryName, Object[].class)
+                .setParameter("groupIds", new HashSet<>(groupIds))
+                .getResultList();
+        /* the rows are sorted by group and album, so each group is a run of rows with sorted album identifiers */
+        int runStart = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i < rows.size() && rows.get(i)[0].equals(rows.get(runStart)[0]))
+                continue;
+            final int runLength = i - runStart;
+            final long[] albumIds = new long[runLength];
+            final int[] reviewsCounts = new int[runLength];
+            final double[] averageRatings = new double[runLength];
+            for (int j = 0; j < runLength; j++) {
+                final Object[] row = rows.get(runStart + j);
+                albumIds[j] = ((Number) row[1]).longValue();
+                reviewsCounts[j] = Math.toIntExact(((Number) row[2]).longValue());
+                averageRatings[j] = ((Number) row[3]).doubleValue();
+            }
+            groupsAlbumsStatistics.put(((Number) rows.get(runStart)[0]).longValue(),
+                    new AlbumsStatistics(albumIds, reviewsCounts, averageRatings));
+            runStart = i;
+        }
+        return groupsAlbumsStatistics;
+    }
+
     public @NotNull Album getReviewedAlbum(@NotNull final Review review) {
-        return this.getAlbum(review.getReviewedAlbumId());
+        return this.sessionContext.getBusinessObject(CatalogAgent.class).getAlbum(review.getReviewedAlbumId());
     }
 
     public @NotEmpty Map<Review, Album> getReviewedAlbums(@NotEmpty final Collection<Review> reviews) {
+        // through the business object, so that the call is intercepted by the cache
+        final Map<Long, Album> albums = this.sessionContext.getBusinessObject(CatalogAgent.class).getAlbums(
+                reviews.stream().map(Review::getReviewedAlbumId).collect(Collectors.toList()));
         return reviews.stream().collect(
                 HashMap::new,
-                (map, review) -> map.put(review, this.getReviewedAlbum(review)),
+                (map, review) -> map.put(review, albums.get(review.getReviewedAlbumId())),
                 HashMap::putAll
         );
     }
 
     @Cacheable(type = "topAlbums")
     public List<Album> getTopAlbums() {
+        return this.loadTopAlbums();
+    }
+
+    public List<Album> loadTopAlbums() {
         Albums topAlbums = this.client.getTopAlbums(0, Integer.MAX_VALUE);
         return topAlbums == null || topAlbums.isEmpty() ? null : topAlbums.getData();
     }
@@ -318,12 +448,18 @@ public class CatalogAgent {
         return topAlbums == null || topAlbums.isEmpty() ? null : topAlbums.getData();
     }
 
+    @Cacheable(type = "albumsSearch")
     public List<Album> searchAlbums(@NotNull final String query) {
+        return this.loadAlbumsSearchResults(query);
+    }
+
+    public List<Album> loadAlbumsSearchResults(@NotNull final String query) {
         AlbumsSearch albumsSearch = new AlbumsSearch(query);
         Albums searchResults = this.client.getAlbumsSearchResults(albumsSearch, 0, Integer.MAX_VALUE);
         return searchResults == null || searchResults.isEmpty() ? null : searchResults.getData();
     }
 
+    @Cacheable(type = "albumsSearch")
     public List<Album> searchAlbums(@NotNull final String query,
                                     @NotNull @Min(0) final Integer index,
                                     @NotNull @Min(1) final Integer limit) {
@@ -332,12 +468,18 @@ public class CatalogAgent {
         return searchResults == null || searchResults.isEmpty() ? null : searchResults.getData();
     }
 
+    @Cacheable(type = "artistsSearch")
     public List<Artist> searchArtists(@NotNull final String query) {
+        return this.loadArtistsSearchResults(query);
+    }
+
+    public List<Artist> loadArtistsSearchResults(@NotNull final String query) {
         ArtistsSearch artistsSearch = new ArtistsSearch(query);
         Artists searchResults = this.client.getArtistsSearchResults(artistsSearch, 0, Integer.MAX_VALUE);
         return searchResults == null || searchResults.isEmpty() ? null : searchResults.getData();
     }
 
+    @Cacheable(type = "artistsSearch")
     public List<Artist> searchArtists(@NotNull final String query,
                                       @NotNull @Min(0) final Integer index,
                                       @NotNull @Min(1) final Integer limit) {
@@ -0,0 +1,96 @@
+package application.model;
+
+import org.apache.openjpa.datacache.CacheStatistics;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.validation.constraints.NotNull;
+
+/*
+ * Front of the OpenJPA data cache holding the entities marked as @Cacheable, so that primary key lookups of users,
+ * reviews and backlog entries are served from memory. The cache is kept up to date by OpenJPA with the changes made
+ * through the entity manager once their transaction has committed, but it is not aware of the rows changed by bulk
+ * statements, which have to evict them explicitly. Evictions are applied at once, so that the current transaction
+ * does not find the stale entries, and again once it has completed, so that the entries loaded in the meantime by
+ * concurrent transactions, which could not see the changes yet, are discarded too.
+ */
+@Singleton
+@Lock(LockType.READ)
+public class EntityCacheAgent {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    public void evict(@NotNull final Class<?> entityClass, @NotNull final Object id) {
+        this.evict(() -> this.entityManagerFactory.getCache().evict(entityClass, id));
+    }
+
+    public void evictAll(@NotNull final Class<?> entityClass) {
+        this.evict(() -> this.entityManagerFactory.getCache().evict(entityClass));
+    }
+
+    public void evictAll() {
+        this.evict(() -> this.entityManagerFactory.getCache().evictAll());
+    }
+
+    private void evict(final Runnable eviction) {
+        eviction.run();
+        if (this.transactionSynchronizationRegistry.getTransactionKey() == null)
+            return;
+        this.transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            // rolled back statements are evicted too, which costs a reload at worst
+            @Override
+            public void afterCompletion(int status) {
+                eviction.run();
+            }
+
+        });
+    }
+
+    public boolean contains(@NotNull final Class<?> entityClass, @NotNull final Object id) {
+        return this.entityManagerFactory.getCache().contains(entityClass, id);
+    }
+
+    // lookups of the entity class served by the cache
+    public long getHitsCount(@NotNull final Class<?> entityClass) {
+        final CacheStatistics statistics = this.getStatistics();
+        return statistics == null ? 0 : statistics.getHitCount(entityClass);
+    }
+
+    // lookups of the entity class that had to reach the database
+    public long getMissesCount(@NotNull final Class<?> entityClass) {
+        final CacheStatistics statistics = this.getStatistics();
+        return statistics == null ? 0 : statistics.getReadCount(entityClass) - statistics.getHitCount(entityClass);
+    }
+
+    // entities of the class stored into the cache, once loaded or committed
+    public long getWritesCount(@NotNull final Class<?> entityClass) {
+        final CacheStatistics statistics = this.getStatistics();
+        return statistics == null ? 0 : statistics.getWriteCount(entityClass);
+    }
+
+    // null if the data cache is disabled
+    private CacheStatistics getStatistics() {
+        final OpenJPAEntityManagerFactory entityManagerFactory =
+                this.entityManagerFactory.unwrap(OpenJPAEntityManagerFactory.class);
+        return entityManagerFactory.getStoreCache() == null
+                ? null
+                : entityManagerFactory.getStoreCache().getStatistics();
+    }
+
+}
@@ -0,0 +1,343 @@
+package application.model;
+
+import application.entities.Review;
+import application.entities.Review_;
+import application.entities.User_;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/*
+ * Ranks in memory the reviews by score and the reviewers by reputation, the sum of their reviews scores.
+ * The rankings are loaded from the database at startup and then updated in place by the review and vote writes once
+ * their transaction has committed, so that rolled back writes never reach them. Updates are applied as score deltas,
+ * which commute, so the rankings stay consistent whatever the order in which concurrent votes are applied.
+ * A reload queries the scores outside of any transaction, after it has started recording the reviews updated in the
+ * meantime. Once the reloaded rankings replace the current ones, the committed scores of the recorded reviews are read
+ * again and set as they are, until no more reviews have been updated, so that an update is neither lost nor counted
+ * twice whether or not the reload query has seen it.
+ */
+@Singleton
+@Startup
+@Lock(LockType.READ)
+public class LeaderboardAgent {
+
+    private static final Logger logger = Logger.getLogger(LeaderboardAgent.class.getSimpleName());
+
+    private static final Comparator<Review.ReviewId> REVIEW_ID_COMPARATOR = Comparator
+            .comparing(Review.ReviewId::getReviewerUsername)
+            .thenComparing(Review.ReviewId::getReviewedAlbumId);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private RankedScores<Review.ReviewId> reviewsScores = new RankedScores<>(LeaderboardAgent.REVIEW_ID_COMPARATOR);
+    private RankedScores<String> reviewersReputations = new RankedScores<>(String::compareTo);
+    // reviewers leave the ranking along with their last review
+    private Map<String, Integer> reviewersReviewsCounts = new HashMap<>();
+    // reviews updated since each in-progress reload started, guarded by lock
+    private final List<Set<Review.ReviewId>> reloadsUpdatedReviews = new ArrayList<>();
+
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    private void initialize() {
+        this.reload();
+    }
+
+    // the current transaction, if any, is suspended, so that the reload sees only committed scores
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void reload() {
+        final long begin = System.nanoTime();
+
+        /* recording starts before the query, so that no update committed after its snapshot can be lost */
+        final Set<Review.ReviewId> updatedReviews = new HashSet<>();
+        this.lock.writeLock().lock();
+        try {
+            this.reloadsUpdatedReviews.add(updatedReviews);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        int rereadReviews = 0;
+        try {
+            this.load();
+            Set<Review.ReviewId> reviewIds;
+            while (!(reviewIds = this.drain(updatedReviews)).isEmpty()) {
+                this.setScores(reviewIds, this.findScores(reviewIds));
+                rereadReviews += reviewIds.size();
+            }
+        } finally {
+            this.lock.writeLock().lock();
+            try {
+                this.reloadsUpdatedReviews.removeIf(reviews -> reviews == updatedReviews);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+
+        final long end = System.nanoTime();
+        LeaderboardAgent.logger.info(String.format("Loaded %d reviews of %d reviewers, read again %d updated reviews. "
+                        + "Time elapsed: %d ms.", this.getReviewsCount(), this.getReviewersCount(), rereadReviews,
+                TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+    }
+
+    private void load() {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = builder.createQuery(Object[].class);
+        Root<Review> review = query.from(Review.class);
+        query.multiselect(
+                review.get(Review_.reviewer).get(User_.username),
+                review.get(Review_.reviewedAlbumId),
+                review.get(Review_.score)
+        );
+
+        final RankedScores<Review.ReviewId> reviewsScores =
+                new RankedScores<>(LeaderboardAgent.REVIEW_ID_COMPARATOR);
+        final Map<String, Long> reputations = new HashMap<>();
+        final Map<String, Integer> reviewersReviewsCounts = new HashMap<>();
+        for (Object[] row : this.entityManager.createQuery(query).getResultList()) {
+            final String reviewerUsername = (String) row[0];
+            final long score = ((Number) row[2]).longValue();
+            reviewsScores.put(LeaderboardAgent.reviewId(reviewerUsername, ((Number) row[1]).longValue()), score);
+            reputations.merge(reviewerUsername, score, Long::sum);
+            reviewersReviewsCounts.merge(reviewerUsername, 1, Integer::sum);
+        }
+        final RankedScores<String> reviewersReputations = new RankedScores<>(String::compareTo);
+        reputations.forEach(reviewersReputations::put);
+
+        this.lock.writeLock().lock();
+        try {
+            this.reviewsScores = reviewsScores;
+            this.reviewersReputations = reviewersReputations;
+            this.reviewersReviewsCounts = reviewersReviewsCounts;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // the reviews recorded so far, recording the next ones from scratch
+    private Set<Review.ReviewId> drain(final Set<Review.ReviewId> updatedReviews) {
+        this.lock.writeLock().lock();
+        try {
+            final Set<Review.ReviewId> reviewIds = new HashSet<>(updatedReviews);
+            updatedReviews.clear();
+            return reviewIds;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // committed scores of the reviews, the removed ones being missing
+    private Map<Review.ReviewId, Long> findScores(final Set<Review.ReviewId> reviewIds) {
+        final Map<Review.ReviewId, Long> scores = new HashMap<>();
+        final List<Object[]> rows = this.entityManager
+                .createNamedQuery(Review.FIND_VOTES_COUNTS_BY_IDS, Object[].class)
+                .setParameter("reviewerUsernames",
+                        reviewIds.stream().map(Review.ReviewId::getReviewerUsername).collect(Collectors.toSet()))
+                .setParameter("reviewedAlbumIds",
+                        reviewIds.stream().map(Review.ReviewId::getReviewedAlbumId).collect(Collectors.toSet()))
+                .getResultList();
+        for (Object[] row : rows) {
+            /* the query matches every combination of the usernames and album ids */
+            final Review.ReviewId reviewId = LeaderboardAgent.reviewId((String) row[0], ((Number) row[1]).longValue());
+            if (reviewIds.contains(reviewId))
+                scores.put(reviewId, ((Number) row[2]).longValue() - ((Number) row[3]).longValue());
+        }
+        return scores;
+    }
+
+    // sets the scores as they are, without recording the reviews as updated
+    private void setScores(final Set<Review.ReviewId> reviewIds, final Map<Review.ReviewId, Long> scores) {
+        this.lock.writeLock().lock();
+        try {
+            for (Review.ReviewId reviewId : reviewIds) {
+                final String reviewerUsername = reviewId.getReviewerUsername();
+                final Long score = scores.get(reviewId);
+                final Long previousScore = this.reviewsScores.remove(reviewId);
+                if (previousScore != null) {
+                    if (this.reviewersReviewsCounts.merge(reviewerUsername, -1, Integer::sum) == 0) {
+                        this.reviewersReviewsCounts.remove(reviewerUsername);
+                        this.reviewersReputations.remove(reviewerUsername);
+                    } else
+                        this.reviewersReputations.add(reviewerUsername, -previousScore);
+                }
+                if (score != null) {
+                    this.reviewsScores.put(reviewId, score);
+                    if (this.reviewersReviewsCounts.merge(reviewerUsername, 1, Integer::sum) == 1)
+                        this.reviewersReputations.put(reviewerUsername, score);
+                    else
+                        this.reviewersReputations.add(reviewerUsername, score);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void addReview(@NotNull final String reviewerUsername, @NotNull final Long reviewedAlbumId) {
+        final Review.ReviewId reviewId = LeaderboardAgent.reviewId(reviewerUsername, reviewedAlbumId);
+        this.afterCommit(() -> this.write(reviewId, () -> {
+            if (this.reviewsScores.contains(reviewId))
+                return;
+            this.reviewsScores.put(reviewId, 0);
+            if (this.reviewersReviewsCounts.merge(reviewerUsername, 1, Integer::sum) == 1)
+                this.reviewersReputations.put(reviewerUsername, 0);
+        }));
+    }
+
+    public void removeReview(@NotNull final String reviewerUsername, @NotNull final Long reviewedAlbumId) {
+        final Review.ReviewId reviewId = LeaderboardAgent.reviewId(reviewerUsername, reviewedAlbumId);
+        this.afterCommit(() -> this.write(reviewId, () -> {
+            final Long score = this.reviewsScores.remove(reviewId);
+            if (score == null)
+                return;
+            if (this.reviewersReviewsCounts.merge(reviewerUsername, -1, Integer::sum) == 0) {
+                this.reviewersReviewsCounts.remove(reviewerUsername);
+                this.reviewersReputations.remove(reviewerUsername);
+            } else
+                this.reviewersReputations.add(reviewerUsername, -score);
+        }));
+    }
+
+    public void updateReviewScore(@NotNull final String reviewerUsername,
+                                  @NotNull final Long reviewedAlbumId,
+                                  final int scoreDelta) {
+        if (scoreDelta == 0)
+            return;
+        final Review.ReviewId reviewId = LeaderboardAgent.reviewId(reviewerUsername, reviewedAlbumId);
+        /* votes on a review removed in the meantime are dropped along with it */
+        this.afterCommit(() -> this.write(reviewId, () -> {
+            if (this.reviewsScores.add(reviewId, scoreDelta))
+                this.reviewersReputations.add(reviewerUsername, scoreDelta);
+        }));
+    }
+
+    public @NotNull List<Review.ReviewId> getTopReviewIds(@Min(0) final int index, @Min(1) final int limit) {
+        this.lock.readLock().lock();
+        try {
+            return this.reviewsScores.getKeys(index, limit);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // 1 for the review with the highest score, null if the review is unknown
+    public Integer getReviewRank(@NotNull final String reviewerUsername, @NotNull final Long reviewedAlbumId) {
+        this.lock.readLock().lock();
+        try {
+            return this.reviewsScores.getRank(LeaderboardAgent.reviewId(reviewerUsername, reviewedAlbumId));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int getReviewsCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.reviewsScores.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public @NotNull List<String> getTopReviewersUsernames(@Min(0) final int index, @Min(1) final int limit) {
+        this.lock.readLock().lock();
+        try {
+            return this.reviewersReputations.getKeys(index, limit);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // 1 for the reviewer with the highest reputation, null if the user has no reviews
+    public Integer getReviewerRank(@NotNull final String reviewerUsername) {
+        this.lock.readLock().lock();
+        try {
+            return this.reviewersReputations.getRank(reviewerUsername);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int getReviewerReputation(@NotNull final String reviewerUsername) {
+        this.lock.readLock().lock();
+        try {
+            final Long reputation = this.reviewersReputations.getScore(reviewerUsername);
+            return reputation == null ? 0 : Math.toIntExact(reputation);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int getReviewersCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.reviewersReputations.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void write(final Review.ReviewId reviewId, final Runnable update) {
+        this.lock.writeLock().lock();
+        try {
+            update.run();
+            this.reloadsUpdatedReviews.forEach(updatedReviews -> updatedReviews.add(reviewId));
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(final Runnable update) {
+        if (this.transactionSynchronizationRegistry.getTransactionKey() == null) {
+            update.run();
+            return;
+        }
+        this.transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED)
+                    update.run();
+            }
+
+        });
+    }
+
+    private static Review.ReviewId reviewId(final String reviewerUsername, final Long reviewedAlbumId) {
+        return new Review.ReviewId()
+                .setReviewerUsername(reviewerUsername)
+                .setReviewedAlbumId(reviewedAlbumId);
+    }
+
+}
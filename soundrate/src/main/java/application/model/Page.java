@@ -0,0 +1,56 @@
+package application.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * Elements of a keyset paginated listing, along with the cursor of the next page.
+ */
+public class Page<T> {
+
+    // response header carrying the cursor of the next page, missing on the last page
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final int DEFAULT_LIMIT = 20;
+
+    private final List<T> elements;
+    private final String nextCursor;
+
+    private Page(final List<T> elements, final String nextCursor) {
+        this.elements = elements;
+        this.nextCursor = nextCursor;
+    }
+
+    // the elements are expected to have been fetched with Page.fetchSize(limit), one more than the page holds
+    static <T> Page<T> of(final List<T> elements,
+                          final Integer limit,
+                          final Function<T, PageCursor> cursorFunction) {
+        final int pageLimit = Page.pageLimit(limit);
+        if (elements.size() <= pageLimit)
+            return new Page<>(elements, null);
+        final List<T> pageElements = elements.subList(0, pageLimit);
+        return new Page<>(pageElements, cursorFunction.apply(pageElements.get(pageLimit - 1)).encode());
+    }
+
+    /* the extra element tells whether a next page exists without another query */
+    static int fetchSize(final Integer limit) {
+        final int pageLimit = Page.pageLimit(limit);
+        return pageLimit == Integer.MAX_VALUE ? pageLimit : pageLimit + 1;
+    }
+
+    // pages are never unbounded, the ones requested without a limit hold DEFAULT_LIMIT elements at most
+    private static int pageLimit(final Integer limit) {
+        return limit == null ? Page.DEFAULT_LIMIT : limit;
+    }
+
+    // null if the page is empty, as the other listings
+    public List<T> getElements() {
+        return this.elements == null || this.elements.isEmpty() ? null : this.elements;
+    }
+
+    // null on the last page
+    public String getNextCursor() {
+        return this.nextCursor;
+    }
+
+}
@@ -0,0 +1,109 @@
+package application.model;
+
+import application.model.exceptions.InvalidCursorException;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/*
+ * Position right after the last element of a page, made of the sort key values of that element, ending with its
+ * primary key. The next page is sought from it through the index the listing is sorted by, instead of skipping all the
+ * previous rows, and does not shift when rows are inserted or deleted before it. Exchanged as an opaque URL safe token.
+ */
+public class PageCursor {
+
+    private static final String SEPARATOR = ".";
+
+    private final List<Object> values;
+
+    PageCursor(final Object... values) {
+        this.values = Arrays.asList(values);
+    }
+
+    // the empty token starts from the first page
+    static PageCursor decode(final String cursor) {
+        if (cursor.isEmpty())
+            return null;
+        final List<Object> values = new ArrayList<>();
+        try {
+            for (String token : cursor.split(Pattern.quote(PageCursor.SEPARATOR))) {
+                final String value = new String(Base64.getUrlDecoder().decode(token.substring(1)), StandardCharsets.UTF_8);
+                switch (token.charAt(0)) {
+                    case 's':
+                        values.add(value);
+                        break;
+                    case 'i':
+                        values.add(Integer.valueOf(value));
+                        break;
+                    case 'l':
+                        values.add(Long.valueOf(value));
+                        break;
+                    case 'd':
+                        values.add(new Date(Long.parseLong(value)));
+                        break;
+                    default:
+                        throw new InvalidCursorException();
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException(e);
+        }
+        return new PageCursor(values.toArray());
+    }
+
+    String encode() {
+        final StringJoiner cursor = new StringJoiner(PageCursor.SEPARATOR);
+        for (Object value : this.values) {
+            final char type;
+            final String string;
+            if (value instanceof String) {
+                type = 's';
+                string = (String) value;
+            } else if (value instanceof Integer) {
+                type = 'i';
+                string = value.toString();
+            } else if (value instanceof Long) {
+                type = 'l';
+                string = value.toString();
+            } else if (value instanceof Date) {
+                type = 'd';
+                string = String.valueOf(((Date) value).getTime());
+            } else
+                throw new IllegalArgumentException(String.valueOf(value));
+            cursor.add(type + Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(string.getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    // restricts a listing sorted by the given orders to the rows after the cursor, a null cursor restricting nothing
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Predicate seek(final CriteriaBuilder builder, final List<Order> orders, final PageCursor cursor) {
+        if (cursor == null)
+            return builder.conjunction();
+        if (cursor.values.size() != orders.size())
+            throw new InvalidCursorException();
+        /* (a, b) after (x, y) is expanded to a after x OR (a = x AND b after y) */
+        final List<Predicate> alternatives = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            final Expression<Comparable> expression = (Expression<Comparable>) orders.get(i).getExpression();
+            final Object value = cursor.values.get(i);
+            if (!expression.getJavaType().isInstance(value))
+                throw new InvalidCursorException();
+            final List<Predicate> conjuncts = new ArrayList<>();
+            for (int j = 0; j < i; j++)
+                conjuncts.add(builder.equal(orders.get(j).getExpression(), cursor.values.get(j)));
+            conjuncts.add(orders.get(i).isAscending()
+                    ? builder.greaterThan(expression, (Comparable) value)
+                    : builder.lessThan(expression, (Comparable) value));
+            alternatives.add(builder.and(conjuncts.toArray(new Predicate[0])));
+        }
+        return builder.or(alternatives.toArray(new Predicate[0]));
+    }
+
+}
@@ -0,0 +1,94 @@
+package application.model;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.kernel.QueryStatistics;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.persistence.EntityManager;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/*
+ * Compiles at deployment the named queries declared by the entities, through which the agents issue their fixed
+ * shape queries, so that each call only binds its parameters. The compiled queries are kept by OpenJPA's query
+ * compilation cache, keyed by query string, and the SQL they translate to by its prepared SQL cache, keyed by query
+ * name, whose statistics are exposed to verify that the queries are actually served by it.
+ */
+@Singleton
+@Startup
+@Lock(LockType.READ)
+public class QueryRegistry {
+
+    private static final Logger logger = Logger.getLogger(QueryRegistry.class.getSimpleName());
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Set<String> namedQueries;
+
+    @PostConstruct
+    private void initialize() {
+        final long begin = System.nanoTime();
+        final Set<String> namedQueries = new TreeSet<>();
+        for (EntityType<?> entityType : this.entityManager.getMetamodel().getEntities()) {
+            final Class<?> entityClass = entityType.getJavaType();
+            if (entityClass.isAnnotationPresent(NamedQueries.class))
+                Arrays.stream(entityClass.getAnnotation(NamedQueries.class).value())
+                        .forEach(namedQuery -> namedQueries.add(namedQuery.name()));
+            if (entityClass.isAnnotationPresent(NamedQuery.class))
+                namedQueries.add(entityClass.getAnnotation(NamedQuery.class).name());
+        }
+        /* invalid queries fail the deployment rather than the first call issuing them */
+        namedQueries.forEach(name -> this.entityManager.createNamedQuery(name).unwrap(OpenJPAQuery.class).compile());
+        this.namedQueries = Collections.unmodifiableSet(namedQueries);
+        final long end = System.nanoTime();
+        QueryRegistry.logger.info(String.format("Compiled %d named queries. Time elapsed: %d ms.",
+                namedQueries.size(), TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+    }
+
+    public @NotNull Set<String> getNamedQueries() {
+        return this.namedQueries;
+    }
+
+    // number of executions of the named query since the statistics were last reset
+    public long getExecutionsCount(@NotNull final String name) {
+        final QueryStatistics<String> statistics = this.getPreparedQueriesStatistics();
+        return statistics == null ? 0 : statistics.getExecutionCount(name);
+    }
+
+    // number of executions of the named query whose SQL was taken from the prepared SQL cache
+    public long getPreparedHitsCount(@NotNull final String name) {
+        final QueryStatistics<String> statistics = this.getPreparedQueriesStatistics();
+        return statistics == null ? 0 : statistics.getHitCount(name);
+    }
+
+    // number of query strings held by the compilation cache, named or not
+    public int getCompiledQueriesCount() {
+        final Map<?, ?> compilationCache = this.getConfiguration().getQueryCompilationCacheInstance();
+        return compilationCache == null ? 0 : compilationCache.size();
+    }
+
+    private QueryStatistics<String> getPreparedQueriesStatistics() {
+        return this.getConfiguration().getQuerySQLCacheInstance() == null
+                ? null
+                : this.getConfiguration().getQuerySQLCacheInstance().getStatistics();
+    }
+
+    private OpenJPAConfiguration getConfiguration() {
+        return this.entityManager.getEntityManagerFactory().unwrap(OpenJPAEntityManagerFactorySPI.class)
+                .getConfiguration();
+    }
+
+}
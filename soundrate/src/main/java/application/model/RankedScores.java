@@ -0,0 +1,181 @@
+package application.model;
+
+import java.util.*;
+
+/*
+ * Scores ranked from the highest, held in a treap whose nodes count the nodes of their subtree, so that the rank of a
+ * key and the keys at a given rank are found in logarithmic time. Equal scores are ranked by key.
+ * Not thread safe, the owner guards the accesses.
+ */
+class RankedScores<K> {
+
+    private static final class Node<K> {
+
+        private final K key;
+        private final long score;
+        private final int priority;
+        private Node<K> left;
+        private Node<K> right;
+        private int size = 1;
+
+        private Node(final K key, final long score, final int priority) {
+            this.key = key;
+            this.score = score;
+            this.priority = priority;
+        }
+
+    }
+
+    private final Comparator<K> keyComparator;
+    private final Map<K, Long> scores = new HashMap<>();
+    private final Random random = new Random();
+    private Node<K> root;
+
+    RankedScores(final Comparator<K> keyComparator) {
+        this.keyComparator = keyComparator;
+    }
+
+    int size() {
+        return this.scores.size();
+    }
+
+    boolean contains(final K key) {
+        return this.scores.containsKey(key);
+    }
+
+    Long getScore(final K key) {
+        return this.scores.get(key);
+    }
+
+    // 1 for the highest score, null if the key is not ranked
+    Integer getRank(final K key) {
+        final Long score = this.scores.get(key);
+        if (score == null)
+            return null;
+        int rank = 1;
+        Node<K> node = this.root;
+        while (node != null) {
+            final int comparison = this.compare(key, score, node);
+            if (comparison <= 0) {
+                if (comparison == 0)
+                    return rank + RankedScores.size(node.left);
+                node = node.left;
+            } else {
+                rank += RankedScores.size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    // keys from the given index, the highest score at index 0
+    List<K> getKeys(final int index, final int limit) {
+        final List<K> keys = new ArrayList<>(Math.max(0, Math.min(limit, this.size() - index)));
+        this.collect(this.root, index, (int) Math.min(this.size(), (long) index + limit), keys);
+        return keys;
+    }
+
+    void put(final K key, final long score) {
+        this.remove(key);
+        this.scores.put(key, score);
+        this.root = this.insert(this.root, new Node<>(key, score, this.random.nextInt()));
+    }
+
+    // returns false, leaving the scores untouched, if the key is not ranked
+    boolean add(final K key, final long delta) {
+        final Long score = this.scores.get(key);
+        if (score == null)
+            return false;
+        if (delta != 0)
+            this.put(key, score + delta);
+        return true;
+    }
+
+    // returns the score of the removed key, null if it was not ranked
+    Long remove(final K key) {
+        final Long score = this.scores.remove(key);
+        if (score != null)
+            this.root = this.delete(this.root, key, score);
+        return score;
+    }
+
+    private int compare(final K key, final long score, final Node<K> node) {
+        final int comparison = Long.compare(node.score, score);
+        return comparison != 0 ? comparison : this.keyComparator.compare(key, node.key);
+    }
+
+    private Node<K> insert(final Node<K> node, final Node<K> inserted) {
+        if (node == null)
+            return inserted;
+        if (inserted.priority > node.priority) {
+            this.split(node, inserted.key, inserted.score, inserted);
+            return RankedScores.update(inserted);
+        }
+        if (this.compare(inserted.key, inserted.score, node) < 0)
+            node.left = this.insert(node.left, inserted);
+        else
+            node.right = this.insert(node.right, inserted);
+        return RankedScores.update(node);
+    }
+
+    // splits the subtree into the nodes ranked before and after the given key, as children of the parent node
+    private void split(final Node<K> node, final K key, final long score, final Node<K> parent) {
+        if (node == null) {
+            parent.left = null;
+            parent.right = null;
+        } else if (this.compare(key, score, node) < 0) {
+            this.split(node.left, key, score, parent);
+            node.left = parent.right;
+            parent.right = RankedScores.update(node);
+        } else {
+            this.split(node.right, key, score, parent);
+            node.right = parent.left;
+            parent.left = RankedScores.update(node);
+        }
+    }
+
+    private Node<K> delete(final Node<K> node, final K key, final long score) {
+        final int comparison = this.compare(key, score, node);
+        if (comparison == 0)
+            return RankedScores.merge(node.left, node.right);
+        if (comparison < 0)
+            node.left = this.delete(node.left, key, score);
+        else
+            node.right = this.delete(node.right, key, score);
+        return RankedScores.update(node);
+    }
+
+    private static <K> Node<K> merge(final Node<K> left, final Node<K> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority > right.priority) {
+            left.right = RankedScores.merge(left.right, right);
+            return RankedScores.update(left);
+        }
+        right.left = RankedScores.merge(left, right.left);
+        return RankedScores.update(right);
+    }
+
+    /* only the subtrees overlapping the [from, to) range are visited */
+    private void collect(final Node<K> node, final int from, final int to, final List<K> keys) {
+        if (node == null || from >= to || from >= node.size || to <= 0)
+            return;
+        final int leftSize = RankedScores.size(node.left);
+        this.collect(node.left, from, to, keys);
+        if (from <= leftSize && leftSize < to)
+            keys.add(node.key);
+        this.collect(node.right, from - leftSize - 1, to - leftSize - 1, keys);
+    }
+
+    private static <K> Node<K> update(final Node<K> node) {
+        node.size = RankedScores.size(node.left) + RankedScores.size(node.right) + 1;
+        return node;
+    }
+
+    private static int size(final Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+}
@@ -0,0 +1,35 @@
+package application.model;
+
+import java.util.StringJoiner;
+
+public class ReviewVotes {
+
+    private final int upvotesCount;
+    private final int downvotesCount;
+
+    ReviewVotes(final int upvotesCount, final int downvotesCount) {
+        this.upvotesCount = upvotesCount;
+        this.downvotesCount = downvotesCount;
+    }
+
+    public int getUpvotesCount() {
+        return this.upvotesCount;
+    }
+
+    public int getDownvotesCount() {
+        return this.downvotesCount;
+    }
+
+    public int getScore() {
+        return this.upvotesCount - this.downvotesCount;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ReviewVotes.class.getSimpleName() + "{", "}")
+                .add("upvotesCount=" + this.upvotesCount)
+                .add("downvotesCount=" + this.downvotesCount)
+                .toString();
+    }
+
+}
@@ -1,22 +1,25 @@
 package application.model;
 
 import application.entities.*;
+import application.interceptors.bindings.ReadOnly;
 import application.model.exceptions.*;
 
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Singleton
 @Lock(LockType.READ)
@@ -25,18 +28,23 @@ public class ReviewsAgent {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Inject
+    private StatisticsAgent statisticsAgent;
+
+    @Inject
+    private LeaderboardAgent leaderboardAgent;
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getReviews() {
         return this.getReviews(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getReviews(@Min(0) final Integer index,
                                    @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Review> query = builder.createQuery(Review.class);
-        Root<Review> review = query.from(Review.class);
-        query.select(review);
-
-        TypedQuery<Review> getReviewsQuery = this.entityManager.createQuery(query);
+        TypedQuery<Review> getReviewsQuery = this.entityManager.createNamedQuery(Review.FIND_ALL, Review.class);
         if (index != null)
             getReviewsQuery.setFirstResult(index);
         if (limit != null)
@@ -56,34 +64,52 @@ public class ReviewsAgent {
         if (this.getReview(review.getReviewerUsername(), review.getReviewedAlbumId()) != null)
             throw new ConflictingReviewException();
         this.entityManager.persist(review);
+        this.statisticsAgent.addRating(review.getReviewedAlbumId(), review.getRating());
+        this.leaderboardAgent.addReview(review.getReviewerUsername(), review.getReviewedAlbumId());
     }
 
+    // only the content, the rating and the missing reviewed artist and genre are taken from the given review: the
+    // votes and reports counts are owned by the StatisticsAgent, and a merge would write back the detached values
     public void updateReview(@NotNull final Review review) {
-        if (this.getReview(review.getReviewerUsername(), review.getReviewedAlbumId()) == null)
+        final Review.ReviewId reviewId = new Review.ReviewId()
+                .setReviewerUsername(review.getReviewerUsername())
+                .setReviewedAlbumId(review.getReviewedAlbumId());
+        final Review storedReview = this.entityManager.find(Review.class, reviewId, LockModeType.PESSIMISTIC_WRITE);
+        if (storedReview == null)
             throw new ReviewNotFoundException();
-        this.entityManager.merge(review);
+        final Integer previousRating = storedReview.getStoredRating();
+        storedReview
+                .setContent(review.getContent())
+                .setRating(review.getRating());
+        if (storedReview.getReviewedArtistId() == null)
+            storedReview.setReviewedArtistId(review.getReviewedArtistId());
+        if (storedReview.getReviewedGenreId() == null)
+            storedReview.setReviewedGenreId(review.getReviewedGenreId());
+        /* the flush updates the stored rating, so that a later update in the same transaction starts from it */
+        this.entityManager.flush();
+        this.statisticsAgent.updateRating(storedReview.getReviewedAlbumId(), previousRating, storedReview.getRating());
     }
 
     public void deleteReview(@NotNull Review review) {
-        if (this.getReview(review.getReviewerUsername(), review.getReviewedAlbumId()) == null)
+        final Review storedReview = this.getReview(review.getReviewerUsername(), review.getReviewedAlbumId());
+        if (storedReview == null)
             throw new ReviewNotFoundException();
-        if (!this.entityManager.contains(review))
-            review = this.entityManager.merge(review);
-        this.entityManager.remove(review);
+        this.entityManager.remove(storedReview);
+        this.statisticsAgent.removeRating(storedReview.getReviewedAlbumId(), storedReview.getStoredRating());
+        this.leaderboardAgent.removeReview(storedReview.getReviewerUsername(), storedReview.getReviewedAlbumId());
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getVotes() {
         return this.getVotes(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getVotes(@Min(0) final Integer index,
                                @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        query.select(vote);
-
-        TypedQuery<Vote> getVotesQuery = this.entityManager.createQuery(query);
+        TypedQuery<Vote> getVotesQuery = this.entityManager.createNamedQuery(Vote.FIND_ALL, Vote.class);
         if (index != null)
             getVotesQuery.setFirstResult(index);
         if (limit != null)
@@ -107,34 +133,43 @@ public class ReviewsAgent {
         if (this.getVote(vote.getVoterUsername(), vote.getReviewerUsername(), vote.getReviewedAlbumId()) != null)
             throw new ConflictingVoteException();
         this.entityManager.persist(vote);
+        this.statisticsAgent.addVote(vote.getReviewerUsername(), vote.getReviewedAlbumId(), vote.getValue());
     }
 
     public void updateVote(@NotNull final Vote vote) {
-        if (this.getVote(vote.getVoterUsername(), vote.getReviewerUsername(), vote.getReviewedAlbumId()) == null)
+        final Vote storedVote =
+                this.getVote(vote.getVoterUsername(), vote.getReviewerUsername(), vote.getReviewedAlbumId());
+        if (storedVote == null)
             throw new VoteNotFoundException();
+        final Boolean previousValue = storedVote.getStoredValue();
         this.entityManager.merge(vote);
+        /* the flush updates the stored value, so that a later update in the same transaction starts from it */
+        this.entityManager.flush();
+        this.statisticsAgent.updateVote
+                (vote.getReviewerUsername(), vote.getReviewedAlbumId(), previousValue, vote.getValue());
     }
 
     public void deleteVote(@NotNull Vote vote) {
-        if (this.getVote(vote.getVoterUsername(), vote.getReviewerUsername(), vote.getReviewedAlbumId()) == null)
+        final Vote storedVote =
+                this.getVote(vote.getVoterUsername(), vote.getReviewerUsername(), vote.getReviewedAlbumId());
+        if (storedVote == null)
             throw new VoteNotFoundException();
-        if (!this.entityManager.contains(vote))
-            vote = this.entityManager.merge(vote);
-        this.entityManager.remove(vote);
+        this.entityManager.remove(storedVote);
+        this.statisticsAgent.removeVote
+                (storedVote.getReviewerUsername(), storedVote.getReviewedAlbumId(), storedVote.getStoredValue());
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Report> getReports() {
         return this.getReports(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Report> getReports(@Min(0) final Integer index,
                                    @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Report> query = builder.createQuery(Report.class);
-        Root<Report> report = query.from(Report.class);
-        query.select(report);
-
-        TypedQuery<Report> getReportsQuery = this.entityManager.createQuery(query);
+        TypedQuery<Report> getReportsQuery = this.entityManager.createNamedQuery(Report.FIND_ALL, Report.class);
         if (index != null)
             getReportsQuery.setFirstResult(index);
         if (limit != null)
@@ -158,6 +193,7 @@ public class ReviewsAgent {
         if (this.getReport(report.getReporterUsername(), report.getReviewerUsername(), report.getReviewedAlbumId()) != null)
             throw new ConflictingReportException();
         this.entityManager.persist(report);
+        this.statisticsAgent.addReport(report.getReviewerUsername(), report.getReviewedAlbumId());
     }
 
     public void updateReport(@NotNull final Report report) {
@@ -172,36 +208,23 @@ public class ReviewsAgent {
         if (!this.entityManager.contains(report))
             report = this.entityManager.merge(report);
         this.entityManager.remove(report);
+        this.statisticsAgent.removeReport(report.getReviewerUsername(), report.getReviewedAlbumId());
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getReviewVotes(@NotNull final Review review) {
         return this.getReviewVotes(review, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getReviewVotes(@NotNull final Review review,
                                      @Min(0) final Integer index,
                                      @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(vote)
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        )
-                ));
-
-        TypedQuery<Vote> getReviewVotesQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
+        TypedQuery<Vote> getReviewVotesQuery = this.entityManager.createNamedQuery(Vote.FIND_BY_REVIEW, Vote.class)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId());
         if (index != null)
             getReviewVotesQuery.setFirstResult(index);
         if (limit != null)
@@ -210,90 +233,43 @@ public class ReviewsAgent {
         return reviewVotes == null || reviewVotes.isEmpty() ? null : reviewVotes;
     }
 
-    public @NotNull Integer getReviewVotesCount(@NotNull final Review review) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(builder.count(vote))
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        )
-                ));
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Vote> getReviewVotesPage(@NotNull final Review review,
+                                                  @NotNull final String cursor,
+                                                  @Min(1) final Integer limit) {
+        return this.getReviewVotesPage(review, null, cursor, limit);
+    }
 
-        TypedQuery<Long> getReviewVotesCountQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewerUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
-        try {
-            Long reviewVotesCount = getReviewVotesCountQuery.getSingleResult();
-            return reviewVotesCount == null ? 0 : Math.toIntExact(reviewVotesCount);
-        } catch (NoResultException e) {
-            return 0;
-        }
+    public @NotNull Integer getReviewVotesCount(@NotNull final Review review) {
+        return review.getUpvotesCount() + review.getDownvotesCount();
     }
 
     public void deleteReviewVotes(@NotNull final Review review) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Vote> delete = builder.createCriteriaDelete(Vote.class);
-        Root<Vote> vote = delete.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        delete
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter)
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId())
+        this.entityManager.createNamedQuery(Vote.DELETE_BY_REVIEW)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId())
                 .executeUpdate();
+        this.statisticsAgent.resetVotes(review.getReviewerUsername(), review.getReviewedAlbumId(), true, true);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getReviewUpvotes(@NotNull final Review review) {
         return this.getReviewUpvotes(review, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getReviewUpvotes(@NotNull final Review review,
                                        @Min(0) final Integer index,
                                        @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(vote)
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                +1
-                        )
-                ));
-
-        TypedQuery<Vote> getReviewUpvotesQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
+        TypedQuery<Vote> getReviewUpvotesQuery = this.entityManager
+                .createNamedQuery(Vote.FIND_BY_REVIEW_AND_VALUE, Vote.class)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId())
+                .setParameter("value", +1);
         if (index != null)
             getReviewUpvotesQuery.setFirstResult(index);
         if (limit != null)
@@ -302,96 +278,43 @@ public class ReviewsAgent {
         return reviewUpvotes == null || reviewUpvotes.isEmpty() ? null : reviewUpvotes;
     }
 
-    public @NotNull Integer getReviewUpvotesCount(@NotNull final Review review) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(builder.count(vote))
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                +1
-                        )
-                ));
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Vote> getReviewUpvotesPage(@NotNull final Review review,
+                                                    @NotNull final String cursor,
+                                                    @Min(1) final Integer limit) {
+        return this.getReviewVotesPage(review, +1, cursor, limit);
+    }
 
-        TypedQuery<Long> getReviewUpvotesCountQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewerUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
-        try {
-            Long reviewUpvotesCount = getReviewUpvotesCountQuery.getSingleResult();
-            return reviewUpvotesCount == null ? 0 : Math.toIntExact(reviewUpvotesCount);
-        } catch (NoResultException e) {
-            return 0;
-        }
+    public @NotNull Integer getReviewUpvotesCount(@NotNull final Review review) {
+        return review.getUpvotesCount();
     }
 
     public void deleteReviewUpvotes(@NotNull final Review review) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Vote> delete = builder.createCriteriaDelete(Vote.class);
-        Root<Vote> vote = delete.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        delete
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                +1
-                        )
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId())
+        this.entityManager.createNamedQuery(Vote.DELETE_BY_REVIEW_AND_VALUE)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId())
+                .setParameter("value", +1)
                 .executeUpdate();
+        this.statisticsAgent.resetVotes(review.getReviewerUsername(), review.getReviewedAlbumId(), true, false);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getReviewDownvotes(@NotNull final Review review) {
         return this.getReviewDownvotes(review, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getReviewDownvotes(@NotNull final Review review,
                                          @Min(0) final Integer index,
                                          @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(vote)
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                -1
-                        )
-                ));
-
-        TypedQuery<Vote> getReviewDownvotesQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
+        TypedQuery<Vote> getReviewDownvotesQuery = this.entityManager
+                .createNamedQuery(Vote.FIND_BY_REVIEW_AND_VALUE, Vote.class)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId())
+                .setParameter("value", -1);
         if (index != null)
             getReviewDownvotesQuery.setFirstResult(index);
         if (limit != null)
@@ -400,14 +323,27 @@ public class ReviewsAgent {
         return reviewDownvotes == null || reviewDownvotes.isEmpty() ? null : reviewDownvotes;
     }
 
-    public @NotNull Integer getReviewDownvotesCount(@NotNull final Review review) {
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Vote> getReviewDownvotesPage(@NotNull final Review review,
+                                                      @NotNull final String cursor,
+                                                      @Min(1) final Integer limit) {
+        return this.getReviewVotesPage(review, -1, cursor, limit);
+    }
+
+    // votes of the review with the given value, or all of them if the value is null, sorted by voter
+    private Page<Vote> getReviewVotesPage(final Review review,
+                                          final Integer value,
+                                          final String cursor,
+                                          final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
         Root<Vote> vote = query.from(Vote.class);
         ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
         ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
+        final List<Order> orders = Collections.singletonList(builder.asc(vote.get(Vote_.voter).get(User_.username)));
         query
-                .select(builder.count(vote))
+                .select(vote)
                 .where(builder.and(
                         builder.equal(
                                 vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
@@ -417,77 +353,47 @@ public class ReviewsAgent {
                                 vote.get(Vote_.review).get(Review_.reviewedAlbumId),
                                 reviewedAlbumIdParameter
                         ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                -1
-                        )
-                ));
+                        value == null ? builder.conjunction() : builder.equal(vote.get(Vote_.value), value),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getReviewDownvotesCountQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewerUsername())
+        TypedQuery<Vote> getReviewVotesQuery = this.entityManager.createQuery(query)
+                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
                 .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
-        try {
-            Long reviewDownvotesCount = getReviewDownvotesCountQuery.getSingleResult();
-            return reviewDownvotesCount == null ? 0 : Math.toIntExact(reviewDownvotesCount);
-        } catch (NoResultException e) {
-            return 0;
-        }
+        getReviewVotesQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getReviewVotesQuery.getResultList(), limit,
+                lastVote -> new PageCursor(lastVote.getVoterUsername()));
     }
 
-    public void deleteReviewDownvotes(@NotNull final Review review) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Vote> delete = builder.createCriteriaDelete(Vote.class);
-        Root<Vote> vote = delete.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        delete
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                -1
-                        )
-                ));
+    public @NotNull Integer getReviewDownvotesCount(@NotNull final Review review) {
+        return review.getDownvotesCount();
+    }
 
-        this.entityManager.createQuery(delete)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId())
+    public void deleteReviewDownvotes(@NotNull final Review review) {
+        this.entityManager.createNamedQuery(Vote.DELETE_BY_REVIEW_AND_VALUE)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId())
+                .setParameter("value", -1)
                 .executeUpdate();
+        this.statisticsAgent.resetVotes(review.getReviewerUsername(), review.getReviewedAlbumId(), false, true);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Report> getReviewReports(@NotNull final Review review) {
         return this.getReviewReports(review, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Report> getReviewReports(@NotNull final Review review,
                                          @Min(0) final Integer index,
                                          @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Report> query = builder.createQuery(Report.class);
-        Root<Report> report = query.from(Report.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(report)
-                .where(builder.and(
-                        builder.equal(
-                                report.get(Report_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                report.get(Report_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        )
-                ));
-
-        TypedQuery<Report> getReviewReportsQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
+        TypedQuery<Report> getReviewReportsQuery = this.entityManager
+                .createNamedQuery(Report.FIND_BY_REVIEW, Report.class)
+                .setParameter("reviewerUsername", review.getReviewerUsername())
+                .setParameter("reviewedAlbumId", review.getReviewedAlbumId());
         if (index != null)
             getReviewReportsQuery.setFirstResult(index);
         if (limit != null)
@@ -496,14 +402,21 @@ public class ReviewsAgent {
         return reviewReports == null || reviewReports.isEmpty() ? null : reviewReports;
     }
 
-    public @NotNull Integer getReviewReportsCount(@NotNull final Review review) {
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Report> getReviewReportsPage(@NotNull final Review review,
+                                                      @NotNull final String cursor,
+                                                      @Min(1) final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<Report> query = builder.createQuery(Report.class);
         Root<Report> report = query.from(Report.class);
         ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
         ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
+        final List<Order> orders =
+                Collections.singletonList(builder.asc(report.get(Report_.reporter).get(User_.username)));
         query
-                .select(builder.count(report))
+                .select(report)
                 .where(builder.and(
                         builder.equal(
                                 report.get(Report_.review).get(Review_.reviewer).get(User_.username),
@@ -512,132 +425,154 @@ public class ReviewsAgent {
                         builder.equal(
                                 report.get(Report_.review).get(Review_.reviewedAlbumId),
                                 reviewedAlbumIdParameter
-                        )
-                ));
+                        ),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getReviewReportsCountQuery = this.entityManager.createQuery(query)
+        TypedQuery<Report> getReviewReportsQuery = this.entityManager.createQuery(query)
                 .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
                 .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
-        try {
-            Long reviewReportsCount = getReviewReportsCountQuery.getSingleResult();
-            return reviewReportsCount == null ? 0 : Math.toIntExact(reviewReportsCount);
-        } catch (NoResultException e) {
-            return 0;
-        }
+        getReviewReportsQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getReviewReportsQuery.getResultList(), limit,
+                lastReport -> new PageCursor(lastReport.getReporterUsername()));
     }
 
-    public void deleteReviewReports(@NotNull final Review review) {
-        /*  @fixme `Criteria API bulk deletion not yet implemented in OpenJPA (current version 3.2.2 in TomEE 8.0.13)`
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Report> delete = builder.createCriteriaDelete(Report.class);
-        Root<Report> report = delete.from(Report.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        delete
-                .where(builder.and(
-                        builder.equal(
-                                report.get(Report_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                report.get(Report_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        )
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId())
-                .executeUpdate();
-        */
+    public @NotNull Integer getReviewReportsCount(@NotNull final Review review) {
+        return review.getReportsCount();
+    }
 
-        this.entityManager.createQuery
-                ("DELETE FROM Report r WHERE r.review.reviewer.username = :reviewerUsername AND r.review.reviewedAlbumId = :reviewedAlbumId")
+    public void deleteReviewReports(@NotNull final Review review) {
+        this.entityManager.createNamedQuery(Report.DELETE_BY_REVIEW)
                 .setParameter("reviewerUsername", review.getReviewerUsername())
                 .setParameter("reviewedAlbumId", review.getReviewedAlbumId())
                 .executeUpdate();
+        this.statisticsAgent.resetReports(review.getReviewerUsername(), review.getReviewedAlbumId());
     }
 
     public @NotNull Integer getReviewScore(@NotNull final Review review) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
-        query
-                .select(builder.sum(vote.get(Vote_.value)))
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                                reviewerUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.review).get(Review_.reviewedAlbumId),
-                                reviewedAlbumIdParameter
-                        )
-                ));
-
-        TypedQuery<Integer> getReviewScoreQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, review.getReviewer().getUsername())
-                .setParameter(reviewedAlbumIdParameter, review.getReviewedAlbumId());
-        try {
-            Integer reviewScore = getReviewScoreQuery.getSingleResult();
-            return reviewScore == null ? 0 : reviewScore;
-        } catch (NoResultException e) {
-            return 0;
-        }
+        return review.getScore();
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public @NotEmpty Map<Review, Integer> getReviewsScores(@NotEmpty final List<Review> reviews) {
+        return this.getReviewsVotes(reviews).entrySet().stream().collect(
+                HashMap::new,
+                (map, entry) -> map.put(entry.getKey(), entry.getValue().getScore()),
+                HashMap::putAll
+        );
+    }
+
+    // current votes counts of all the given reviews, which may be detached and stale, read by a single query
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotEmpty Map<Review, ReviewVotes> getReviewsVotes(@NotEmpty final Collection<Review> reviews) {
+        /* the composite keys are matched by the product of their components, the extra rows are discarded below */
+        List<Object[]> rows = this.entityManager.createNamedQuery(Review.FIND_VOTES_COUNTS_BY_IDS, Object[].class)
+                .setParameter("reviewerUsernames", reviews.stream()
+                        .map(Review::getReviewerUsername)
+                        .collect(Collectors.toSet()))
+                .setParameter("reviewedAlbumIds", reviews.stream()
+                        .map(Review::getReviewedAlbumId)
+                        .collect(Collectors.toSet()))
+                .getResultList();
+        final Map<Review.ReviewId, ReviewVotes> reviewsVotes = new HashMap<>();
+        for (Object[] row : rows) {
+            final Review.ReviewId reviewId = new Review.ReviewId()
+                    .setReviewerUsername((String) row[0])
+                    .setReviewedAlbumId((Long) row[1]);
+            reviewsVotes.put(reviewId, new ReviewVotes((Integer) row[2], (Integer) row[3]));
+        }
+
+        final ReviewVotes noVotes = new ReviewVotes(0, 0);
         return reviews.stream().collect(
                 HashMap::new,
-                (map, review) -> map.put(review, this.getReviewScore(review)),
+                (map, listedReview) -> map.put(listedReview, reviewsVotes.getOrDefault(new Review.ReviewId()
+                        .setReviewerUsername(listedReview.getReviewerUsername())
+                        .setReviewedAlbumId(listedReview.getReviewedAlbumId()), noVotes)),
                 HashMap::putAll
         );
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getTopReviews() {
         return this.getTopReviews(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getTopReviews(@Min(0) final Integer index,
                                       @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Review> query = builder.createQuery(Review.class);
-        Root<Review> review = query.from(Review.class);
-        Join<Review, Vote> vote = review.join(Review_.votes, JoinType.LEFT);
-        query
-                .select(review)
-                .groupBy(review)
-                .orderBy(builder.desc(builder.coalesce(
-                        builder.sum(vote.get(Vote_.value)),
-                        builder.literal(0)
-                )));
+        return this.getTopReviews(index, limit, false);
+    }
+
+    // the reviewers are loaded by the same statement when fetchReviewers is true
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Review> getTopReviews(@Min(0) final Integer index,
+                                      @Min(1) final Integer limit,
+                                      final boolean fetchReviewers) {
+        /* pages are ranked by the leaderboard, only the whole ranking is read from the database */
+        if (limit != null) {
+            final List<Review.ReviewId> topReviewIds =
+                    this.leaderboardAgent.getTopReviewIds(index == null ? 0 : index, limit);
+            if (topReviewIds.isEmpty())
+                return null;
+            final List<Review> topReviews = this.getReviews(topReviewIds, fetchReviewers);
+            return topReviews.isEmpty() ? null : topReviews;
+        }
 
-        TypedQuery<Review> getTopReviewsQuery = this.entityManager.createQuery(query);
+        TypedQuery<Review> getTopReviewsQuery = this.entityManager.createNamedQuery(fetchReviewers
+                ? Review.FIND_ALL_BY_SCORE_FETCH_REVIEWER
+                : Review.FIND_ALL_BY_SCORE, Review.class);
         if (index != null)
             getTopReviewsQuery.setFirstResult(index);
-        if (limit != null)
-            getTopReviewsQuery.setMaxResults(limit);
         List<Review> topReviews = getTopReviewsQuery.getResultList();
         return topReviews == null || topReviews.isEmpty() ? null : topReviews;
     }
 
+    // 1 for the review with the highest score, null if the review is not ranked yet
+    public Integer getReviewRank(@NotNull final Review review) {
+        return this.leaderboardAgent.getReviewRank(review.getReviewerUsername(), review.getReviewedAlbumId());
+    }
+
+    // reviews with the given identifiers in the same order, skipping the ones no longer stored
+    private List<Review> getReviews(final List<Review.ReviewId> reviewIds, final boolean fetchReviewers) {
+        /* the composite keys are matched by the product of their components, the extra rows are discarded below */
+        final Map<Review.ReviewId, Review> reviews = new HashMap<>();
+        this.entityManager.createNamedQuery(fetchReviewers
+                ? Review.FIND_BY_IDS_FETCH_REVIEWER
+                : Review.FIND_BY_IDS, Review.class)
+                .setParameter("reviewerUsernames", reviewIds.stream()
+                        .map(Review.ReviewId::getReviewerUsername)
+                        .collect(Collectors.toSet()))
+                .setParameter("reviewedAlbumIds", reviewIds.stream()
+                        .map(Review.ReviewId::getReviewedAlbumId)
+                        .collect(Collectors.toSet()))
+                .getResultList()
+                .forEach(storedReview -> reviews.put(new Review.ReviewId()
+                        .setReviewerUsername(storedReview.getReviewerUsername())
+                        .setReviewedAlbumId(storedReview.getReviewedAlbumId()), storedReview));
+        return reviewIds.stream()
+                .map(reviews::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getReportedReviews() {
         return this.getReportedReviews(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getReportedReviews(@Min(0) final Integer index,
                                            @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Review> query = builder.createQuery(Review.class);
-        Root<Report> report = query.from(Report.class);
-        query
-                .select(report.get(Report_.review))
-                .groupBy(report.get(Report_.review))
-                .orderBy(builder.desc(builder.count(report)));
-
-        TypedQuery<Review> getReportedReviewsQuery = this.entityManager.createQuery(query);
+        TypedQuery<Review> getReportedReviewsQuery =
+                this.entityManager.createNamedQuery(Review.FIND_REPORTED, Review.class);
         if (index != null)
             getReportedReviewsQuery.setFirstResult(index);
         if (limit != null)
@@ -646,4 +581,31 @@ public class ReviewsAgent {
         return reportedReviews == null || reportedReviews.isEmpty() ? null : reportedReviews;
     }
 
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Review> getReportedReviewsPage(@NotNull final String cursor,
+                                                        @Min(1) final Integer limit) {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Review> query = builder.createQuery(Review.class);
+        Root<Review> review = query.from(Review.class);
+        final List<Order> orders = Arrays.asList(
+                builder.desc(review.get(Review_.reportsCount)),
+                builder.asc(review.get(Review_.reviewer).get(User_.username)),
+                builder.asc(review.get(Review_.reviewedAlbumId))
+        );
+        query
+                .select(review)
+                .where(builder.and(
+                        builder.greaterThan(review.get(Review_.reportsCount), 0),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
+
+        TypedQuery<Review> getReportedReviewsQuery = this.entityManager.createQuery(query);
+        getReportedReviewsQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getReportedReviewsQuery.getResultList(), limit, lastReview -> new PageCursor
+                (lastReview.getReportsCount(), lastReview.getReviewerUsername(), lastReview.getReviewedAlbumId()));
+    }
+
 }
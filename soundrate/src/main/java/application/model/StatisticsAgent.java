@@ -0,0 +1,486 @@
+package application.model;
+
+import application.entities.*;
+import application.interceptors.bindings.ReadOnly;
+
+import javax.annotation.Resource;
+import javax.ejb.EJBException;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.validation.constraints.NotNull;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/*
+ * Maintains the album_stats table and the reviews votes and reports counts within the transaction of every review,
+ * vote and report write. Rows are updated under a pessimistic lock, so concurrent writes on the same album or review
+ * are serialized. Writes that bypass the agents, such as data imported directly into the database, are repaired by
+ * the periodic rebuild.
+ * The album_stats row of an album is created, empty, in its own transaction before it is first locked, and from then
+ * on it is emptied instead of being removed, so that there is always a row to lock: concurrent first reviews of an
+ * album would otherwise both insert it, and all but one would fail.
+ * The rebuilds commit chunk by chunk, each chunk locking its rows before reading what they aggregate, so that the
+ * writes wait for one chunk at most and none of them is overwritten by an older count.
+ */
+@Singleton
+@Lock(LockType.READ)
+public class StatisticsAgent {
+
+    private static final Logger logger = Logger.getLogger(StatisticsAgent.class.getSimpleName());
+
+    // albums, or reviewers, whose rows are rebuilt in a single transaction
+    private static final int REBUILD_CHUNK_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private LeaderboardAgent leaderboardAgent;
+
+    @Resource
+    private SessionContext sessionContext;
+
+    public AlbumStatistics getAlbumStatistics(@NotNull final Long albumId) {
+        return this.entityManager.find(AlbumStatistics.class, albumId);
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull AlbumsStatistics getAlbumsStatistics(@NotNull final Collection<Long> albumIds) {
+        final long[] sortedAlbumIds = albumIds.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .distinct()
+                .sorted()
+                .toArray();
+        final int[] reviewsCounts = new int[sortedAlbumIds.length];
+        final double[] averageRatings = new double[sortedAlbumIds.length];
+        if (sortedAlbumIds.length == 0)
+            return new AlbumsStatistics(sortedAlbumIds, reviewsCounts, averageRatings);
+
+        List<AlbumStatistics> albumsStatistics = this.entityManager
+                .createNamedQuery(AlbumStatistics.FIND_BY_ALBUM_IDS, AlbumStatistics.class)
+                .setParameter("albumIds", Arrays.stream(sortedAlbumIds).boxed().collect(Collectors.toList()))
+                .getResultList();
+        for (AlbumStatistics albumStatisticsRow : albumsStatistics) {
+            final int index = Arrays.binarySearch(sortedAlbumIds, albumStatisticsRow.getAlbumId());
+            if (index < 0 || albumStatisticsRow.isEmpty())
+                continue;
+            reviewsCounts[index] = albumStatisticsRow.getReviewsCount();
+            averageRatings[index] = albumStatisticsRow.getAverageRating();
+        }
+        return new AlbumsStatistics(sortedAlbumIds, reviewsCounts, averageRatings);
+    }
+
+    public void addRating(@NotNull final Long albumId, @NotNull final Integer rating) {
+        this.findAlbumStatisticsForUpdate(albumId).addRating(rating);
+    }
+
+    public void updateRating(@NotNull final Long albumId,
+                             @NotNull final Integer previousRating,
+                             @NotNull final Integer rating) {
+        if (previousRating.equals(rating))
+            return;
+        AlbumStatistics albumStatistics = this.findAlbumStatisticsForUpdate(albumId);
+        // the previous rating may be missing from a row created meanwhile, the rebuild repairs it
+        if (albumStatistics.getRatingCount(previousRating) > 0)
+            albumStatistics.removeRating(previousRating);
+        albumStatistics.addRating(rating);
+    }
+
+    public void removeRating(@NotNull final Long albumId, @NotNull final Integer rating) {
+        AlbumStatistics albumStatistics =
+                this.entityManager.find(AlbumStatistics.class, albumId, LockModeType.PESSIMISTIC_WRITE);
+        if (albumStatistics != null && albumStatistics.getRatingCount(rating) > 0)
+            albumStatistics.removeRating(rating);
+    }
+
+    // removes the rating of every album of the map, locking all of their rows with a single query
+    public void removeRatings(@NotNull final Map<Long, Integer> ratingsByAlbumId) {
+        if (ratingsByAlbumId.isEmpty())
+            return;
+        final List<AlbumStatistics> albumsStatistics = this.entityManager
+                .createNamedQuery(AlbumStatistics.FIND_BY_ALBUM_IDS, AlbumStatistics.class)
+                .setParameter("albumIds", new ArrayList<>(ratingsByAlbumId.keySet()))
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        for (AlbumStatistics albumStatistics : albumsStatistics) {
+            final int rating = ratingsByAlbumId.get(albumStatistics.getAlbumId());
+            if (albumStatistics.getRatingCount(rating) > 0)
+                albumStatistics.removeRating(rating);
+        }
+    }
+
+    public void deleteAlbumStatistics(@NotNull final Long albumId) {
+        AlbumStatistics albumStatistics =
+                this.entityManager.find(AlbumStatistics.class, albumId, LockModeType.PESSIMISTIC_WRITE);
+        if (albumStatistics != null)
+            albumStatistics.clear();
+    }
+
+    private AlbumStatistics findAlbumStatisticsForUpdate(final Long albumId) {
+        /* a plain lookup first, as locking a missing row could lock the gap where the new one has to be inserted */
+        final boolean exists = !this.entityManager
+                .createNamedQuery(AlbumStatistics.FIND_ALBUM_ID, Long.class)
+                .setParameter("albumId", albumId)
+                .getResultList()
+                .isEmpty();
+        if (!exists)
+            this.createMissingAlbumStatistics(albumId);
+        return this.entityManager.find(AlbumStatistics.class, albumId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    private void createMissingAlbumStatistics(final Long albumId) {
+        try {
+            this.sessionContext.getBusinessObject(StatisticsAgent.class).createAlbumStatistics(albumId);
+        } catch (EJBException e) {
+            // the row was created meanwhile by a concurrent transaction
+            StatisticsAgent.logger.fine("Album statistics of " + albumId + " created concurrently");
+        }
+    }
+
+    // inserts the empty row of the album, if missing, committing it right away
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void createAlbumStatistics(@NotNull final Long albumId) {
+        if (this.entityManager.find(AlbumStatistics.class, albumId) != null)
+            return;
+        this.entityManager.persist(new AlbumStatistics().setAlbumId(albumId));
+        this.entityManager.flush();
+    }
+
+    public void addVote(@NotNull final String reviewerUsername,
+                        @NotNull final Long reviewedAlbumId,
+                        @NotNull final Boolean value) {
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review != null)
+            this.updateScore(review, () -> review.addVote(value));
+    }
+
+    public void updateVote(@NotNull final String reviewerUsername,
+                           @NotNull final Long reviewedAlbumId,
+                           @NotNull final Boolean previousValue,
+                           @NotNull final Boolean value) {
+        if (previousValue.equals(value))
+            return;
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review != null)
+            this.updateScore(review, () -> review.removeVote(previousValue).addVote(value));
+    }
+
+    public void removeVote(@NotNull final String reviewerUsername,
+                           @NotNull final Long reviewedAlbumId,
+                           @NotNull final Boolean value) {
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review != null)
+            this.updateScore(review, () -> review.removeVote(value));
+    }
+
+    // to be called after the upvotes and/or the downvotes of the review have been bulk deleted
+    public void resetVotes(@NotNull final String reviewerUsername,
+                           @NotNull final Long reviewedAlbumId,
+                           final boolean upvotes,
+                           final boolean downvotes) {
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review == null)
+            return;
+        this.updateScore(review, () -> {
+            if (upvotes)
+                review.setUpvotesCount(0);
+            if (downvotes)
+                review.setDownvotesCount(0);
+        });
+    }
+
+    // applies the change of the review score to the leaderboard too
+    private void updateScore(final Review review, final Runnable update) {
+        final int previousScore = review.getScore();
+        update.run();
+        this.leaderboardAgent.updateReviewScore
+                (review.getReviewerUsername(), review.getReviewedAlbumId(), review.getScore() - previousScore);
+    }
+
+    public void addReport(@NotNull final String reviewerUsername, @NotNull final Long reviewedAlbumId) {
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review != null)
+            review.setReportsCount(review.getReportsCount() + 1);
+    }
+
+    public void removeReport(@NotNull final String reviewerUsername, @NotNull final Long reviewedAlbumId) {
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review != null)
+            review.setReportsCount(review.getReportsCount() - 1);
+    }
+
+    // to be called after the reports of the review have been bulk deleted
+    public void resetReports(@NotNull final String reviewerUsername, @NotNull final Long reviewedAlbumId) {
+        Review review = this.findReviewForUpdate(reviewerUsername, reviewedAlbumId);
+        if (review != null)
+            review.setReportsCount(0);
+    }
+
+    private Review findReviewForUpdate(final String reviewerUsername, final Long reviewedAlbumId) {
+        Review.ReviewId reviewId = new Review.ReviewId()
+                .setReviewerUsername(reviewerUsername)
+                .setReviewedAlbumId(reviewedAlbumId);
+        return this.entityManager.find(Review.class, reviewId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    // every rebuild commits on its own, chunk by chunk when it locks rows
+    @Schedule(hour = "4", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    private void scheduledRebuild() {
+        final StatisticsAgent statisticsAgent = this.sessionContext.getBusinessObject(StatisticsAgent.class);
+        statisticsAgent.rebuildAlbumsStatistics();
+        statisticsAgent.rebuildReviewsScores();
+        statisticsAgent.rebuildReviewsReportsCounts();
+    }
+
+    // recomputes the whole table from the reviews, a chunk of albums at a time, returns the number of repaired rows
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int rebuildAlbumsStatistics() {
+        final long begin = System.nanoTime();
+        final StatisticsAgent statisticsAgent = this.sessionContext.getBusinessObject(StatisticsAgent.class);
+
+        int repairedRows = 0;
+        long fromAlbumId = Long.MIN_VALUE;
+        while (fromAlbumId != Long.MAX_VALUE) {
+            final List<Long> reviewedAlbumIds = this.entityManager
+                    .createNamedQuery(Review.FIND_REVIEWED_ALBUM_IDS_AFTER, Long.class)
+                    .setParameter("reviewedAlbumId", fromAlbumId)
+                    .setMaxResults(StatisticsAgent.REBUILD_CHUNK_SIZE)
+                    .getResultList();
+            final List<Long> storedAlbumIds = this.entityManager
+                    .createNamedQuery(AlbumStatistics.FIND_ALBUM_IDS_AFTER, Long.class)
+                    .setParameter("albumId", fromAlbumId)
+                    .setMaxResults(StatisticsAgent.REBUILD_CHUNK_SIZE)
+                    .getResultList();
+            /* both lists hold every album id of the chunk, the last one when neither of them is full */
+            long toAlbumId = Long.MAX_VALUE;
+            if (reviewedAlbumIds.size() == StatisticsAgent.REBUILD_CHUNK_SIZE)
+                toAlbumId = Math.min(toAlbumId, reviewedAlbumIds.get(reviewedAlbumIds.size() - 1));
+            if (storedAlbumIds.size() == StatisticsAgent.REBUILD_CHUNK_SIZE)
+                toAlbumId = Math.min(toAlbumId, storedAlbumIds.get(storedAlbumIds.size() - 1));
+            /* the missing rows are created the way the writes create them, so that the chunk can lock them all */
+            for (Long albumId : reviewedAlbumIds)
+                if (albumId <= toAlbumId && Collections.binarySearch(storedAlbumIds, albumId) < 0)
+                    this.createMissingAlbumStatistics(albumId);
+            repairedRows += statisticsAgent.rebuildAlbumsStatistics(fromAlbumId, toAlbumId);
+            fromAlbumId = toAlbumId;
+        }
+
+        final long end = System.nanoTime();
+        StatisticsAgent.logger.info(String.format("Rebuilt the albums statistics, %d rows repaired. Time elapsed: %d ms.",
+                repairedRows, TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+        return repairedRows;
+    }
+
+    // recomputes the rows of the albums whose id is greater than fromAlbumId and at most toAlbumId
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int rebuildAlbumsStatistics(final long fromAlbumId, final long toAlbumId) {
+        /* the rows are locked before the reviews are read, so that the writes happening meanwhile wait for the chunk
+           and the reviews read include every write already applied to the rows */
+        final List<AlbumStatistics> storedAlbumsStatistics = this.entityManager
+                .createNamedQuery(AlbumStatistics.FIND_BY_ALBUM_ID_RANGE, AlbumStatistics.class)
+                .setParameter("fromAlbumId", fromAlbumId)
+                .setParameter("toAlbumId", toAlbumId)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+
+        final Map<Long, AlbumStatistics> actualAlbumsStatistics = new HashMap<>();
+        final List<Object[]> rows = this.entityManager
+                .createNamedQuery(Review.COUNT_RATINGS_BY_REVIEWED_ALBUM_ID_RANGE, Object[].class)
+                .setParameter("fromAlbumId", fromAlbumId)
+                .setParameter("toAlbumId", toAlbumId)
+                .getResultList();
+        for (Object[] row : rows) {
+            final Long albumId = ((Number) row[0]).longValue();
+            final int rating = ((Number) row[1]).intValue();
+            final int ratingCount = Math.toIntExact(((Number) row[2]).longValue());
+            actualAlbumsStatistics
+                    .computeIfAbsent(albumId, id -> new AlbumStatistics().setAlbumId(id))
+                    .addRatings(rating, ratingCount);
+        }
+
+        /* the albums first reviewed after the rows were locked have their rows maintained by their writes */
+        int repairedRows = 0;
+        for (AlbumStatistics storedAlbumStatistics : storedAlbumsStatistics) {
+            final AlbumStatistics actualAlbumStatistics =
+                    actualAlbumsStatistics.get(storedAlbumStatistics.getAlbumId());
+            if (actualAlbumStatistics == null) {
+                /* rows are emptied rather than removed, see the class comment */
+                if (!storedAlbumStatistics.isEmpty()) {
+                    storedAlbumStatistics.clear();
+                    repairedRows++;
+                }
+            } else if (!actualAlbumStatistics.equals(storedAlbumStatistics)) {
+                storedAlbumStatistics
+                        .setReviewsCount(actualAlbumStatistics.getReviewsCount())
+                        .setRatingsSum(actualAlbumStatistics.getRatingsSum())
+                        .setRatingsHistogram(actualAlbumStatistics.getRatingsHistogram());
+                repairedRows++;
+            }
+        }
+        return repairedRows;
+    }
+
+    // recomputes the votes counts of the reviews from the votes, a chunk of reviewers at a time, returns the number of
+    // repaired reviews
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int rebuildReviewsScores() {
+        final long begin = System.nanoTime();
+        final StatisticsAgent statisticsAgent = this.sessionContext.getBusinessObject(StatisticsAgent.class);
+
+        int repairedReviews = 0;
+        String fromReviewerUsername = "";
+        List<String> reviewersUsernames;
+        do {
+            reviewersUsernames = this.findReviewersUsernamesAfter(fromReviewerUsername);
+            if (reviewersUsernames.isEmpty())
+                break;
+            final String toReviewerUsername = reviewersUsernames.get(reviewersUsernames.size() - 1);
+            repairedReviews += statisticsAgent.rebuildReviewsScores(fromReviewerUsername, toReviewerUsername);
+            fromReviewerUsername = toReviewerUsername;
+        } while (reviewersUsernames.size() == StatisticsAgent.REBUILD_CHUNK_SIZE);
+
+        /* the leaderboard is reloaded too, once the chunks are committed, as it may have missed the same writes */
+        this.leaderboardAgent.reload();
+
+        final long end = System.nanoTime();
+        StatisticsAgent.logger.info(String.format("Rebuilt the reviews scores, %d reviews repaired. Time elapsed: %d ms.",
+                repairedReviews, TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+        return repairedReviews;
+    }
+
+    // recomputes the votes counts of the reviews whose reviewer username is greater than fromReviewerUsername and at
+    // most toReviewerUsername
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int rebuildReviewsScores(final String fromReviewerUsername, final String toReviewerUsername) {
+        /* the reviews are locked before the votes are read, so that the votes written meanwhile wait for the chunk
+           and the votes read include every vote already counted by the reviews */
+        final List<Review> storedReviews = this.findReviewsForUpdate(fromReviewerUsername, toReviewerUsername);
+
+        // upvotes and downvotes count of every voted review
+        final Map<Review.ReviewId, int[]> actualVotesCounts = new HashMap<>();
+        final List<Object[]> rows = this.entityManager
+                .createNamedQuery(Vote.COUNT_BY_REVIEWER_USERNAME_RANGE_AND_VALUE, Object[].class)
+                .setParameter("fromReviewerUsername", fromReviewerUsername)
+                .setParameter("toReviewerUsername", toReviewerUsername)
+                .getResultList();
+        for (Object[] row : rows) {
+            final Review.ReviewId reviewId = new Review.ReviewId()
+                    .setReviewerUsername((String) row[0])
+                    .setReviewedAlbumId(((Number) row[1]).longValue());
+            final int[] votesCounts = actualVotesCounts.computeIfAbsent(reviewId, id -> new int[2]);
+            votesCounts[((Number) row[2]).intValue() > 0 ? 0 : 1] += Math.toIntExact(((Number) row[3]).longValue());
+        }
+
+        int repairedReviews = 0;
+        for (Review review : storedReviews) {
+            final Review.ReviewId reviewId = new Review.ReviewId()
+                    .setReviewerUsername(review.getReviewerUsername())
+                    .setReviewedAlbumId(review.getReviewedAlbumId());
+            if (this.repairVotesCounts(review, actualVotesCounts.get(reviewId)))
+                repairedReviews++;
+        }
+        return repairedReviews;
+    }
+
+    // recomputes the reports counts of the reviews from the reports, a chunk of reviewers at a time, returns the
+    // number of repaired reviews
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int rebuildReviewsReportsCounts() {
+        final long begin = System.nanoTime();
+        final StatisticsAgent statisticsAgent = this.sessionContext.getBusinessObject(StatisticsAgent.class);
+
+        int repairedReviews = 0;
+        String fromReviewerUsername = "";
+        List<String> reviewersUsernames;
+        do {
+            reviewersUsernames = this.findReviewersUsernamesAfter(fromReviewerUsername);
+            if (reviewersUsernames.isEmpty())
+                break;
+            final String toReviewerUsername = reviewersUsernames.get(reviewersUsernames.size() - 1);
+            repairedReviews += statisticsAgent.rebuildReviewsReportsCounts(fromReviewerUsername, toReviewerUsername);
+            fromReviewerUsername = toReviewerUsername;
+        } while (reviewersUsernames.size() == StatisticsAgent.REBUILD_CHUNK_SIZE);
+
+        final long end = System.nanoTime();
+        StatisticsAgent.logger.info(String.format("Rebuilt the reviews reports counts, %d reviews repaired. Time elapsed: %d ms.",
+                repairedReviews, TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+        return repairedReviews;
+    }
+
+    // recomputes the reports counts of the reviews whose reviewer username is greater than fromReviewerUsername and at
+    // most toReviewerUsername
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int rebuildReviewsReportsCounts(final String fromReviewerUsername, final String toReviewerUsername) {
+        /* the reviews are locked before the reports are read, as for the votes */
+        final List<Review> storedReviews = this.findReviewsForUpdate(fromReviewerUsername, toReviewerUsername);
+
+        final Map<Review.ReviewId, Integer> actualReportsCounts = new HashMap<>();
+        final List<Object[]> rows = this.entityManager
+                .createNamedQuery(Report.COUNT_BY_REVIEWER_USERNAME_RANGE, Object[].class)
+                .setParameter("fromReviewerUsername", fromReviewerUsername)
+                .setParameter("toReviewerUsername", toReviewerUsername)
+                .getResultList();
+        for (Object[] row : rows) {
+            final Review.ReviewId reviewId = new Review.ReviewId()
+                    .setReviewerUsername((String) row[0])
+                    .setReviewedAlbumId(((Number) row[1]).longValue());
+            actualReportsCounts.put(reviewId, Math.toIntExact(((Number) row[2]).longValue()));
+        }
+
+        int repairedReviews = 0;
+        for (Review review : storedReviews) {
+            final Review.ReviewId reviewId = new Review.ReviewId()
+                    .setReviewerUsername(review.getReviewerUsername())
+                    .setReviewedAlbumId(review.getReviewedAlbumId());
+            final int reportsCount = actualReportsCounts.getOrDefault(reviewId, 0);
+            if (review.getReportsCount() != reportsCount) {
+                review.setReportsCount(reportsCount);
+                repairedReviews++;
+            }
+        }
+        return repairedReviews;
+    }
+
+    private List<String> findReviewersUsernamesAfter(final String reviewerUsername) {
+        return this.entityManager
+                .createNamedQuery(Review.FIND_REVIEWERS_USERNAMES_AFTER, String.class)
+                .setParameter("reviewerUsername", reviewerUsername)
+                .setMaxResults(StatisticsAgent.REBUILD_CHUNK_SIZE)
+                .getResultList();
+    }
+
+    private List<Review> findReviewsForUpdate(final String fromReviewerUsername, final String toReviewerUsername) {
+        return this.entityManager
+                .createNamedQuery(Review.FIND_BY_REVIEWER_USERNAME_RANGE, Review.class)
+                .setParameter("fromReviewerUsername", fromReviewerUsername)
+                .setParameter("toReviewerUsername", toReviewerUsername)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    private boolean repairVotesCounts(final Review review, final int[] votesCounts) {
+        final int upvotesCount = votesCounts == null ? 0 : votesCounts[0];
+        final int downvotesCount = votesCounts == null ? 0 : votesCounts[1];
+        if (review.getUpvotesCount() == upvotesCount && review.getDownvotesCount() == downvotesCount)
+            return false;
+        review
+                .setUpvotesCount(upvotesCount)
+                .setDownvotesCount(downvotesCount);
+        return true;
+    }
+
+}
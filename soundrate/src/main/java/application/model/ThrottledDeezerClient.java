@@ -0,0 +1,284 @@
+package application.model;
+
+import application.model.exceptions.QuotaExceededException;
+import deezer.client.DeezerClient;
+import deezer.model.Album;
+import deezer.model.Artist;
+import deezer.model.Genre;
+import deezer.model.data.Albums;
+import deezer.model.data.Artists;
+import deezer.model.search.AlbumsSearch;
+import deezer.model.search.ArtistsSearch;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * DeezerClient wrapper enforcing the API quota through a token bucket refilled continuously over the quota period.
+ * Every call takes a token on behalf of the priority class of the calling thread, interactive by default.
+ * Background classes may only take tokens while the bucket holds more than their reserved share of the capacity,
+ * so that cache refreshes and prefetches can never drain the tokens left for page loads. When no token is available
+ * interactive calls wait for one up to a bounded time, while background calls fail immediately.
+ * Tokens are refilled by the passing of time only, so waiting callers simply park until enough of it elapsed instead
+ * of waiting for a signal, and hold no lock while parked.
+ */
+public class ThrottledDeezerClient {
+
+    public enum Priority {
+
+        INTERACTIVE(0.0), REFRESH(0.25), PREFETCH(0.5);
+
+        private final double reservedShare;
+
+        Priority(final double reservedShare) {
+            this.reservedShare = reservedShare;
+        }
+
+    }
+
+    private static final ThreadLocal<Priority> currentPriority = ThreadLocal.withInitial(() -> Priority.INTERACTIVE);
+
+    private final DeezerClient client;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long interactiveMaximumWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private double tokens;
+    private long lastRefillTime;
+
+    private final Map<Priority, LongAdder> acceptedCalls = new EnumMap<>(Priority.class);
+    private final Map<Priority, LongAdder> rejectedCalls = new EnumMap<>(Priority.class);
+
+    public ThrottledDeezerClient(final DeezerClient client, final int requests, final Duration period,
+                                 final Duration interactiveMaximumWait) {
+        if (requests < 1 || period.isNegative() || period.isZero() || interactiveMaximumWait.isNegative())
+            throw new IllegalArgumentException();
+        this.client = client;
+        this.capacity = requests;
+        this.tokensPerNano = requests / (double) period.toNanos();
+        this.interactiveMaximumWaitNanos = interactiveMaximumWait.toNanos();
+        this.tokens = this.capacity;
+        this.lastRefillTime = System.nanoTime();
+        for (Priority priority : Priority.values()) {
+            this.acceptedCalls.put(priority, new LongAdder());
+            this.rejectedCalls.put(priority, new LongAdder());
+        }
+    }
+
+    public static Priority getCurrentPriority() {
+        return ThrottledDeezerClient.currentPriority.get();
+    }
+
+    public static <T> T callWithPriority(final Priority priority, final Supplier<T> call) {
+        final Priority previousPriority = ThrottledDeezerClient.currentPriority.get();
+        ThrottledDeezerClient.currentPriority.set(priority);
+        try {
+            return call.get();
+        } finally {
+            ThrottledDeezerClient.currentPriority.set(previousPriority);
+        }
+    }
+
+    public static void runWithPriority(final Priority priority, final Runnable task) {
+        ThrottledDeezerClient.callWithPriority(priority, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // executor running its tasks on behalf of the given priority class
+    public static Executor withPriority(final Priority priority, final Executor executor) {
+        return task -> executor.execute(() -> ThrottledDeezerClient.runWithPriority(priority, task));
+    }
+
+    public Album getAlbum(final Long albumId) {
+        this.acquire();
+        return this.client.getAlbum(albumId);
+    }
+
+    public Artist getArtist(final Long artistId) {
+        this.acquire();
+        return this.client.getArtist(artistId);
+    }
+
+    public Genre getGenre(final Long genreId) {
+        this.acquire();
+        return this.client.getGenre(genreId);
+    }
+
+    public Albums getArtistAlbums(final Long artistId, final Integer index, final Integer limit) {
+        this.acquire();
+        return this.client.getArtistAlbums(artistId, index, limit);
+    }
+
+    public Albums getTopAlbums(final Integer index, final Integer limit) {
+        this.acquire();
+        return this.client.getTopAlbums(index, limit);
+    }
+
+    public Albums getAlbumsSearchResults(final AlbumsSearch search, final Integer index, final Integer limit) {
+        this.acquire();
+        return this.client.getAlbumsSearchResults(search, index, limit);
+    }
+
+    public Artists getArtistsSearchResults(final ArtistsSearch search, final Integer index, final Integer limit) {
+        this.acquire();
+        return this.client.getArtistsSearchResults(search, index, limit);
+    }
+
+    public Usage getUsage() {
+        final double tokens;
+        this.lock.lock();
+        try {
+            this.refill(System.nanoTime());
+            tokens = this.tokens;
+        } finally {
+            this.lock.unlock();
+        }
+        final Map<Priority, Long> acceptedCalls = new EnumMap<>(Priority.class);
+        final Map<Priority, Long> rejectedCalls = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            acceptedCalls.put(priority, this.acceptedCalls.get(priority).sum());
+            rejectedCalls.put(priority, this.rejectedCalls.get(priority).sum());
+        }
+        return new Usage((int) this.capacity, (int) tokens, acceptedCalls, rejectedCalls);
+    }
+
+    private void acquire() {
+        final Priority priority = ThrottledDeezerClient.currentPriority.get();
+        // the call is allowed only if the bucket still holds a token above the priority reserved share
+        final double threshold = 1 + this.capacity * priority.reservedShare;
+        final long deadline = System.nanoTime()
+                + (priority == Priority.INTERACTIVE ? this.interactiveMaximumWaitNanos : 0);
+        while (true) {
+            final long now = System.nanoTime();
+            final long refillNanos;
+            this.lock.lock();
+            try {
+                this.refill(now);
+                if (this.tokens >= threshold) {
+                    this.tokens--;
+                    this.acceptedCalls.get(priority).increment();
+                    return;
+                }
+                refillNanos = (long) Math.ceil((threshold - this.tokens) / this.tokensPerNano);
+            } finally {
+                this.lock.unlock();
+            }
+            if (refillNanos > deadline - now) {
+                this.rejectedCalls.get(priority).increment();
+                throw new QuotaExceededException("Deezer API quota exhausted for " + priority + " calls, retry in "
+                        + TimeUnit.NANOSECONDS.toMillis(refillNanos) + " ms", Duration.ofNanos(refillNanos));
+            }
+            // other callers may take the refilled tokens first, in which case the wait goes on until the deadline
+            LockSupport.parkNanos(this, refillNanos);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                this.rejectedCalls.get(priority).increment();
+                throw new QuotaExceededException(new InterruptedException());
+            }
+        }
+    }
+
+    private void refill(final long now) {
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefillTime) * this.tokensPerNano);
+        this.lastRefillTime = now;
+    }
+
+    public static class Usage {
+
+        private final int capacity;
+        private final int availableTokens;
+        private final Map<Priority, PriorityClassUsage> priorityClasses = new EnumMap<>(Priority.class);
+
+        private Usage(final int capacity, final int availableTokens,
+                      final Map<Priority, Long> acceptedCalls, final Map<Priority, Long> rejectedCalls) {
+            this.capacity = capacity;
+            this.availableTokens = availableTokens;
+            for (Priority priority : Priority.values()) {
+                // tokens above the reserved share, the ones the class may still take
+                final int priorityAvailableTokens =
+                        Math.max(0, availableTokens - (int) Math.ceil(capacity * priority.reservedShare));
+                this.priorityClasses.put(priority, new PriorityClassUsage(priorityAvailableTokens,
+                        acceptedCalls.get(priority), rejectedCalls.get(priority)));
+            }
+        }
+
+        public int getCapacity() {
+            return this.capacity;
+        }
+
+        public int getAvailableTokens() {
+            return this.availableTokens;
+        }
+
+        public Map<Priority, PriorityClassUsage> getPriorityClasses() {
+            return this.priorityClasses;
+        }
+
+        public long getAcceptedCalls(final Priority priority) {
+            return this.priorityClasses.get(priority).getAcceptedCalls();
+        }
+
+        public long getRejectedCalls(final Priority priority) {
+            return this.priorityClasses.get(priority).getRejectedCalls();
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", Usage.class.getSimpleName() + "{", "}")
+                    .add("capacity=" + this.capacity)
+                    .add("availableTokens=" + this.availableTokens)
+                    .add("priorityClasses=" + this.priorityClasses)
+                    .toString();
+        }
+
+    }
+
+    public static class PriorityClassUsage {
+
+        private final int availableTokens;
+        private final long acceptedCalls;
+        private final long rejectedCalls;
+
+        private PriorityClassUsage(final int availableTokens, final long acceptedCalls, final long rejectedCalls) {
+            this.availableTokens = availableTokens;
+            this.acceptedCalls = acceptedCalls;
+            this.rejectedCalls = rejectedCalls;
+        }
+
+        public int getAvailableTokens() {
+            return this.availableTokens;
+        }
+
+        public long getAcceptedCalls() {
+            return this.acceptedCalls;
+        }
+
+        public long getRejectedCalls() {
+            return this.rejectedCalls;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", PriorityClassUsage.class.getSimpleName() + "{", "}")
+                    .add("availableTokens=" + this.availableTokens)
+                    .add("acceptedCalls=" + this.acceptedCalls)
+                    .add("rejectedCalls=" + this.rejectedCalls)
+                    .toString();
+        }
+
+    }
+
+}
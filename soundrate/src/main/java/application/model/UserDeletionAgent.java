@@ -0,0 +1,90 @@
+package application.model;
+
+import application.entities.User;
+import application.model.exceptions.UserNotFoundException;
+
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Deletes in background the users whose reviews, votes, reports and backlog are too large to be deleted within a
+ * single transaction. Their rows are deleted chunk by chunk, every chunk committing on its own so that the tables are
+ * locked for short times only, and the user is deleted last by the UsersAgent, along with the rows created in the
+ * meantime. The progress of the deletions is kept in memory until the application is restarted.
+ */
+@Singleton
+@Lock(LockType.READ)
+public class UserDeletionAgent {
+
+    private static final Logger logger = Logger.getLogger(UserDeletionAgent.class.getSimpleName());
+
+    private static final int CHUNK_SIZE = 100;
+
+    private final ConcurrentMap<String, UserDeletionProgress> deletions = new ConcurrentHashMap<>();
+
+    @Inject
+    private UsersAgent usersAgent;
+
+    @Resource
+    private ManagedExecutorService executorService;
+
+    // returns the progress of the deletion of the user already running, if any
+    public @NotNull UserDeletionProgress scheduleUserDeletion(@NotNull final User user) {
+        if (this.usersAgent.getUser(user.getUsername()) == null)
+            throw new UserNotFoundException();
+        final UserDeletionProgress progress = new UserDeletionProgress(user.getUsername(), this.getUserRowsCount(user));
+        final UserDeletionProgress scheduledProgress = this.deletions.merge(user.getUsername(), progress,
+                (previousProgress, newProgress) ->
+                        previousProgress.getState() == UserDeletionProgress.State.RUNNING
+                                ? previousProgress
+                                : newProgress);
+        if (scheduledProgress == progress)
+            this.executorService.execute(() -> this.deleteUser(user, progress));
+        return scheduledProgress;
+    }
+
+    // reviews, votes, reports and backlog entries of the user, deleted along with it
+    public int getUserRowsCount(@NotNull final User user) {
+        return this.usersAgent.getUserReviewsCount(user) + this.usersAgent.getUserVotesCount(user)
+                + this.usersAgent.getUserReportsCount(user) + this.usersAgent.getUserBacklogLength(user);
+    }
+
+    // null if no deletion of the user has been scheduled
+    public UserDeletionProgress getUserDeletionProgress(@NotNull final String username) {
+        return this.deletions.get(username);
+    }
+
+    private void deleteUser(final User user, final UserDeletionProgress progress) {
+        final long begin = System.nanoTime();
+        try {
+            int deletedCount;
+            do {
+                deletedCount = this.usersAgent.deleteUserData(user, UserDeletionAgent.CHUNK_SIZE);
+                progress.addDeletedCount(deletedCount);
+            } while (deletedCount > 0);
+            this.usersAgent.deleteUser(user);
+            progress.setState(UserDeletionProgress.State.COMPLETED);
+        } catch (RuntimeException e) {
+            progress.setState(UserDeletionProgress.State.FAILED);
+            UserDeletionAgent.logger.log(Level.WARNING,
+                    String.format("Could not delete the user %s, %d rows deleted", user.getUsername(),
+                            progress.getDeletedCount()), e);
+            return;
+        }
+        final long end = System.nanoTime();
+        UserDeletionAgent.logger.info(String.format("Deleted the user %s and %d rows. Time elapsed: %d ms.",
+                user.getUsername(), progress.getDeletedCount(),
+                TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+    }
+
+}
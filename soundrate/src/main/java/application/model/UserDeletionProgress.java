@@ -0,0 +1,66 @@
+package application.model;
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UserDeletionProgress {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String username;
+    // reviews, votes, reports and backlog entries of the user when the deletion was scheduled
+    private final int totalCount;
+    private final AtomicInteger deletedCount = new AtomicInteger();
+    private volatile State state = State.RUNNING;
+
+    UserDeletionProgress(final String username, final int totalCount) {
+        this.username = username;
+        this.totalCount = totalCount;
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public int getTotalCount() {
+        return this.totalCount;
+    }
+
+    public int getDeletedCount() {
+        return this.deletedCount.get();
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    // between 0 and 1, the rows created after the deletion was scheduled are deleted too but not accounted for
+    public double getCompletion() {
+        if (this.state == State.COMPLETED)
+            return 1;
+        return this.totalCount == 0 ? 0 : Math.min(1, (double) this.deletedCount.get() / this.totalCount);
+    }
+
+    void addDeletedCount(final int deletedCount) {
+        this.deletedCount.addAndGet(deletedCount);
+    }
+
+    void setState(final State state) {
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", UserDeletionProgress.class.getSimpleName() + "{", "}")
+                .add("username='" + this.username + "'")
+                .add("totalCount=" + this.totalCount)
+                .add("deletedCount=" + this.deletedCount.get())
+                .add("state=" + this.state)
+                .toString();
+    }
+
+}
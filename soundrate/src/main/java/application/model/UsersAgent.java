@@ -1,47 +1,67 @@
 package application.model;
 
 import application.entities.*;
+import application.interceptors.bindings.ReadOnly;
 import application.interceptors.bindings.UserUpdate;
 import application.model.exceptions.ConflictingEmailAddressException;
 import application.model.exceptions.ConflictingUsernameException;
 import application.model.exceptions.UserNotFoundException;
 
+import javax.annotation.Resource;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
+import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
 
 @Singleton
 @Lock(LockType.READ)
 public class UsersAgent {
 
+    // chunk size of the deletions made by the agent, every chunk of a user deletion committing on its own
+    private static final int DELETION_CHUNK_SIZE = 500;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Inject
+    private StatisticsAgent statisticsAgent;
+
+    @Inject
+    private LeaderboardAgent leaderboardAgent;
+
+    @Inject
+    private EntityCacheAgent entityCacheAgent;
+
+    @Resource
+    private SessionContext sessionContext;
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<User> getUsers() {
         return this.getUsers(null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<User> getUsers(@Min(0) final Integer index,
                                @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<User> query = builder.createQuery(User.class);
-        Root<User> user = query.from(User.class);
-        query.select(user);
-
-        TypedQuery<User> getUsersQuery = this.entityManager.createQuery(query);
+        TypedQuery<User> getUsersQuery = this.entityManager.createNamedQuery(User.FIND_ALL, User.class);
         if (index != null)
             getUsersQuery.setFirstResult(index);
         if (limit != null)
@@ -54,19 +74,8 @@ public class UsersAgent {
     }
 
     public User getUserByEmail(@NotNull @Email final String email) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<User> query = builder.createQuery(User.class);
-        Root<User> user = query.from(User.class);
-        ParameterExpression<String> emailParameter = builder.parameter(String.class);
-        query
-                .select(user)
-                .where(builder.equal(
-                        user.get(User_.email),
-                        emailParameter
-                ));
-
-        TypedQuery<User> getUserByEmailQuery = this.entityManager.createQuery(query)
-                .setParameter(emailParameter, email);
+        TypedQuery<User> getUserByEmailQuery = this.entityManager.createNamedQuery(User.FIND_BY_EMAIL, User.class)
+                .setParameter("email", email);
         try {
             return getUserByEmailQuery.getSingleResult();
         } catch (NoResultException e) {
@@ -92,36 +101,75 @@ public class UsersAgent {
         this.entityManager.merge(user);
     }
 
+    // the data of large accounts can be deleted beforehand in background by the UserDeletionAgent
     @UserUpdate(type = "delete")
-    public void deleteUser(@NotNull User user) {
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void deleteUser(@NotNull final User user) {
         if (this.getUser(user.getUsername()) == null)
             throw new UserNotFoundException();
-        if (!this.entityManager.contains(user))
-            user = this.entityManager.merge(user);
-        this.entityManager.remove(user);
+        final UsersAgent usersAgent = this.sessionContext.getBusinessObject(UsersAgent.class);
+        /* every chunk commits on its own, so that the rows are locked for the time of a chunk only */
+        UsersAgent.deleteInChunks(() -> usersAgent.deleteUserData(user, UsersAgent.DELETION_CHUNK_SIZE));
+        usersAgent.deleteUserAndRemainingData(user);
+    }
+
+    // deletes the rows created since the last chunk along with the user, within the same transaction
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void deleteUserAndRemainingData(@NotNull final User user) {
+        /* set-based deletes, the relationships cascades would load every row and delete them one by one */
+        UsersAgent.deleteInChunks(() -> this.deleteUserData(user, UsersAgent.DELETION_CHUNK_SIZE));
+        this.entityManager.createNamedQuery(User.DELETE_BY_USERNAME)
+                .setParameter("username", user.getUsername())
+                .executeUpdate();
+        this.entityCacheAgent.evict(User.class, user.getUsername());
+    }
+
+    // deletes a chunk of the user reviews, votes, reports or backlog entries, in this order, along with the rows
+    // referencing them, and returns the number of deleted ones, 0 once only the user is left
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int deleteUserData(@NotNull final User user, @Min(1) final int limit) {
+        int deletedCount = this.deleteUserReviewsChunk(user, limit);
+        if (deletedCount == 0)
+            deletedCount = this.deleteUserVotesChunk(user, limit);
+        if (deletedCount == 0)
+            deletedCount = this.deleteUserReportsChunk(user, limit);
+        if (deletedCount == 0)
+            deletedCount = this.deleteUserBacklogChunk(user, limit);
+        return deletedCount;
+    }
+
+    private static void deleteInChunks(final IntSupplier chunkDeletion) {
+        int deletedCount;
+        do {
+            deletedCount = chunkDeletion.getAsInt();
+        } while (deletedCount > 0);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getUserReviews(@NotNull final User user) {
         return this.getUserReviews(user, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Review> getUserReviews(@NotNull final User user,
                                        @Min(0) final Integer index,
                                        @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Review> query = builder.createQuery(Review.class);
-        Root<Review> review = query.from(Review.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        query
-                .select(review)
-                .where(builder.equal(
-                        review.get(Review_.reviewer).get(User_.username),
-                        reviewerUsernameParameter
-                ))
-                .orderBy(builder.desc(review.get(Review_.publicationDate)));
+        return this.getUserReviews(user, index, limit, false);
+    }
 
-        TypedQuery<Review> getUserReviewsQuery = this.entityManager.createQuery(query)
-                .setParameter(reviewerUsernameParameter, user.getUsername());
+    // the reviewer is loaded by the same statement when fetchReviewer is true
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Review> getUserReviews(@NotNull final User user,
+                                       @Min(0) final Integer index,
+                                       @Min(1) final Integer limit,
+                                       final boolean fetchReviewer) {
+        TypedQuery<Review> getUserReviewsQuery = this.entityManager.createNamedQuery(fetchReviewer
+                ? Review.FIND_BY_REVIEWER_FETCH_REVIEWER
+                : Review.FIND_BY_REVIEWER, Review.class)
+                .setParameter("reviewerUsername", user.getUsername());
         if (index != null)
             getUserReviewsQuery.setFirstResult(index);
         if (limit != null)
@@ -130,20 +178,44 @@ public class UsersAgent {
         return userReviews == null || userReviews.isEmpty() ? null : userReviews;
     }
 
-    public @NotNull Integer getUserReviewsCount(@NotNull final User user) {
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Review> getUserReviewsPage(@NotNull final User user,
+                                                    @NotNull final String cursor,
+                                                    @Min(1) final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<Review> query = builder.createQuery(Review.class);
         Root<Review> review = query.from(Review.class);
         ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
+        final List<Order> orders = Arrays.asList(
+                builder.desc(review.get(Review_.publicationDate)),
+                builder.asc(review.get(Review_.reviewedAlbumId))
+        );
         query
-                .select(builder.count(review))
-                .where(builder.equal(
-                        review.get(Review_.reviewer).get(User_.username),
-                        reviewerUsernameParameter
-                ));
+                .select(review)
+                .where(builder.and(
+                        builder.equal(
+                                review.get(Review_.reviewer).get(User_.username),
+                                reviewerUsernameParameter
+                        ),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getUserReviewsCountQuery = this.entityManager.createQuery(query)
+        TypedQuery<Review> getUserReviewsQuery = this.entityManager.createQuery(query)
                 .setParameter(reviewerUsernameParameter, user.getUsername());
+        getUserReviewsQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getUserReviewsQuery.getResultList(), limit,
+                lastReview -> new PageCursor(lastReview.getPublicationDate(), lastReview.getReviewedAlbumId()));
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Integer getUserReviewsCount(@NotNull final User user) {
+        TypedQuery<Long> getUserReviewsCountQuery = this.entityManager
+                .createNamedQuery(Review.COUNT_BY_REVIEWER, Long.class)
+                .setParameter("reviewerUsername", user.getUsername());
         try {
             Long userReviewsCount = getUserReviewsCountQuery.getSingleResult();
             return userReviewsCount == null ? 0 : Math.toIntExact(userReviewsCount);
@@ -156,50 +228,82 @@ public class UsersAgent {
         return this.getUser(review.getReviewerUsername());
     }
 
+    // reviewers already loaded along with the reviews are reused, the missing ones are loaded by a single query
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public @NotEmpty Map<Review, User> getReviewers(@NotEmpty Collection<Review> reviews) {
+        final PersistenceUnitUtil persistenceUnitUtil =
+                this.entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        final Map<String, User> reviewers = new HashMap<>();
+        final Set<String> missingReviewersUsernames = new HashSet<>();
+        for (Review review : reviews) {
+            if (persistenceUnitUtil.isLoaded(review, Review_.reviewer.getName()) && review.getReviewer() != null)
+                reviewers.put(review.getReviewerUsername(), review.getReviewer());
+            else
+                missingReviewersUsernames.add(review.getReviewerUsername());
+        }
+        missingReviewersUsernames.removeAll(reviewers.keySet());
+        if (!missingReviewersUsernames.isEmpty()) {
+            this.entityManager.createNamedQuery(User.FIND_BY_USERNAMES, User.class)
+                    .setParameter("usernames", missingReviewersUsernames)
+                    .getResultList()
+                    .forEach(reviewer -> reviewers.put(reviewer.getUsername(), reviewer));
+        }
         return reviews.stream().collect(
                 HashMap::new,
-                (map, review) -> map.put(review, this.getReviewer(review)),
+                (map, review) -> map.put(review, reviewers.get(review.getReviewerUsername())),
                 HashMap::putAll
         );
     }
 
     public void deleteUserReviews(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Review> delete = builder.createCriteriaDelete(Review.class);
-        Root<Review> review = delete.from(Review.class);
-        ParameterExpression<String> reviewerUsernameParameter = builder.parameter(String.class);
-        delete
-                .where(builder.equal(
-                        review.get(Review_.reviewer).get(User_.username),
-                        reviewerUsernameParameter
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(reviewerUsernameParameter, user.getUsername())
-                .executeUpdate();
+        UsersAgent.deleteInChunks(() -> this.deleteUserReviewsChunk(user, UsersAgent.DELETION_CHUNK_SIZE));
     }
 
+    // deletes up to limit reviews of the user, the votes and reports they received first
+    private int deleteUserReviewsChunk(final User user, final int limit) {
+        final List<Object[]> userRatings = this.entityManager
+                .createNamedQuery(Review.FIND_RATINGS_BY_REVIEWER, Object[].class)
+                .setParameter("reviewerUsername", user.getUsername())
+                .setMaxResults(limit)
+                .getResultList();
+        if (userRatings.isEmpty())
+            return 0;
+        final Map<Long, Integer> ratingsByReviewedAlbumId = new TreeMap<>();
+        for (Object[] userRating : userRatings)
+            ratingsByReviewedAlbumId.put(((Number) userRating[0]).longValue(), ((Number) userRating[1]).intValue());
+        final List<Long> reviewedAlbumIds = new ArrayList<>(ratingsByReviewedAlbumId.keySet());
+        /* keeps the albums statistics and the leaderboard in sync with the removed reviews */
+        this.statisticsAgent.removeRatings(ratingsByReviewedAlbumId);
+        reviewedAlbumIds.forEach(reviewedAlbumId ->
+                this.leaderboardAgent.removeReview(user.getUsername(), reviewedAlbumId));
+        for (String deleteQueryName : new String[]{
+                Vote.DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS,
+                Report.DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS,
+                Review.DELETE_BY_REVIEWER_AND_REVIEWED_ALBUM_IDS})
+            this.entityManager.createNamedQuery(deleteQueryName)
+                    .setParameter("reviewerUsername", user.getUsername())
+                    .setParameter("reviewedAlbumIds", reviewedAlbumIds)
+                    .executeUpdate();
+        reviewedAlbumIds.forEach(reviewedAlbumId -> this.entityCacheAgent.evict(Review.class, new Review.ReviewId()
+                .setReviewerUsername(user.getUsername())
+                .setReviewedAlbumId(reviewedAlbumId)));
+        return userRatings.size();
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getUserVotes(@NotNull final User user) {
         return this.getUserVotes(user, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getUserVotes(@NotNull final User user,
                                    @Min(0) final Integer index,
                                    @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        query
-                .select(vote)
-                .where(builder.equal(
-                        vote.get(Vote_.voter).get(User_.username),
-                        voterUsernameParameter
-                ));
-
-        TypedQuery<Vote> getUserVotesQuery = this.entityManager.createQuery(query)
-                .setParameter(voterUsernameParameter, user.getUsername());
+        TypedQuery<Vote> getUserVotesQuery = this.entityManager.createNamedQuery(Vote.FIND_BY_VOTER, Vote.class)
+                .setParameter("voterUsername", user.getUsername());
         if (index != null)
             getUserVotesQuery.setFirstResult(index);
         if (limit != null)
@@ -208,20 +312,20 @@ public class UsersAgent {
         return userVotes == null || userVotes.isEmpty() ? null : userVotes;
     }
 
-    public @NotNull Integer getUserVotesCount(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        query
-                .select(builder.count(vote))
-                .where(builder.equal(
-                        vote.get(Vote_.voter).get(User_.username),
-                        voterUsernameParameter
-                ));
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Vote> getUserVotesPage(@NotNull final User user,
+                                                @NotNull final String cursor,
+                                                @Min(1) final Integer limit) {
+        return this.getUserVotesPage(user, null, cursor, limit);
+    }
 
-        TypedQuery<Long> getUserVotesCountQuery = this.entityManager.createQuery(query)
-                .setParameter(voterUsernameParameter, user.getUsername());
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Integer getUserVotesCount(@NotNull final User user) {
+        TypedQuery<Long> getUserVotesCountQuery = this.entityManager.createNamedQuery(Vote.COUNT_BY_VOTER, Long.class)
+                .setParameter("voterUsername", user.getUsername());
         try {
             Long userVotesCount = getUserVotesCountQuery.getSingleResult();
             return userVotesCount == null ? 0 : Math.toIntExact(userVotesCount);
@@ -231,47 +335,55 @@ public class UsersAgent {
     }
 
     public void deleteUserVotes(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Vote> delete = builder.createCriteriaDelete(Vote.class);
-        Root<Vote> vote = delete.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        delete
-                .where(builder.equal(
-                        vote.get(Vote_.voter).get(User_.username),
-                        voterUsernameParameter
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(voterUsernameParameter, user.getUsername())
+        UsersAgent.deleteInChunks(() -> this.deleteUserVotesChunk(user, UsersAgent.DELETION_CHUNK_SIZE));
+    }
+
+    // deletes the user votes on the reviews of up to limit albums
+    private int deleteUserVotesChunk(final User user, final int limit) {
+        final List<Long> reviewedAlbumIds = this.entityManager
+                .createNamedQuery(Vote.FIND_REVIEWED_ALBUM_IDS_BY_VOTER, Long.class)
+                .setParameter("voterUsername", user.getUsername())
+                .setMaxResults(limit)
+                .getResultList();
+        if (reviewedAlbumIds.isEmpty())
+            return 0;
+        final List<Object[]> userVotes = this.entityManager
+                .createNamedQuery(Vote.FIND_VALUES_BY_VOTER_AND_REVIEWED_ALBUM_IDS, Object[].class)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("reviewedAlbumIds", reviewedAlbumIds)
+                .getResultList();
+        /* keeps the reviews scores in sync with the removed votes */
+        userVotes.forEach(userVote -> this.statisticsAgent.removeVote((String) userVote[0],
+                ((Number) userVote[1]).longValue(), ((Number) userVote[2]).intValue() > 0));
+        this.entityManager.createNamedQuery(Vote.DELETE_BY_VOTER_AND_REVIEWED_ALBUM_IDS)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("reviewedAlbumIds", reviewedAlbumIds)
                 .executeUpdate();
+        return userVotes.size();
     }
 
+    // keeps the reviews scores in sync with the user votes about to be removed
+    private void removeVotes(final List<Vote> votes) {
+        if (votes != null)
+            votes.forEach(vote -> this.statisticsAgent.removeVote
+                    (vote.getReviewerUsername(), vote.getReviewedAlbumId(), vote.getStoredValue()));
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getUserUpvotes(@NotNull final User user) {
         return this.getUserUpvotes(user, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getUserUpvotes(@NotNull final User user,
                                      @Min(0) final Integer index,
                                      @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        query
-                .select(vote)
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.voter).get(User_.username),
-                                voterUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                +1
-                        )
-                ));
-
-        TypedQuery<Vote> getUserUpvotesQuery = this.entityManager.createQuery(query)
-                .setParameter(voterUsernameParameter, user.getUsername());
+        TypedQuery<Vote> getUserUpvotesQuery = this.entityManager
+                .createNamedQuery(Vote.FIND_BY_VOTER_AND_VALUE, Vote.class)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("value", +1);
         if (index != null)
             getUserUpvotesQuery.setFirstResult(index);
         if (limit != null)
@@ -280,26 +392,21 @@ public class UsersAgent {
         return userUpvotes == null || userUpvotes.isEmpty() ? null : userUpvotes;
     }
 
-    public @NotNull Integer getUserUpvotesCount(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        query
-                .select(builder.count(vote))
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.voter).get(User_.username),
-                                voterUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                +1
-                        )
-                ));
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Vote> getUserUpvotesPage(@NotNull final User user,
+                                                  @NotNull final String cursor,
+                                                  @Min(1) final Integer limit) {
+        return this.getUserVotesPage(user, +1, cursor, limit);
+    }
 
-        TypedQuery<Long> getUserUpvotesCountQuery = this.entityManager.createQuery(query)
-                .setParameter(voterUsernameParameter, user.getUsername());
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Integer getUserUpvotesCount(@NotNull final User user) {
+        TypedQuery<Long> getUserUpvotesCountQuery = this.entityManager
+                .createNamedQuery(Vote.COUNT_BY_VOTER_AND_VALUE, Long.class)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("value", +1);
         try {
             Long userUpvotesCount = getUserUpvotesCountQuery.getSingleResult();
             return userUpvotesCount == null ? 0 : Math.toIntExact(userUpvotesCount);
@@ -309,53 +416,28 @@ public class UsersAgent {
     }
 
     public void deleteUserUpvotes(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Vote> delete = builder.createCriteriaDelete(Vote.class);
-        Root<Vote> vote = delete.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        delete
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.voter).get(User_.username),
-                                voterUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                +1
-                        )
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(voterUsernameParameter, user.getUsername())
+        this.removeVotes(this.getUserUpvotes(user));
+        this.entityManager.createNamedQuery(Vote.DELETE_BY_VOTER_AND_VALUE)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("value", +1)
                 .executeUpdate();
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getUserDownvotes(@NotNull final User user) {
         return this.getUserDownvotes(user, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Vote> getUserDownvotes(@NotNull final User user,
                                        @Min(0) final Integer index,
                                        @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        query
-                .select(vote)
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.voter).get(User_.username),
-                                voterUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                -1
-                        )
-                ));
-
-        TypedQuery<Vote> getUserDownvotesQuery = this.entityManager.createQuery(query)
-                .setParameter(voterUsernameParameter, user.getUsername());
+        TypedQuery<Vote> getUserDownvotesQuery = this.entityManager
+                .createNamedQuery(Vote.FIND_BY_VOTER_AND_VALUE, Vote.class)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("value", -1);
         if (index != null)
             getUserDownvotesQuery.setFirstResult(index);
         if (limit != null)
@@ -364,26 +446,53 @@ public class UsersAgent {
         return userDownvotes == null || userDownvotes.isEmpty() ? null : userDownvotes;
     }
 
-    public @NotNull Integer getUserDownvotesCount(@NotNull final User user) {
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Vote> getUserDownvotesPage(@NotNull final User user,
+                                                    @NotNull final String cursor,
+                                                    @Min(1) final Integer limit) {
+        return this.getUserVotesPage(user, -1, cursor, limit);
+    }
+
+    // votes of the user with the given value, or all of them if the value is null, sorted by review
+    private Page<Vote> getUserVotesPage(final User user,
+                                        final Integer value,
+                                        final String cursor,
+                                        final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<Vote> query = builder.createQuery(Vote.class);
         Root<Vote> vote = query.from(Vote.class);
         ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
+        final List<Order> orders = Arrays.asList(
+                builder.asc(vote.get(Vote_.review).get(Review_.reviewer).get(User_.username)),
+                builder.asc(vote.get(Vote_.review).get(Review_.reviewedAlbumId))
+        );
         query
-                .select(builder.count(vote))
+                .select(vote)
                 .where(builder.and(
                         builder.equal(
                                 vote.get(Vote_.voter).get(User_.username),
                                 voterUsernameParameter
                         ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                -1
-                        )
-                ));
+                        value == null ? builder.conjunction() : builder.equal(vote.get(Vote_.value), value),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getUserDownvotesCountQuery = this.entityManager.createQuery(query)
+        TypedQuery<Vote> getUserVotesQuery = this.entityManager.createQuery(query)
                 .setParameter(voterUsernameParameter, user.getUsername());
+        getUserVotesQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getUserVotesQuery.getResultList(), limit,
+                lastVote -> new PageCursor(lastVote.getReviewerUsername(), lastVote.getReviewedAlbumId()));
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Integer getUserDownvotesCount(@NotNull final User user) {
+        TypedQuery<Long> getUserDownvotesCountQuery = this.entityManager
+                .createNamedQuery(Vote.COUNT_BY_VOTER_AND_VALUE, Long.class)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("value", -1);
         try {
             Long userDownvotesCount = getUserDownvotesCountQuery.getSingleResult();
             return userDownvotesCount == null ? 0 : Math.toIntExact(userDownvotesCount);
@@ -393,47 +502,27 @@ public class UsersAgent {
     }
 
     public void deleteUserDownvotes(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Vote> delete = builder.createCriteriaDelete(Vote.class);
-        Root<Vote> vote = delete.from(Vote.class);
-        ParameterExpression<String> voterUsernameParameter = builder.parameter(String.class);
-        delete
-                .where(builder.and(
-                        builder.equal(
-                                vote.get(Vote_.voter).get(User_.username),
-                                voterUsernameParameter
-                        ),
-                        builder.equal(
-                                vote.get(Vote_.value),
-                                -1
-                        )
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(voterUsernameParameter, user.getUsername())
+        this.removeVotes(this.getUserDownvotes(user));
+        this.entityManager.createNamedQuery(Vote.DELETE_BY_VOTER_AND_VALUE)
+                .setParameter("voterUsername", user.getUsername())
+                .setParameter("value", -1)
                 .executeUpdate();
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Report> getUserReports(@NotNull final User user) {
         return this.getUserReports(user, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Report> getUserReports(@NotNull final User user,
                                        @Min(0) final Integer index,
                                        @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Report> query = builder.createQuery(Report.class);
-        Root<Report> report = query.from(Report.class);
-        ParameterExpression<String> reporterUsernameParameter = builder.parameter(String.class);
-        query
-                .select(report)
-                .where(builder.equal(
-                        report.get(Report_.reporter).get(User_.username),
-                        reporterUsernameParameter
-                ));
-
-        TypedQuery<Report> getUserReportsQuery = this.entityManager.createQuery(query)
-                .setParameter(reporterUsernameParameter, user.getUsername());
+        TypedQuery<Report> getUserReportsQuery = this.entityManager
+                .createNamedQuery(Report.FIND_BY_REPORTER, Report.class)
+                .setParameter("reporterUsername", user.getUsername());
         if (index != null)
             getUserReportsQuery.setFirstResult(index);
         if (limit != null)
@@ -442,20 +531,44 @@ public class UsersAgent {
         return userReports == null || userReports.isEmpty() ? null : userReports;
     }
 
-    public @NotNull Integer getUserReportsCount(@NotNull final User user) {
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<Report> getUserReportsPage(@NotNull final User user,
+                                                    @NotNull final String cursor,
+                                                    @Min(1) final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<Report> query = builder.createQuery(Report.class);
         Root<Report> report = query.from(Report.class);
         ParameterExpression<String> reporterUsernameParameter = builder.parameter(String.class);
+        final List<Order> orders = Arrays.asList(
+                builder.asc(report.get(Report_.review).get(Review_.reviewer).get(User_.username)),
+                builder.asc(report.get(Report_.review).get(Review_.reviewedAlbumId))
+        );
         query
-                .select(builder.count(report))
-                .where(builder.equal(
-                        report.get(Report_.reporter).get(User_.username),
-                        reporterUsernameParameter
-                ));
+                .select(report)
+                .where(builder.and(
+                        builder.equal(
+                                report.get(Report_.reporter).get(User_.username),
+                                reporterUsernameParameter
+                        ),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getUserReportsCountQuery = this.entityManager.createQuery(query)
+        TypedQuery<Report> getUserReportsQuery = this.entityManager.createQuery(query)
                 .setParameter(reporterUsernameParameter, user.getUsername());
+        getUserReportsQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getUserReportsQuery.getResultList(), limit,
+                lastReport -> new PageCursor(lastReport.getReviewerUsername(), lastReport.getReviewedAlbumId()));
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Integer getUserReportsCount(@NotNull final User user) {
+        TypedQuery<Long> getUserReportsCountQuery = this.entityManager
+                .createNamedQuery(Report.COUNT_BY_REPORTER, Long.class)
+                .setParameter("reporterUsername", user.getUsername());
         try {
             Long userReportsCount = getUserReportsCountQuery.getSingleResult();
             return userReportsCount == null ? 0 : Math.toIntExact(userReportsCount);
@@ -465,42 +578,47 @@ public class UsersAgent {
     }
 
     public void deleteUserReports(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<Report> delete = builder.createCriteriaDelete(Report.class);
-        Root<Report> report = delete.from(Report.class);
-        ParameterExpression<String> reporterUsernameParameter = builder.parameter(String.class);
-        delete
-                .where(builder.equal(
-                        report.get(Report_.reporter).get(User_.username),
-                        reporterUsernameParameter
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(reporterUsernameParameter, user.getUsername())
+        UsersAgent.deleteInChunks(() -> this.deleteUserReportsChunk(user, UsersAgent.DELETION_CHUNK_SIZE));
+    }
+
+    // deletes the user reports of the reviews of up to limit albums
+    private int deleteUserReportsChunk(final User user, final int limit) {
+        final List<Long> reviewedAlbumIds = this.entityManager
+                .createNamedQuery(Report.FIND_REVIEWED_ALBUM_IDS_BY_REPORTER, Long.class)
+                .setParameter("reporterUsername", user.getUsername())
+                .setMaxResults(limit)
+                .getResultList();
+        if (reviewedAlbumIds.isEmpty())
+            return 0;
+        final List<Object[]> reportedReviews = this.entityManager
+                .createNamedQuery(Report.FIND_REVIEWS_BY_REPORTER_AND_REVIEWED_ALBUM_IDS, Object[].class)
+                .setParameter("reporterUsername", user.getUsername())
+                .setParameter("reviewedAlbumIds", reviewedAlbumIds)
+                .getResultList();
+        /* keeps the reviews reports counts in sync with the removed reports */
+        reportedReviews.forEach(reportedReview -> this.statisticsAgent
+                .removeReport((String) reportedReview[0], ((Number) reportedReview[1]).longValue()));
+        this.entityManager.createNamedQuery(Report.DELETE_BY_REPORTER_AND_REVIEWED_ALBUM_IDS)
+                .setParameter("reporterUsername", user.getUsername())
+                .setParameter("reviewedAlbumIds", reviewedAlbumIds)
                 .executeUpdate();
+        return reportedReviews.size();
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<BacklogEntry> getUserBacklog(@NotNull final User user) {
         return this.getUserBacklog(user, null, null);
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<BacklogEntry> getUserBacklog(@NotNull final User user,
                                              @Min(0) final Integer index,
                                              @Min(1) final Integer limit) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<BacklogEntry> query = builder.createQuery(BacklogEntry.class);
-        Root<BacklogEntry> backlogEntry = query.from(BacklogEntry.class);
-        ParameterExpression<String> usernameParameter = builder.parameter(String.class);
-        query
-                .select(backlogEntry)
-                .where(builder.equal(
-                        backlogEntry.get(BacklogEntry_.user).get(User_.username),
-                        usernameParameter
-                ))
-                .orderBy(builder.desc(backlogEntry.get(BacklogEntry_.insertionTime)));
-
-        TypedQuery<BacklogEntry> getUserBacklogQuery = this.entityManager.createQuery(query)
-                .setParameter(usernameParameter, user.getUsername());
+        TypedQuery<BacklogEntry> getUserBacklogQuery = this.entityManager
+                .createNamedQuery(BacklogEntry.FIND_BY_USERNAME, BacklogEntry.class)
+                .setParameter("username", user.getUsername());
         if (index != null)
             getUserBacklogQuery.setFirstResult(index);
         if (limit != null)
@@ -509,20 +627,44 @@ public class UsersAgent {
         return userBacklog == null || userBacklog.isEmpty() ? null : userBacklog;
     }
 
-    public Integer getUserBacklogLength(@NotNull final User user) {
+    // keyset paginated, the cursor being empty for the first page
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public @NotNull Page<BacklogEntry> getUserBacklogPage(@NotNull final User user,
+                                                          @NotNull final String cursor,
+                                                          @Min(1) final Integer limit) {
         CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        CriteriaQuery<BacklogEntry> query = builder.createQuery(BacklogEntry.class);
         Root<BacklogEntry> backlogEntry = query.from(BacklogEntry.class);
         ParameterExpression<String> usernameParameter = builder.parameter(String.class);
+        final List<Order> orders = Arrays.asList(
+                builder.desc(backlogEntry.get(BacklogEntry_.insertionTime)),
+                builder.asc(backlogEntry.get(BacklogEntry_.albumId))
+        );
         query
-                .select(builder.count(backlogEntry))
-                .where(builder.equal(
-                        backlogEntry.get(BacklogEntry_.user).get(User_.username),
-                        usernameParameter
-                ));
+                .select(backlogEntry)
+                .where(builder.and(
+                        builder.equal(
+                                backlogEntry.get(BacklogEntry_.user).get(User_.username),
+                                usernameParameter
+                        ),
+                        PageCursor.seek(builder, orders, PageCursor.decode(cursor))
+                ))
+                .orderBy(orders);
 
-        TypedQuery<Long> getUserBacklogLengthQuery = this.entityManager.createQuery(query)
+        TypedQuery<BacklogEntry> getUserBacklogQuery = this.entityManager.createQuery(query)
                 .setParameter(usernameParameter, user.getUsername());
+        getUserBacklogQuery.setMaxResults(Page.fetchSize(limit));
+        return Page.of(getUserBacklogQuery.getResultList(), limit,
+                lastEntry -> new PageCursor(lastEntry.getInsertionTime(), lastEntry.getAlbumId()));
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Integer getUserBacklogLength(@NotNull final User user) {
+        TypedQuery<Long> getUserBacklogLengthQuery = this.entityManager
+                .createNamedQuery(BacklogEntry.COUNT_BY_USERNAME, Long.class)
+                .setParameter("username", user.getUsername());
         try {
             Long userBacklogLength = getUserBacklogLengthQuery.getSingleResult();
             return userBacklogLength == null ? 0 : Math.toIntExact(userBacklogLength);
@@ -532,35 +674,34 @@ public class UsersAgent {
     }
 
     public void clearUserBacklog(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaDelete<BacklogEntry> delete = builder.createCriteriaDelete(BacklogEntry.class);
-        Root<BacklogEntry> backlogEntry = delete.from(BacklogEntry.class);
-        ParameterExpression<String> usernameParameter = builder.parameter(String.class);
-        delete
-                .where(builder.equal(
-                        backlogEntry.get(BacklogEntry_.user).get(User_.username),
-                        usernameParameter
-                ));
-
-        this.entityManager.createQuery(delete)
-                .setParameter(usernameParameter, user.getUsername())
+        UsersAgent.deleteInChunks(() -> this.deleteUserBacklogChunk(user, UsersAgent.DELETION_CHUNK_SIZE));
+    }
+
+    // deletes up to limit backlog entries of the user
+    private int deleteUserBacklogChunk(final User user, final int limit) {
+        final List<Long> albumIds = this.entityManager
+                .createNamedQuery(BacklogEntry.FIND_ALBUM_IDS_BY_USERNAME, Long.class)
+                .setParameter("username", user.getUsername())
+                .setMaxResults(limit)
+                .getResultList();
+        if (albumIds.isEmpty())
+            return 0;
+        this.entityManager.createNamedQuery(BacklogEntry.DELETE_BY_USERNAME_AND_ALBUM_IDS)
+                .setParameter("username", user.getUsername())
+                .setParameter("albumIds", albumIds)
                 .executeUpdate();
+        albumIds.forEach(albumId -> this.entityCacheAgent.evict(BacklogEntry.class, new BacklogEntry.BacklogEntryId()
+                .setUsername(user.getUsername())
+                .setAlbumId(albumId)));
+        return albumIds.size();
     }
 
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public Double getUserAverageAssignedRating(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Double> query = builder.createQuery(Double.class);
-        Root<Review> review = query.from(Review.class);
-        ParameterExpression<String> usernameParameter = builder.parameter(String.class);
-        query
-                .select(builder.avg(review.get(Review_.rating)))
-                .where(builder.equal(
-                        review.get(Review_.reviewer).get(User_.username),
-                        usernameParameter
-                ));
-
-        TypedQuery<Double> getUserAverageAssignedRatingQuery = this.entityManager.createQuery(query)
-                .setParameter(usernameParameter, user.getUsername());
+        TypedQuery<Double> getUserAverageAssignedRatingQuery = this.entityManager
+                .createNamedQuery(Review.AVERAGE_RATING_BY_REVIEWER, Double.class)
+                .setParameter("reviewerUsername", user.getUsername());
         try {
             return getUserAverageAssignedRatingQuery.getSingleResult();
         } catch (NoResultException e) {
@@ -569,25 +710,31 @@ public class UsersAgent {
     }
 
     public @NotNull Integer getUserReputation(@NotNull final User user) {
-        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
-        CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
-        Root<Vote> vote = query.from(Vote.class);
-        ParameterExpression<String> usernameParameter = builder.parameter(String.class);
-        query
-                .select(builder.sum(vote.get(Vote_.value)))
-                .where(builder.equal(
-                        vote.get(Vote_.review).get(Review_.reviewer).get(User_.username),
-                        usernameParameter
-                ));
+        return this.leaderboardAgent.getReviewerReputation(user.getUsername());
+    }
 
-        TypedQuery<Integer> getUserReputationQuery = this.entityManager.createQuery(query)
-                .setParameter(usernameParameter, user.getUsername());
-        try {
-            Integer userReputation = getUserReputationQuery.getSingleResult();
-            return userReputation == null ? 0 : userReputation;
-        } catch (NoResultException e) {
-            return 0;
-        }
+    // 1 for the reviewer with the highest reputation, null if the user has not reviewed any album
+    public Integer getUserRank(@NotNull final User user) {
+        return this.leaderboardAgent.getReviewerRank(user.getUsername());
+    }
+
+    @ReadOnly
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<User> getTopReviewers(@Min(0) final Integer index,
+                                      @Min(1) final Integer limit) {
+        final List<String> topReviewersUsernames = this.leaderboardAgent.getTopReviewersUsernames
+                (index == null ? 0 : index, limit == null ? this.leaderboardAgent.getReviewersCount() : limit);
+        if (topReviewersUsernames.isEmpty())
+            return null;
+        final Map<String, User> topReviewers = this.entityManager.createNamedQuery(User.FIND_BY_USERNAMES, User.class)
+                .setParameter("usernames", topReviewersUsernames)
+                .getResultList().stream()
+                .collect(Collectors.toMap(User::getUsername, reviewer -> reviewer));
+        final List<User> rankedTopReviewers = topReviewersUsernames.stream()
+                .map(topReviewers::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return rankedTopReviewers.isEmpty() ? null : rankedTopReviewers;
     }
 
 }
@@ -0,0 +1,29 @@
+package application.model.exceptions;
+
+import javax.ejb.ApplicationException;
+
+@ApplicationException
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException() {
+        super();
+    }
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    protected InvalidCursorException
+            (String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    public InvalidCursorException(Throwable cause) {
+        super(cause);
+    }
+
+}
\ No newline at end of file
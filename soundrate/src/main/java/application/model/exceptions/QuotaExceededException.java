@@ -0,0 +1,47 @@
+package application.model.exceptions;
+
+import javax.ejb.ApplicationException;
+import java.time.Duration;
+
+@ApplicationException
+public class QuotaExceededException extends RuntimeException {
+
+    // time after which a token is expected to be available again, null if unknown
+    private Duration retryAfter;
+
+    public QuotaExceededException() {
+        super();
+    }
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+
+    public QuotaExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public QuotaExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    protected QuotaExceededException
+            (String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    public QuotaExceededException(Throwable cause) {
+        super(cause);
+    }
+
+    public Duration getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    // suitable for a Retry-After header: whole seconds, rounded up and at least one
+    public long getRetryAfterSeconds() {
+        return this.retryAfter == null ? 1 : Math.max(1, (this.retryAfter.toMillis() + 999) / 1000);
+    }
+
+}
@@ -48,7 +48,7 @@ public class AlbumPageServlet extends HttpServlet {
                     : album.getGenres().getData().get(0);
             request.setAttribute("albumGenre", albumGenre);
 
-            final List<Review> albumReviews = this.catalogAgent.getAlbumReviews(album);
+            final List<Review> albumReviews = this.catalogAgent.getAlbumReviews(album, null, null, true);
             request.setAttribute("albumReviews", albumReviews);
 
             final int albumReviewsCount = this.catalogAgent.getAlbumReviewsCount(album);
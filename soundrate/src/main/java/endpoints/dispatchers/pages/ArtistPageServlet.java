@@ -1,5 +1,6 @@
 package endpoints.dispatchers.pages;
 
+import application.model.AlbumsStatistics;
 import application.model.CatalogAgent;
 import deezer.model.Album;
 import deezer.model.Artist;
@@ -12,8 +13,9 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 @WebServlet(urlPatterns = {"/artist"})
 public class ArtistPageServlet extends HttpServlet {
@@ -37,21 +39,19 @@ public class ArtistPageServlet extends HttpServlet {
             final List<Album> artistAlbums = this.catalogAgent.getArtistAlbums(artist);
             request.setAttribute("artistAlbums", artistAlbums);
 
-            final int artistReviewsCount = this.catalogAgent.getArtistReviewsCount(artist);
+            // the artist statistics are derived from the ones of its albums, fetched by a single query
+            final AlbumsStatistics albumsStatistics = this.catalogAgent.getAlbumsStatistics(artistAlbums == null
+                    ? Collections.emptyList()
+                    : artistAlbums.stream()
+                    .map(Album::getId)
+                    .collect(Collectors.toList()));
+            request.setAttribute("albumsStatistics", albumsStatistics);
+
+            final int artistReviewsCount = albumsStatistics.getTotalReviewsCount();
             request.setAttribute("artistReviewsCount", artistReviewsCount);
 
-            final Double artistAverageRating = this.catalogAgent.getArtistAverageRating(artist);
+            final Double artistAverageRating = albumsStatistics.getAverageOfAverageRatings();
             request.setAttribute("artistAverageRating", artistAverageRating);
-
-            if (artistAlbums != null) {
-                final Map<Album, Integer> albumsReviewsCountMap =
-                        this.catalogAgent.getAlbumsReviewsCount(artistAlbums);
-                request.setAttribute("albumReviewsCountMap", albumsReviewsCountMap);
-
-                final Map<Album, Double> albumAverageRatingMap =
-                        this.catalogAgent.getAlbumsAverageRatings(artistAlbums);
-                request.setAttribute("albumAverageRatingMap", albumAverageRatingMap);
-            }
         }
         request.getRequestDispatcher("/WEB-INF/jsp/pages/artist.jsp").forward(request, response);
     }
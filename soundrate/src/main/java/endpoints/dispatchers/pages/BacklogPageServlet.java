@@ -2,6 +2,7 @@ package endpoints.dispatchers.pages;
 
 import application.entities.BacklogEntry;
 import application.entities.User;
+import application.model.AlbumsStatistics;
 import application.model.CatalogAgent;
 import application.model.UsersAgent;
 import deezer.model.Album;
@@ -17,6 +18,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @WebServlet(urlPatterns = {"/backlog"})
@@ -43,9 +45,11 @@ public class BacklogPageServlet extends HttpServlet {
             final List<BacklogEntry> userBacklog = this.usersAgent.getUserBacklog(user);
 
             if (userBacklog != null) {
-                // @todo consider implementing as method in CatalogAgent
-                final List<Album> userBacklogAlbums = userBacklog.stream().map
-                        (backlogEntry -> this.catalogAgent.getAlbum(backlogEntry.getAlbumId()))
+                final List<Album> userBacklogAlbums = this.catalogAgent.getAlbums(userBacklog.stream()
+                        .map(BacklogEntry::getAlbumId)
+                        .collect(Collectors.toList()))
+                        .values().stream()
+                        .filter(Objects::nonNull)
                         .collect(Collectors.toList());
                 request.setAttribute("backlogAlbums", userBacklogAlbums);
 
@@ -59,13 +63,10 @@ public class BacklogPageServlet extends HttpServlet {
                 );
                 request.setAttribute("albumGenreMap", albumGenreMap);
 
-                final Map<Album, Integer> albumReviewsCountMap =
-                        this.catalogAgent.getAlbumsReviewsCount(userBacklogAlbums);
-                request.setAttribute("albumReviewsCountMap", albumReviewsCountMap);
-
-                final Map<Album, Double> albumAverageRatingMap =
-                        this.catalogAgent.getAlbumsAverageRatings(userBacklogAlbums);
-                request.setAttribute("albumAverageRatingMap", albumAverageRatingMap);
+                final AlbumsStatistics albumsStatistics = this.catalogAgent.getAlbumsStatistics(userBacklogAlbums.stream()
+                        .map(Album::getId)
+                        .collect(Collectors.toList()));
+                request.setAttribute("albumsStatistics", albumsStatistics);
             }
         }
         request.getRequestDispatcher("/WEB-INF/jsp/pages/backlog.jsp").forward(request, response);
@@ -2,6 +2,7 @@ package endpoints.dispatchers.pages;
 
 import application.entities.Review;
 import application.entities.User;
+import application.model.AlbumsStatistics;
 import application.model.CatalogAgent;
 import application.model.ReviewsAgent;
 import application.model.UsersAgent;
@@ -16,6 +17,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @WebServlet(urlPatterns = {"/index", ""})
 public class IndexPageServlet extends HttpServlet {
@@ -38,14 +40,13 @@ public class IndexPageServlet extends HttpServlet {
         final List<Album> albums = this.catalogAgent.getTopAlbums(0, IndexPageServlet.N_ALBUMS);
         request.setAttribute("albums", albums);
         if (albums != null) {
-            final Map<Album, Integer> albumReviewsCountMap = this.catalogAgent.getAlbumsReviewsCount(albums);
-            request.setAttribute("albumReviewsCountMap", albumReviewsCountMap);
-
-            final Map<Album, Double> albumAverageRatingMap = this.catalogAgent.getAlbumsAverageRatings(albums);
-            request.setAttribute("albumAverageRatingMap", albumAverageRatingMap);
+            final AlbumsStatistics albumsStatistics = this.catalogAgent.getAlbumsStatistics(albums.stream()
+                    .map(Album::getId)
+                    .collect(Collectors.toList()));
+            request.setAttribute("albumsStatistics", albumsStatistics);
         }
 
-        final List<Review> reviews = this.reviewsAgent.getTopReviews(0, IndexPageServlet.N_REVIEWS);
+        final List<Review> reviews = this.reviewsAgent.getTopReviews(0, IndexPageServlet.N_REVIEWS, true);
         request.setAttribute("reviews", reviews);
         if (reviews != null) {
             final Map<Review, User> reviewersMap = this.usersAgent.getReviewers(reviews);
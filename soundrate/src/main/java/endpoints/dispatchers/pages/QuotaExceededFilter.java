@@ -0,0 +1,40 @@
+package endpoints.dispatchers.pages;
+
+import application.model.exceptions.QuotaExceededException;
+
+import javax.servlet.*;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// pages whose catalog calls are rejected because of the Deezer API quota fall back to a temporarily unavailable view
+@WebFilter(urlPatterns = {"/album", "/artist", "/backlog", "/index", "", "/review", "/search", "/top", "/user"})
+public class QuotaExceededFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        } catch (QuotaExceededException e) {
+            this.forwardToUnavailablePage(e, request, response);
+        } catch (ServletException e) {
+            // exceptions raised while rendering the page are wrapped
+            if (!(e.getRootCause() instanceof QuotaExceededException))
+                throw e;
+            this.forwardToUnavailablePage((QuotaExceededException) e.getRootCause(), request, response);
+        }
+    }
+
+    private void forwardToUnavailablePage(final QuotaExceededException exception, final ServletRequest request,
+                                          final ServletResponse response) throws IOException, ServletException {
+        if (response.isCommitted())
+            throw exception;
+        response.resetBuffer();
+        final HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        httpResponse.setHeader("Retry-After", String.valueOf(exception.getRetryAfterSeconds()));
+        request.getRequestDispatcher("/WEB-INF/jsp/pages/unavailable.jsp").forward(request, response);
+    }
+
+}
@@ -1,5 +1,6 @@
 package endpoints.dispatchers.pages;
 
+import application.model.AlbumsStatistics;
 import application.model.CatalogAgent;
 import deezer.model.Album;
 import deezer.model.Artist;
@@ -13,6 +14,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @WebServlet(urlPatterns = {"/search"})
 public class SearchPageServlet extends HttpServlet {
@@ -30,25 +32,22 @@ public class SearchPageServlet extends HttpServlet {
         else {
             final List<Artist> artists = this.catalogAgent.searchArtists(query);
             request.setAttribute("artists", artists);
-            /*  @fixme API quota limit exceeded
             if (artists != null) {
                 final Map<Artist, Integer> artistsReviewsCountMap =
                         this.catalogAgent.getArtistsReviewsCount(artists);
                 request.setAttribute("artistsReviewsCountMap", artistsReviewsCountMap);
 
                 final Map<Artist, Double> artistsAverageRatingsMap = this.catalogAgent.getArtistsAverageRatings(artists);
-                request.setAttribute("artistAverageRatingMap", artistsAverageRatingsMap);
+                request.setAttribute("artistsAverageRatingsMap", artistsAverageRatingsMap);
             }
-            */
 
             final List<Album> albums = this.catalogAgent.searchAlbums(query);
             request.setAttribute("albums", albums);
             if (albums != null) {
-                final Map<Album, Integer> albumsReviewsCountMap = this.catalogAgent.getAlbumsReviewsCount(albums);
-                request.setAttribute("albumsReviewsCountMap", albumsReviewsCountMap);
-
-                final Map<Album, Double> albumsAverageRatingsMap = this.catalogAgent.getAlbumsAverageRatings(albums);
-                request.setAttribute("albumAverageRatingsMap", albumsAverageRatingsMap);
+                final AlbumsStatistics albumsStatistics = this.catalogAgent.getAlbumsStatistics(albums.stream()
+                        .map(Album::getId)
+                        .collect(Collectors.toList()));
+                request.setAttribute("albumsStatistics", albumsStatistics);
             }
         }
         request.getRequestDispatcher("/WEB-INF/jsp/pages/search.jsp").forward(request, response);
@@ -1,5 +1,6 @@
 package endpoints.dispatchers.pages;
 
+import application.model.AlbumsStatistics;
 import application.model.CatalogAgent;
 import deezer.model.Album;
 
@@ -11,7 +12,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 @WebServlet(urlPatterns = {"/top"})
 public class TopAlbumsPageServlet extends HttpServlet {
@@ -28,11 +29,10 @@ public class TopAlbumsPageServlet extends HttpServlet {
         final List<Album> topAlbums = this.catalogAgent.getTopAlbums(0, TopAlbumsPageServlet.N_ALBUMS);
         request.setAttribute("albums", topAlbums);
         if (topAlbums != null) {
-            final Map<Album, Integer> albumsReviewsCountMap = this.catalogAgent.getAlbumsReviewsCount(topAlbums);
-            request.setAttribute("albumsReviewsCountMap", albumsReviewsCountMap);
-
-            final Map<Album, Double> albumsAverageRatingsMap = this.catalogAgent.getAlbumsAverageRatings(topAlbums);
-            request.setAttribute("albumsAverageRatingsMap", albumsAverageRatingsMap);
+            final AlbumsStatistics albumsStatistics = this.catalogAgent.getAlbumsStatistics(topAlbums.stream()
+                    .map(Album::getId)
+                    .collect(Collectors.toList()));
+            request.setAttribute("albumsStatistics", albumsStatistics);
         }
         request.getRequestDispatcher("/WEB-INF/jsp/pages/top.jsp").forward(request, response);
     }
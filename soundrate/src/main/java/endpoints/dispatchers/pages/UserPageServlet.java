@@ -48,7 +48,7 @@ public class UserPageServlet extends HttpServlet {
         else {
             request.setAttribute("user", user);
 
-            final List<Review> userReviews = this.usersAgent.getUserReviews(user);
+            final List<Review> userReviews = this.usersAgent.getUserReviews(user, null, null, true);
             request.setAttribute("userReviews", userReviews);
 
             final int userReviewsCount = this.usersAgent.getUserReviewsCount(user);
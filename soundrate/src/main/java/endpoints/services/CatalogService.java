@@ -4,9 +4,11 @@ import application.entities.BacklogEntry;
 import application.entities.Review;
 import application.entities.User;
 import application.model.CatalogAgent;
+import application.model.Page;
 import application.model.UsersAgent;
 import application.model.exceptions.BacklogEntryNotFoundException;
 import application.model.exceptions.ConflictingBacklogEntryException;
+import application.model.exceptions.InvalidCursorException;
 import deezer.model.Album;
 import deezer.model.Artist;
 import deezer.model.Genre;
@@ -60,6 +62,15 @@ public class CatalogService {
         return Response.ok(this.mapper.toJson(backlogEntry), MediaType.APPLICATION_JSON).build();
     }
 
+    @Path("/get-quota-usage")
+    @GET
+    public Response getQuotaUsage(@Context final HttpServletRequest request) {
+        final User sessionUser = (User) request.getSession().getAttribute("user");
+        if (sessionUser == null || sessionUser.getRole() != User.Role.ADMINISTRATOR)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        return Response.ok(this.mapper.toJson(this.catalogAgent.getQuotaUsage()), MediaType.APPLICATION_JSON).build();
+    }
+
     @Path("/get-album")
     @GET
     public Response getAlbum(@QueryParam("id") @NotNull final Long albumId) {
@@ -86,6 +97,7 @@ public class CatalogService {
     public Response getAlbumReviews(@QueryParam("id") @NotNull final Long albumId,
                                     @QueryParam("index") @Min(0) final Integer index,
                                     @QueryParam("limit") @Min(1) final Integer limit,
+                                    @QueryParam("cursor") final String cursor,
                                     @Context final HttpServletRequest request) {
         final Album album = this.catalogAgent.getAlbum(albumId);
         if (album == null) {
@@ -93,6 +105,21 @@ public class CatalogService {
                     .getString("error.albumNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Review> albumReviewsPage = this.catalogAgent.getAlbumReviewsPage(album, cursor, limit);
+                return Response.ok(this.mapper.toJson(albumReviewsPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, albumReviewsPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Review> albumReviews = this.catalogAgent
                 .getAlbumReviews(album, index == null ? 0 : index, limit == null ? Integer.MAX_VALUE : limit);
         return Response.ok(this.mapper.toJson(albumReviews), MediaType.APPLICATION_JSON).build();
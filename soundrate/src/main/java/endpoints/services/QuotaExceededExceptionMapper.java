@@ -0,0 +1,30 @@
+package endpoints.services;
+
+import application.model.exceptions.QuotaExceededException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import java.util.ResourceBundle;
+
+// catalog calls rejected because of the Deezer API quota are reported as temporarily unavailable
+@Provider
+public class QuotaExceededExceptionMapper implements ExceptionMapper<QuotaExceededException> {
+
+    @Context
+    private HttpServletRequest request;
+
+    @Override
+    public Response toResponse(final QuotaExceededException exception) {
+        final String response = ResourceBundle.getBundle("i18n/strings/strings", this.request.getLocale())
+                .getString("error.quotaExceeded");
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, exception.getRetryAfterSeconds())
+                .entity(response)
+                .build();
+    }
+
+}
@@ -5,6 +5,7 @@ import application.entities.Review;
 import application.entities.User;
 import application.entities.Vote;
 import application.model.CatalogAgent;
+import application.model.Page;
 import application.model.ReviewsAgent;
 import application.model.UsersAgent;
 import application.model.exceptions.*;
@@ -87,6 +88,7 @@ public class ReviewsService {
                                    @QueryParam("album") @NotNull final Long reviewedAlbumId,
                                    @QueryParam("index") @Min(0) final Integer index,
                                    @QueryParam("limit") @Min(1) final Integer limit,
+                                   @QueryParam("cursor") final String cursor,
                                    @Context final HttpServletRequest request) {
         final Review review = this.reviewsAgent.getReview(reviewerUsername, reviewedAlbumId);
         if (review == null) {
@@ -94,6 +96,21 @@ public class ReviewsService {
                     .getString("error.reviewNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Vote> reviewVotesPage = this.reviewsAgent.getReviewVotesPage(review, cursor, limit);
+                return Response.ok(this.mapper.toJson(reviewVotesPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, reviewVotesPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Vote> reviewVotes = this.reviewsAgent.getReviewVotes(review, index, limit);
         return Response.ok(this.mapper.toJson(reviewVotes), MediaType.APPLICATION_JSON).build();
     }
@@ -104,6 +121,7 @@ public class ReviewsService {
                                      @QueryParam("album") @NotNull final Long reviewedAlbumId,
                                      @QueryParam("index") @Min(0) final Integer index,
                                      @QueryParam("limit") @Min(1) final Integer limit,
+                                     @QueryParam("cursor") final String cursor,
                                      @Context final HttpServletRequest request) {
         final Review review = this.reviewsAgent.getReview(reviewerUsername, reviewedAlbumId);
         if (review == null) {
@@ -111,6 +129,21 @@ public class ReviewsService {
                     .getString("error.reviewNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Vote> reviewUpvotesPage = this.reviewsAgent.getReviewUpvotesPage(review, cursor, limit);
+                return Response.ok(this.mapper.toJson(reviewUpvotesPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, reviewUpvotesPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Vote> reviewUpvotes = this.reviewsAgent.getReviewUpvotes(review, index, limit);
         return Response.ok(this.mapper.toJson(reviewUpvotes), MediaType.APPLICATION_JSON).build();
     }
@@ -121,6 +154,7 @@ public class ReviewsService {
                                        @QueryParam("album") @NotNull final Long reviewedAlbumId,
                                        @QueryParam("index") @Min(0) final Integer index,
                                        @QueryParam("limit") @Min(1) final Integer limit,
+                                       @QueryParam("cursor") final String cursor,
                                        @Context final HttpServletRequest request) {
         final Review review = this.reviewsAgent.getReview(reviewerUsername, reviewedAlbumId);
         if (review == null) {
@@ -128,6 +162,21 @@ public class ReviewsService {
                     .getString("error.reviewNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Vote> reviewDownvotesPage = this.reviewsAgent.getReviewDownvotesPage(review, cursor, limit);
+                return Response.ok(this.mapper.toJson(reviewDownvotesPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, reviewDownvotesPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Vote> reviewDownvotes = this.reviewsAgent.getReviewDownvotes(review, index, limit);
         return Response.ok(this.mapper.toJson(reviewDownvotes), MediaType.APPLICATION_JSON).build();
     }
@@ -166,6 +215,7 @@ public class ReviewsService {
                                      @QueryParam("album") @NotNull final Long reviewedAlbumId,
                                      @QueryParam("index") @Min(0) final Integer index,
                                      @QueryParam("limit") @Min(1) final Integer limit,
+                                     @QueryParam("cursor") final String cursor,
                                      @Context final HttpServletRequest request) {
         final User sessionUser = (User) request.getSession().getAttribute("user");
         if (sessionUser == null
@@ -177,6 +227,21 @@ public class ReviewsService {
                     .getString("error.reviewNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Report> reviewReportsPage = this.reviewsAgent.getReviewReportsPage(review, cursor, limit);
+                return Response.ok(this.mapper.toJson(reviewReportsPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, reviewReportsPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Report> reviewReports = this.reviewsAgent.getReviewReports(review, index, limit);
         return Response.ok(this.mapper.toJson(reviewReports), MediaType.APPLICATION_JSON).build();
     }
@@ -185,6 +250,7 @@ public class ReviewsService {
     @GET
     public Response getReportedReviews(@QueryParam("index") @Min(0) final Integer index,
                                        @QueryParam("limit") @Min(1) final Integer limit,
+                                       @QueryParam("cursor") final String cursor,
                                        @Context final HttpServletRequest request) {
         final User sessionUser = (User) request.getSession().getAttribute("user");
         final Boolean isModerator = sessionUser == null
@@ -192,6 +258,21 @@ public class ReviewsService {
                 : sessionUser.getRole() == User.Role.MODERATOR || sessionUser.getRole() == User.Role.ADMINISTRATOR;
         if (isModerator == null || !isModerator)
             return Response.status(Response.Status.UNAUTHORIZED).build();
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Review> reportedReviewsPage = this.reviewsAgent.getReportedReviewsPage(cursor, limit);
+                return Response.ok(this.mapper.toJson(reportedReviewsPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, reportedReviewsPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Review> reportedReviews = this.reviewsAgent.getReportedReviews(index, limit);
         return Response.ok(this.mapper.toJson(reportedReviews), MediaType.APPLICATION_JSON).build();
     }
@@ -222,9 +303,8 @@ public class ReviewsService {
         }
         Review review = this.reviewsAgent.getReview(reviewerUsername, reviewedAlbumId);
         if (review == null) {
-            review = new Review()
+            review = this.catalogAgent.setReviewedAlbum(new Review(), reviewedAlbum)
                     .setReviewer(reviewer)
-                    .setReviewedAlbumId(reviewedAlbumId)
                     .setContent(content)
                     .setRating(rating)
                     .setPublicationDate(new Date());
@@ -239,6 +319,8 @@ public class ReviewsService {
                 return Response.status(Response.Status.CONFLICT).entity(response).build();
             }
         } else {
+            if (review.getReviewedArtistId() == null)
+                this.catalogAgent.setReviewedAlbum(review, reviewedAlbum);
             review
                     .setContent(content)
                     .setRating(rating);
@@ -1,8 +1,12 @@
 package endpoints.services;
 
 import application.entities.*;
+import application.model.Page;
+import application.model.UserDeletionAgent;
+import application.model.UserDeletionProgress;
 import application.model.UsersAgent;
 import application.model.exceptions.ConflictingEmailAddressException;
+import application.model.exceptions.InvalidCursorException;
 import application.model.exceptions.UserNotFoundException;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
@@ -46,6 +50,8 @@ public class UsersService {
 
     // expressed in minutes
     private static final int RECOVER_ACCOUNT_TOKEN_TTL = 30;
+    // accounts with more reviews, votes, reports and backlog entries are deleted in background
+    private static final int BACKGROUND_DELETION_THRESHOLD = 1000;
 
     @Resource(mappedName = "mail/soundrateMailSession")
     private Session mailSession;
@@ -53,6 +59,8 @@ public class UsersService {
     @Inject
     private UsersAgent usersAgent;
     @Inject
+    private UserDeletionAgent userDeletionAgent;
+    @Inject
     private Validator validator;
 
     private Jsonb mapper;
@@ -74,6 +82,7 @@ public class UsersService {
     public Response getUserReviews(@QueryParam("user") @NotBlank final String username,
                                    @QueryParam("index") @Min(0) final Integer index,
                                    @QueryParam("limit") @Min(1) final Integer limit,
+                                   @QueryParam("cursor") final String cursor,
                                    @Context final HttpServletRequest request) {
         final User user = this.usersAgent.getUser(username);
         if (user == null) {
@@ -81,6 +90,21 @@ public class UsersService {
                     .getString("error.userNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Review> userReviewsPage = this.usersAgent.getUserReviewsPage(user, cursor, limit);
+                return Response.ok(this.mapper.toJson(userReviewsPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, userReviewsPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Review> userReviews = this.usersAgent.getUserReviews(user, index, limit);
         return Response.ok(this.mapper.toJson(userReviews), MediaType.APPLICATION_JSON).build();
     }
@@ -90,6 +114,7 @@ public class UsersService {
     public Response getUserVotes(@QueryParam("user") @NotBlank final String username,
                                  @QueryParam("index") @Min(0) final Integer index,
                                  @QueryParam("limit") @Min(1) final Integer limit,
+                                 @QueryParam("cursor") final String cursor,
                                  @Context final HttpServletRequest request) {
         final User user = this.usersAgent.getUser(username);
         if (user == null) {
@@ -97,6 +122,21 @@ public class UsersService {
                     .getString("error.userNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Vote> userVotesPage = this.usersAgent.getUserVotesPage(user, cursor, limit);
+                return Response.ok(this.mapper.toJson(userVotesPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, userVotesPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Vote> userVotes = this.usersAgent.getUserVotes(user, index, limit);
         return Response.ok(this.mapper.toJson(userVotes), MediaType.APPLICATION_JSON).build();
     }
@@ -106,6 +146,7 @@ public class UsersService {
     public Response getUserUpvotes(@QueryParam("user") @NotBlank final String username,
                                    @QueryParam("index") @Min(0) final Integer index,
                                    @QueryParam("limit") @Min(1) final Integer limit,
+                                   @QueryParam("cursor") final String cursor,
                                    @Context final HttpServletRequest request) {
         final User user = this.usersAgent.getUser(username);
         if (user == null) {
@@ -113,6 +154,21 @@ public class UsersService {
                     .getString("error.userNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Vote> userUpvotesPage = this.usersAgent.getUserUpvotesPage(user, cursor, limit);
+                return Response.ok(this.mapper.toJson(userUpvotesPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, userUpvotesPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Vote> userUpvotes = this.usersAgent.getUserUpvotes(user, index, limit);
         return Response.ok(this.mapper.toJson(userUpvotes), MediaType.APPLICATION_JSON).build();
     }
@@ -122,6 +178,7 @@ public class UsersService {
     public Response getUserDownvotes(@QueryParam("user") @NotBlank final String username,
                                      @QueryParam("index") @Min(0) final Integer index,
                                      @QueryParam("limit") @Min(1) final Integer limit,
+                                     @QueryParam("cursor") final String cursor,
                                      @Context final HttpServletRequest request) {
         final User user = this.usersAgent.getUser(username);
         if (user == null) {
@@ -129,6 +186,21 @@ public class UsersService {
                     .getString("error.userNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Vote> userDownvotesPage = this.usersAgent.getUserDownvotesPage(user, cursor, limit);
+                return Response.ok(this.mapper.toJson(userDownvotesPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, userDownvotesPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Vote> userDownvotes = this.usersAgent.getUserDownvotes(user, index, limit);
         return Response.ok(this.mapper.toJson(userDownvotes), MediaType.APPLICATION_JSON).build();
     }
@@ -138,6 +210,7 @@ public class UsersService {
     public Response getUserReports(@QueryParam("user") @NotBlank final String username,
                                    @QueryParam("index") @Min(0) final Integer index,
                                    @QueryParam("limit") @Min(1) final Integer limit,
+                                   @QueryParam("cursor") final String cursor,
                                    @Context final HttpServletRequest request) {
         final User sessionUser = (User) request.getSession().getAttribute("user");
         if (sessionUser == null
@@ -149,6 +222,21 @@ public class UsersService {
                     .getString("error.userNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<Report> userReportsPage = this.usersAgent.getUserReportsPage(user, cursor, limit);
+                return Response.ok(this.mapper.toJson(userReportsPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, userReportsPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<Report> userReports = this.usersAgent.getUserReports(user, index, limit);
         return Response.ok(this.mapper.toJson(userReports), MediaType.APPLICATION_JSON).build();
     }
@@ -158,6 +246,7 @@ public class UsersService {
     public Response getUserBacklog(@QueryParam("user") @NotBlank final String username,
                                    @QueryParam("index") @Min(0) final Integer index,
                                    @QueryParam("limit") @Min(1) final Integer limit,
+                                   @QueryParam("cursor") final String cursor,
                                    @Context final HttpServletRequest request) {
         final User user = this.usersAgent.getUser(username);
         if (user == null) {
@@ -165,6 +254,21 @@ public class UsersService {
                     .getString("error.userNotFound");
             return Response.status(Response.Status.NOT_FOUND).entity(response).build();
         }
+        if (cursor != null) {
+            /* the cursor alone tells where the page starts */
+            if (index != null)
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            try {
+                final Page<BacklogEntry> userBacklogPage = this.usersAgent.getUserBacklogPage(user, cursor, limit);
+                return Response.ok(this.mapper.toJson(userBacklogPage.getElements()), MediaType.APPLICATION_JSON)
+                        .header(Page.NEXT_CURSOR_HEADER, userBacklogPage.getNextCursor())
+                        .build();
+            } catch (InvalidCursorException e) {
+                final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                        .getString("error.invalidCursor");
+                return Response.status(Response.Status.BAD_REQUEST).entity(response).build();
+            }
+        }
         final List<BacklogEntry> userBacklog = this.usersAgent.getUserBacklog(user, index, limit);
         return Response.ok(this.mapper.toJson(userBacklog), MediaType.APPLICATION_JSON).build();
     }
@@ -263,6 +367,54 @@ public class UsersService {
         return Response.ok().build();
     }
 
+    @Path("/delete-user")
+    @POST
+    public Response deleteUser(@FormParam("username") @NotBlank final String username,
+                               @Context final HttpServletRequest request) {
+        final User sessionUser = (User) request.getSession().getAttribute("user");
+        if (sessionUser == null
+                || !(sessionUser.getUsername().equals(username) || sessionUser.getRole() == User.Role.ADMINISTRATOR))
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        try {
+            final User user = this.usersAgent.getUser(username);
+            if (user == null)
+                throw new UserNotFoundException();
+            final UserDeletionProgress progress = this.userDeletionAgent.getUserDeletionProgress(username);
+            final boolean background = (progress != null && progress.getState() == UserDeletionProgress.State.RUNNING)
+                    || this.userDeletionAgent.getUserRowsCount(user) > UsersService.BACKGROUND_DELETION_THRESHOLD;
+            final Response response;
+            if (background)
+                response = Response.accepted(this.mapper.toJson(this.userDeletionAgent.scheduleUserDeletion(user)))
+                        .type(MediaType.APPLICATION_JSON)
+                        .build();
+            else {
+                this.usersAgent.deleteUser(user);
+                response = Response.ok().build();
+            }
+            /* the session is kept if the deletion fails, so that the user can retry it */
+            if (sessionUser.getUsername().equals(username))
+                request.getSession().invalidate();
+            return response;
+        } catch (UserNotFoundException e) {
+            final String response = ResourceBundle.getBundle("i18n/strings/strings", request.getLocale())
+                    .getString("error.userNotFound");
+            return Response.status(Response.Status.NOT_FOUND).entity(response).build();
+        }
+    }
+
+    @Path("/get-user-deletion-progress")
+    @GET
+    public Response getUserDeletionProgress(@QueryParam("username") @NotBlank final String username,
+                                            @Context final HttpServletRequest request) {
+        final User sessionUser = (User) request.getSession().getAttribute("user");
+        if (sessionUser == null || sessionUser.getRole() != User.Role.ADMINISTRATOR)
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        final UserDeletionProgress progress = this.userDeletionAgent.getUserDeletionProgress(username);
+        if (progress == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+        return Response.ok(this.mapper.toJson(progress), MediaType.APPLICATION_JSON).build();
+    }
+
     @Path("/recover-user-account")
     @POST
     public Response recoverUserAccount(@FormParam("email") @NotBlank @Email final String email,
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 final class DataGenerator {
 
@@ -57,6 +58,7 @@ final class DataGenerator {
 
     private static List<Long> topAlbumsIds;
     private static List<Long> albumsIds;
+    private static Map<Long, Album> albums;
 
     static {
         try {
@@ -98,6 +100,7 @@ final class DataGenerator {
             List<Album> topAlbums = client.getTopAlbums(0, TOP_ALBUMS_NUMBER).getData();
             topAlbumsIds = topAlbums.stream().map(Album::getId).collect(Collectors.toList());
             albumsIds = topAlbumsIds;
+            albums = topAlbums.stream().collect(Collectors.toMap(Album::getId, album -> album, (a, b) -> a));
             /*
             List<Long> artistsIds = topAlbums.stream()
                     .map(album -> album.getArtist().getId()).distinct().collect(Collectors.toList());
@@ -121,40 +124,36 @@ final class DataGenerator {
     }
 
     static List<User> generateUsers() {
-        List<User> users = new LinkedList<>();
         final int usersToGen = random.nextInt(MIN_USERS, MAX_USERS + 1);
+        // randomly accessed by the reviews, votes and reports generation
+        List<User> users = new ArrayList<>(usersToGen);
+        List<String> passwords = new ArrayList<>(usersToGen);
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
         for (int i = 0; i < usersToGen; i++) {
             // Generating the user
             String username;
-            uniqueUsernameLoop:
-            while (true) {
+            do {
                 username = faker.internet().domainWord();
-                for (User user : users)
-                    if (user.getUsername().equals(username))
-                        continue uniqueUsernameLoop;
-                break;
-            }
+            } while (!usernames.add(username));
             String email;
-            uniqueEmailLoop:
-            while (true) {
+            do {
                 email = faker.internet().emailAddress();
-                for (User user : users)
-                    if (user.getEmail().equals(email))
-                        continue uniqueEmailLoop;
-                break;
-            }
-            String password = faker.internet().password
-                    (12, 30, true, false, true);
+            } while (!emails.add(email));
+            passwords.add(faker.internet().password
+                    (12, 30, true, false, true));
             Date signUpDate = faker.date().between(pastDate, currentDate);
             User user = new User()
                     .setUsername(username)
                     .setEmail(email)
-                    .setPassword(BCrypt.hashpw(password, BCrypt.gensalt()))
                     .setSignUpDate(signUpDate)
                     .setPicture(AvatarGenerator.generateRandomAvatarUrl(username))
                     .setRole(User.Role.USER);
             users.add(user);
         }
+        /* hashing dominates the generation and runs on the common fork-join pool, faker is not thread-safe */
+        IntStream.range(0, users.size()).parallel().forEach(i ->
+                users.get(i).setPassword(BCrypt.hashpw(passwords.get(i), BCrypt.gensalt())));
         return users;
     }
 
@@ -188,8 +187,15 @@ final class DataGenerator {
                 User reviewer = reviewers.get(i);
                 final String content = String.join("\n", faker.lorem().paragraphs
                         (random.nextInt(minParagraphs, maxParagraphs + 1)));
+                final Album album = albums.get(albumId);
                 reviews.add(new Review()
                         .setReviewedAlbumId(albumId)
+                        .setReviewedArtistId(album == null || album.getArtist() == null
+                                ? null
+                                : album.getArtist().getId())
+                        .setReviewedGenreId(album == null || album.getGenres() == null || album.getGenres().isEmpty()
+                                ? null
+                                : album.getGenres().getData().get(0).getId())
                         .setReviewer(reviewer)
                         .setContent(content)
                         .setRating(random.nextInt(minRating, maxRating + 1))
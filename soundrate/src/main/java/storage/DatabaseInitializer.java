@@ -1,12 +1,19 @@
 package storage;
 
 import application.entities.*;
+import application.model.EntityCacheAgent;
+import application.model.StatisticsAgent;
 import application.util.AvatarGenerator;
 import org.mindrot.jbcrypt.BCrypt;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.io.IOException;
@@ -15,6 +22,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,52 +31,126 @@ import java.util.logging.Logger;
 @Startup
 public class DatabaseInitializer {
 
+    // entities persisted between two flushes of the generated data
+    private static final int BATCH_SIZE = 500;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Inject
+    private StatisticsAgent statisticsAgent;
+
+    @Inject
+    private SchemaMigrator schemaMigrator;
+
+    @Inject
+    private EntityCacheAgent entityCacheAgent;
+
+    @Resource
+    private SessionContext sessionContext;
+
+    // every phase commits on its own, as the statistics rebuilds lock and read the rows in their own transactions
     @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     private void initializeDatabase() throws IOException {
         Properties properties = new Properties();
         properties.load(this.getClass().getClassLoader().getResourceAsStream("application.properties"));
+        final int appliedMigrations = this.schemaMigrator.migrate();
         if (Boolean.parseBoolean(properties.getProperty("populateDatabase")))
             this.generateData();
+        /* the album_stats table created by the migrations starts empty on the databases that already have reviews */
+        else if (appliedMigrations > 0)
+            this.statisticsAgent.rebuildAlbumsStatistics();
         if (Boolean.parseBoolean(properties.getProperty("generateDefaultUsers")))
-            this.generateDefaultUsers();
+            this.sessionContext.getBusinessObject(DatabaseInitializer.class).generateDefaultUsers();
     }
 
     private void generateData() {
         Logger logger = Logger.getLogger(this.getClass().getSimpleName());
         logger.setLevel(Level.ALL);
         final long begin = System.nanoTime();
+        final DatabaseInitializer databaseInitializer =
+                this.sessionContext.getBusinessObject(DatabaseInitializer.class);
+
+        DatabaseInitializer.runPhase(logger, databaseInitializer::deleteData,
+                result -> String.format("Deleted %d rows of existing data.", result));
+        List<User> users = DatabaseInitializer.runPhase(logger, DataGenerator::generateUsers,
+                result -> String.format("Generated %d users.", result.size()));
+        List<Review> reviews = DatabaseInitializer.runPhase(logger, () -> DataGenerator.generateReviews(users),
+                result -> String.format("Generated %d reviews.", result.size()));
+        List<Vote> votes = DatabaseInitializer.runPhase(logger, () -> DataGenerator.generateVotes(users, reviews),
+                result -> String.format("Generated %d votes.", result.size()));
+        List<BacklogEntry> backlogEntries = DatabaseInitializer.runPhase(logger,
+                () -> DataGenerator.generateBacklogEntries(users),
+                result -> String.format("Generated %d backlog entries.", result.size()));
+        List<Report> reports = DatabaseInitializer.runPhase(logger, () -> DataGenerator.generateReports(users, reviews),
+                result -> String.format("Generated %d reviews reports.", result.size()));
 
-        logger.info("Generating users...");
-        List<User> users = DataGenerator.generateUsers();
-        logger.info("Generating reviews...");
-        List<Review> reviews = DataGenerator.generateReviews(users);
-        logger.info("Generating votes...");
-        List<Vote> votes = DataGenerator.generateVotes(users, reviews);
-        logger.info("Generating backlog entries...");
-        List<BacklogEntry> backlogEntries = DataGenerator.generateBacklogEntries(users);
-        logger.info("Generating reviews reports...");
-        List<Report> reports = DataGenerator.generateReports(users, reviews);
-
-        logger.info(String.format("Persisting %d users...", users.size()));
-        users.forEach(this.entityManager::persist);
-        logger.info(String.format("Persisting %d reviews...", reviews.size()));
-        reviews.forEach(this.entityManager::persist);
-        logger.info(String.format("Persisting %d votes...", votes.size()));
-        votes.forEach(this.entityManager::persist);
-        logger.info(String.format("Persisting %d backlog entries...", backlogEntries.size()));
-        backlogEntries.forEach(this.entityManager::persist);
-        logger.info(String.format("Persisting %d reviews reports...", reports.size()));
-        reports.forEach(this.entityManager::persist);
+        /* referenced entities first, once detached by the batches they are still valid references */
+        DatabaseInitializer.runPhase(logger, () -> databaseInitializer.persistInBatches(users),
+                result -> String.format("Persisted %d users.", result));
+        DatabaseInitializer.runPhase(logger, () -> databaseInitializer.persistInBatches(reviews),
+                result -> String.format("Persisted %d reviews.", result));
+        DatabaseInitializer.runPhase(logger, () -> databaseInitializer.persistInBatches(votes),
+                result -> String.format("Persisted %d votes.", result));
+        DatabaseInitializer.runPhase(logger, () -> databaseInitializer.persistInBatches(backlogEntries),
+                result -> String.format("Persisted %d backlog entries.", result));
+        DatabaseInitializer.runPhase(logger, () -> databaseInitializer.persistInBatches(reports),
+                result -> String.format("Persisted %d reviews reports.", result));
+        DatabaseInitializer.runPhase(logger, this.statisticsAgent::rebuildAlbumsStatistics,
+                result -> "Computed the albums statistics.");
+        DatabaseInitializer.runPhase(logger, this.statisticsAgent::rebuildReviewsScores,
+                result -> "Computed the reviews scores.");
+        DatabaseInitializer.runPhase(logger, this.statisticsAgent::rebuildReviewsReportsCounts,
+                result -> "Computed the reviews reports counts.");
 
         final long end = System.nanoTime();
         logger.info(String.format("Persisted users data. Time elapsed: %d ms.",
                 TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
     }
 
-    private void generateDefaultUsers() {
+    // flushes and detaches the entities every batch, so that the persistence context stays small and the inserts of
+    // a batch are sent to the database together
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int persistInBatches(final List<?> entities) {
+        int persistedCount = 0;
+        for (Object entity : entities) {
+            this.entityManager.persist(entity);
+            if (++persistedCount % DatabaseInitializer.BATCH_SIZE == 0) {
+                this.entityManager.flush();
+                this.entityManager.clear();
+            }
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+        return persistedCount;
+    }
+
+    // runs the phase and logs its description along with the time elapsed
+    private static <T> T runPhase(final Logger logger,
+                                  final Supplier<T> phase,
+                                  final Function<T, String> description) {
+        final long begin = System.nanoTime();
+        final T result = phase.get();
+        final long end = System.nanoTime();
+        logger.info(String.format("%s Time elapsed: %d ms.", description.apply(result),
+                TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+        return result;
+    }
+
+    // reports and votes first, as they reference the reviews, which reference the users
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int deleteData() {
+        int deletedRows = 0;
+        /* Criteria API bulk deletion not yet implemented in OpenJPA (current version 3.2.2 in TomEE 8.0.13) */
+        for (String entityName : Arrays.asList("Report", "Vote", "BacklogEntry", "Review", "AlbumStatistics", "User"))
+            deletedRows += this.entityManager.createQuery("DELETE FROM " + entityName + " e").executeUpdate();
+        this.entityCacheAgent.evictAll();
+        return deletedRows;
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void generateDefaultUsers() {
         final List<User> defaultUsers = Arrays.asList(
                 new User()
                         .setUsername("admin")
@@ -0,0 +1,74 @@
+package storage;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Writes the primary heartbeat and reads back the replicated one every second when the persistence unit runs in the
+ * replica routing mode, and does nothing otherwise.
+ */
+@Singleton
+@Startup
+public class ReplicaMonitor {
+
+    private static final Logger logger = Logger.getLogger(ReplicaMonitor.class.getSimpleName());
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    private ReplicaRoutingDataSource routingDataSource;
+    // the failures are logged once until the replica is reachable again
+    private boolean replicaUnreachable;
+
+    @PostConstruct
+    private void init() {
+        final Object connectionFactory = this.entityManagerFactory.unwrap(OpenJPAEntityManagerFactorySPI.class)
+                .getConfiguration().getConnectionFactory();
+        try {
+            if (connectionFactory instanceof DataSource
+                    && ((DataSource) connectionFactory).isWrapperFor(ReplicaRoutingDataSource.class))
+                this.routingDataSource = ((DataSource) connectionFactory).unwrap(ReplicaRoutingDataSource.class);
+        } catch (SQLException e) {
+            ReplicaMonitor.logger.log(Level.WARNING, "Could not inspect the persistence unit data source", e);
+        }
+        if (this.routingDataSource != null)
+            ReplicaMonitor.logger.info("Routing the read-only calls to the replica.");
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    private void beat() {
+        if (this.routingDataSource == null)
+            return;
+        try {
+            this.routingDataSource.writeHeartbeat();
+            this.routingDataSource.probeReplica();
+            if (this.replicaUnreachable)
+                ReplicaMonitor.logger.info(String.format("Replica reachable again, lag: %d ms.",
+                        this.routingDataSource.getReplicaLag()));
+            this.replicaUnreachable = false;
+        } catch (SQLException e) {
+            if (!this.replicaUnreachable)
+                ReplicaMonitor.logger.log(Level.WARNING, "Heartbeat failed, reading from the primary", e);
+            this.replicaUnreachable = true;
+        }
+    }
+
+    // milliseconds, null if the replica is not used or unreachable
+    public Long getReplicaLag() {
+        return this.routingDataSource == null ? null : this.routingDataSource.getReplicaLag();
+    }
+
+}
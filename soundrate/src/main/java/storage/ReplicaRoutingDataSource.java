@@ -0,0 +1,244 @@
+package storage;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/*
+ * Data source handing out connections to a read replica for the read-only agent methods invoked outside of any
+ * transaction, and to the primary database otherwise, so that writes and the reads of a transaction that may have
+ * written stay on the primary. The replica is only used once it has caught up with the last transaction committed
+ * on the primary by this instance, which is known from the heartbeat the primary writes periodically: a replicated
+ * heartbeat written after that commit means that the commit has been replicated too. A replica whose last replicated
+ * heartbeat is older than the maximum lag is not used either, as it misses the writes of the other instances.
+ * Declared as a resource whose PrimaryDataSource and ReplicaDataSource properties are the identifiers of the two
+ * data source resources, and used as the persistence unit JTA data source in the replica routing mode.
+ */
+public class ReplicaRoutingDataSource implements DataSource {
+
+    private static final Logger logger = Logger.getLogger(ReplicaRoutingDataSource.class.getSimpleName());
+
+    private static final String RESOURCES_CONTEXT = "openejb:Resource/";
+    private static final String TRANSACTION_SYNCHRONIZATION_REGISTRY = "java:comp/TransactionSynchronizationRegistry";
+
+    private static final int HEARTBEAT_ID = 1;
+    private static final String UPDATE_HEARTBEAT = "UPDATE replica_heartbeat SET beat = ? WHERE id = ?";
+    private static final String INSERT_HEARTBEAT = "INSERT INTO replica_heartbeat (id, beat) VALUES (?, ?)";
+    private static final String SELECT_HEARTBEAT = "SELECT beat FROM replica_heartbeat WHERE id = ?";
+
+    // set for the duration of the read-only agent methods invocations
+    private static final ThreadLocal<Boolean> readOnly = ThreadLocal.withInitial(() -> false);
+
+    private String primaryDataSourceName;
+    private String replicaDataSourceName;
+    // expressed in milliseconds
+    private long maximumLag = 5_000;
+
+    private volatile DataSource primaryDataSource;
+    private volatile DataSource replicaDataSource;
+    private volatile TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    // epoch milliseconds of the last commit of a transaction that used the primary
+    private final AtomicLong lastCommitTime = new AtomicLong();
+    // epoch milliseconds of the last primary heartbeat found on the replica, 0 if unknown
+    private volatile long replicaHeartbeat;
+
+    public static <T> T callReadOnly(final Callable<T> call) throws Exception {
+        final boolean outerReadOnly = ReplicaRoutingDataSource.readOnly.get();
+        ReplicaRoutingDataSource.readOnly.set(true);
+        try {
+            return call.call();
+        } finally {
+            ReplicaRoutingDataSource.readOnly.set(outerReadOnly);
+        }
+    }
+
+    public void setPrimaryDataSource(final String primaryDataSourceName) {
+        this.primaryDataSourceName = primaryDataSourceName;
+    }
+
+    public void setReplicaDataSource(final String replicaDataSourceName) {
+        this.replicaDataSourceName = replicaDataSourceName;
+    }
+
+    public void setMaximumLag(final long maximumLag) {
+        this.maximumLag = maximumLag;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (this.isReplicaReadable())
+            return this.getReplicaDataSource().getConnection();
+        final Connection connection = this.getPrimaryDataSource().getConnection();
+        this.trackCommit();
+        return connection;
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        if (this.isReplicaReadable())
+            return this.getReplicaDataSource().getConnection(username, password);
+        final Connection connection = this.getPrimaryDataSource().getConnection(username, password);
+        this.trackCommit();
+        return connection;
+    }
+
+    public boolean isReplicaReadable() {
+        if (!ReplicaRoutingDataSource.readOnly.get() || this.isTransactionActive())
+            return false;
+        final long replicaHeartbeat = this.replicaHeartbeat;
+        return replicaHeartbeat > this.lastCommitTime.get()
+                && System.currentTimeMillis() - replicaHeartbeat <= this.maximumLag;
+    }
+
+    // writes the current time as the heartbeat of the primary, to be called periodically
+    public void writeHeartbeat() throws SQLException {
+        try (Connection connection = this.getPrimaryDataSource().getConnection()) {
+            connection.setAutoCommit(true);
+            final long beat = System.currentTimeMillis();
+            try (PreparedStatement update = connection.prepareStatement(ReplicaRoutingDataSource.UPDATE_HEARTBEAT)) {
+                update.setLong(1, beat);
+                update.setInt(2, ReplicaRoutingDataSource.HEARTBEAT_ID);
+                if (update.executeUpdate() > 0)
+                    return;
+            }
+            try (PreparedStatement insert = connection.prepareStatement(ReplicaRoutingDataSource.INSERT_HEARTBEAT)) {
+                insert.setInt(1, ReplicaRoutingDataSource.HEARTBEAT_ID);
+                insert.setLong(2, beat);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    // reads the last heartbeat replicated, the replica is not used until it succeeds again if it fails
+    public void probeReplica() throws SQLException {
+        try (Connection connection = this.getReplicaDataSource().getConnection();
+             PreparedStatement select = connection.prepareStatement(ReplicaRoutingDataSource.SELECT_HEARTBEAT)) {
+            select.setInt(1, ReplicaRoutingDataSource.HEARTBEAT_ID);
+            try (ResultSet resultSet = select.executeQuery()) {
+                this.replicaHeartbeat = resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            this.replicaHeartbeat = 0;
+            throw e;
+        }
+    }
+
+    // milliseconds elapsed since the last heartbeat found on the replica was written, null if unknown
+    public Long getReplicaLag() {
+        final long replicaHeartbeat = this.replicaHeartbeat;
+        return replicaHeartbeat == 0 ? null : System.currentTimeMillis() - replicaHeartbeat;
+    }
+
+    /* once per transaction, the commit time is taken after the commit, so a strictly later heartbeat follows it */
+    private void trackCommit() {
+        final TransactionSynchronizationRegistry registry = this.getTransactionSynchronizationRegistry();
+        if (registry == null || registry.getTransactionKey() == null || registry.getResource(this) != null)
+            return;
+        registry.putResource(this, Boolean.TRUE);
+        registry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED)
+                    ReplicaRoutingDataSource.this.lastCommitTime
+                            .accumulateAndGet(System.currentTimeMillis(), Math::max);
+            }
+
+        });
+    }
+
+    // without a registry, transactions cannot be told apart and the replica is never used
+    private boolean isTransactionActive() {
+        final TransactionSynchronizationRegistry registry = this.getTransactionSynchronizationRegistry();
+        return registry == null || registry.getTransactionKey() != null;
+    }
+
+    private TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+        if (this.transactionSynchronizationRegistry == null) {
+            try {
+                this.transactionSynchronizationRegistry = (TransactionSynchronizationRegistry)
+                        new InitialContext().lookup(ReplicaRoutingDataSource.TRANSACTION_SYNCHRONIZATION_REGISTRY);
+            } catch (NamingException e) {
+                ReplicaRoutingDataSource.logger.warning("Transaction synchronization registry not found: " + e);
+            }
+        }
+        return this.transactionSynchronizationRegistry;
+    }
+
+    private DataSource getPrimaryDataSource() throws SQLException {
+        if (this.primaryDataSource == null)
+            this.primaryDataSource = ReplicaRoutingDataSource.lookUp(this.primaryDataSourceName);
+        return this.primaryDataSource;
+    }
+
+    private DataSource getReplicaDataSource() throws SQLException {
+        if (this.replicaDataSource == null)
+            this.replicaDataSource = ReplicaRoutingDataSource.lookUp(this.replicaDataSourceName);
+        return this.replicaDataSource;
+    }
+
+    private static DataSource lookUp(final String name) throws SQLException {
+        if (name == null)
+            throw new SQLException("Data source not configured.");
+        try {
+            return (DataSource) new InitialContext().lookup(ReplicaRoutingDataSource.RESOURCES_CONTEXT + name);
+        } catch (NamingException e) {
+            throw new SQLException(String.format("Data source %s not found.", name), e);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return this.getPrimaryDataSource().getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        this.getPrimaryDataSource().setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        this.getPrimaryDataSource().setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return this.getPrimaryDataSource().getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return ReplicaRoutingDataSource.logger;
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this))
+            return iface.cast(this);
+        return this.getPrimaryDataSource().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || this.getPrimaryDataSource().isWrapperFor(iface);
+    }
+
+}
@@ -0,0 +1,109 @@
+package storage;
+
+import application.entities.Review;
+import application.entities.Review_;
+import application.model.CatalogAgent;
+import application.model.EntityCacheAgent;
+import application.model.ThrottledDeezerClient;
+import deezer.model.Album;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Records the artist and the main genre of the albums reviewed before they were stored along with the reviews.
+ * Albums are resolved in small batches with the lowest Deezer priority, so the backfill never competes with the pages
+ * for the API quota, and a batch interrupted by the quota is simply retried by the next run.
+ */
+@Singleton
+public class ReviewedAlbumsBackfill {
+
+    private static final Logger logger = Logger.getLogger(ReviewedAlbumsBackfill.class.getSimpleName());
+
+    private static final int BATCH_SIZE = 50;
+
+    // albums no longer available on Deezer, skipped by the next runs
+    private final Set<Long> unavailableAlbumIds = ConcurrentHashMap.newKeySet();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private CatalogAgent catalogAgent;
+
+    @Inject
+    private EntityCacheAgent entityCacheAgent;
+
+    @Schedule(hour = "*", minute = "*/5", persistent = false)
+    private void scheduledBackfill() {
+        this.backfillReviewedAlbums();
+    }
+
+    // returns the number of updated reviews
+    public int backfillReviewedAlbums() {
+        final List<Long> albumIds = this.getNotBackfilledAlbumIds();
+        if (albumIds.isEmpty())
+            return 0;
+
+        final Map<Long, Album> albums;
+        try {
+            albums = ThrottledDeezerClient.callWithPriority
+                    (ThrottledDeezerClient.Priority.PREFETCH, () -> this.catalogAgent.getAlbums(albumIds));
+        } catch (RuntimeException e) {
+            ReviewedAlbumsBackfill.logger.log(Level.FINE, "Could not resolve the reviewed albums, retrying later", e);
+            return 0;
+        }
+
+        int updatedReviews = 0;
+        for (Map.Entry<Long, Album> entry : albums.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().getArtist() == null) {
+                this.unavailableAlbumIds.add(entry.getKey());
+                continue;
+            }
+            final Review albumReview = this.catalogAgent.setReviewedAlbum(new Review(), entry.getValue());
+            updatedReviews += this.updateAlbumReviews
+                    (entry.getKey(), albumReview.getReviewedArtistId(), albumReview.getReviewedGenreId());
+        }
+        /* the updated reviews are not known one by one, and the backfill stops updating once it has caught up */
+        if (updatedReviews > 0)
+            this.entityCacheAgent.evictAll(Review.class);
+        ReviewedAlbumsBackfill.logger.info(String.format("Backfilled the artist and genre of %d reviews of %d albums.",
+                updatedReviews, albumIds.size()));
+        return updatedReviews;
+    }
+
+    private List<Long> getNotBackfilledAlbumIds() {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<Review> review = query.from(Review.class);
+        final List<Predicate> predicates = new ArrayList<>();
+        predicates.add(builder.isNull(review.get(Review_.reviewedArtistId)));
+        if (!this.unavailableAlbumIds.isEmpty())
+            predicates.add(builder.not(review.get(Review_.reviewedAlbumId).in(this.unavailableAlbumIds)));
+        query
+                .select(review.get(Review_.reviewedAlbumId))
+                .distinct(true)
+                .where(predicates.toArray(new Predicate[0]));
+
+        return this.entityManager.createQuery(query)
+                .setMaxResults(ReviewedAlbumsBackfill.BATCH_SIZE)
+                .getResultList();
+    }
+
+    private int updateAlbumReviews(final Long albumId, final Long artistId, final Long genreId) {
+        return this.entityManager.createNamedQuery(Review.UPDATE_REVIEWED_ALBUM_GROUPS)
+                .setParameter("reviewedArtistId", artistId)
+                .setParameter("reviewedGenreId", genreId)
+                .setParameter("reviewedAlbumId", albumId)
+                .executeUpdate();
+    }
+
+}
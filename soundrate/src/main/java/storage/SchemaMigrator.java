@@ -0,0 +1,217 @@
+package storage;
+
+import application.entities.SchemaMigration;
+import application.entities.SchemaMigration_;
+
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+ * Applies the versioned migration scripts of db/migrations, listed in order in migrations.list, that the database has
+ * not been migrated to yet. Each script runs in its own transaction along with its record in the schema_migration
+ * table, so that an interrupted migration resumes from the first script not applied. The checksum of every applied
+ * script is verified on each run, as a script edited after it has been applied would leave databases diverging.
+ * The scripts own the whole schema: the first one creates the schema_migration table, and the baseline one creates the
+ * tables of the databases that predate the migrations. Those databases are recognized by their review table, and the
+ * baseline script is recorded on them without being run.
+ */
+@Singleton
+public class SchemaMigrator {
+
+    private static final Logger logger = Logger.getLogger(SchemaMigrator.class.getSimpleName());
+
+    private static final String MIGRATIONS_DIRECTORY = "db/migrations/";
+    private static final String MIGRATIONS_LIST = "migrations.list";
+    // V<version>__<description>.sql, e.g. V2__add_votes_indexes.sql
+    private static final Pattern MIGRATION_FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String MIGRATIONS_TABLE = "schema_migration";
+    // version of the script creating the tables that already exist on the databases predating the migrations
+    private static final int BASELINE_VERSION = 2;
+    private static final String BASELINE_TABLE = "review";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Resource
+    private SessionContext sessionContext;
+
+    // returns the number of applied scripts
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int migrate() throws IOException {
+        final long begin = System.nanoTime();
+        final SchemaMigrator schemaMigrator = this.sessionContext.getBusinessObject(SchemaMigrator.class);
+
+        final Map<Integer, SchemaMigration> appliedMigrations = new HashMap<>();
+        final boolean migrated = schemaMigrator.tableExists(SchemaMigrator.MIGRATIONS_TABLE);
+        if (migrated)
+            schemaMigrator.getAppliedMigrations().forEach(migration ->
+                    appliedMigrations.put(migration.getVersion(), migration));
+        final boolean predatesMigrations = !migrated && schemaMigrator.tableExists(SchemaMigrator.BASELINE_TABLE);
+
+        int appliedScripts = 0;
+        for (MigrationScript script : SchemaMigrator.loadScripts()) {
+            final SchemaMigration appliedMigration = appliedMigrations.remove(script.version);
+            if (appliedMigration == null) {
+                if (predatesMigrations && script.version == SchemaMigrator.BASELINE_VERSION)
+                    schemaMigrator.recordScript(script);
+                else
+                    schemaMigrator.applyScript(script);
+                appliedScripts++;
+            } else if (!appliedMigration.getChecksum().equals(script.checksum))
+                throw new IllegalStateException(String.format(
+                        "Migration %d was modified after being applied: expected checksum %s, found %s.",
+                        script.version, appliedMigration.getChecksum(), script.checksum));
+        }
+        /* left by a newer version of the application, which is expected to keep the schema backward compatible */
+        appliedMigrations.keySet().forEach(version -> SchemaMigrator.logger.warning(
+                String.format("Migration %d was applied but is unknown to this version.", version)));
+
+        final long end = System.nanoTime();
+        SchemaMigrator.logger.info(String.format("Applied %d migrations. Time elapsed: %d ms.",
+                appliedScripts, TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+        return appliedScripts;
+    }
+
+    // the name is looked up as is, in upper case and in lower case, as databases store unquoted names differently
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean tableExists(final String name) {
+        try (Connection connection = this.entityManager.unwrap(Connection.class)) {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            for (String tableName : Arrays.asList(name, name.toUpperCase(), name.toLowerCase()))
+                try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, tableName,
+                        new String[]{"TABLE"})) {
+                    if (tables.next())
+                        return true;
+                }
+            return false;
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<SchemaMigration> getAppliedMigrations() {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<SchemaMigration> query = builder.createQuery(SchemaMigration.class);
+        Root<SchemaMigration> migration = query.from(SchemaMigration.class);
+        query.select(migration).orderBy(builder.asc(migration.get(SchemaMigration_.version)));
+        return this.entityManager.createQuery(query).getResultList();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void applyScript(final MigrationScript script) {
+        final long begin = System.nanoTime();
+        for (String statement : script.getStatements())
+            this.entityManager.createNativeQuery(statement).executeUpdate();
+        this.entityManager.persist(script.toSchemaMigration());
+        final long end = System.nanoTime();
+        SchemaMigrator.logger.info(String.format("Applied migration %d (%s). Time elapsed: %d ms.",
+                script.version, script.description,
+                TimeUnit.MILLISECONDS.convert(end - begin, TimeUnit.NANOSECONDS)));
+    }
+
+    // records the script as applied without running it, its statements having been run before the migrations existed
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordScript(final MigrationScript script) {
+        this.entityManager.persist(script.toSchemaMigration());
+        SchemaMigrator.logger.info(String.format("Recorded migration %d (%s) as the baseline of the database.",
+                script.version, script.description));
+    }
+
+    private static List<MigrationScript> loadScripts() throws IOException {
+        final List<MigrationScript> scripts = new ArrayList<>();
+        for (String fileName : SchemaMigrator.readResource(SchemaMigrator.MIGRATIONS_LIST).split("\n")) {
+            if (fileName.trim().isEmpty())
+                continue;
+            final Matcher matcher = SchemaMigrator.MIGRATION_FILE_NAME.matcher(fileName.trim());
+            if (!matcher.matches())
+                throw new IllegalStateException(String.format("Invalid migration file name: %s.", fileName));
+            final int version = Integer.parseInt(matcher.group(1));
+            if (!scripts.isEmpty() && scripts.get(scripts.size() - 1).version >= version)
+                throw new IllegalStateException(String.format("Migration %d is listed out of order.", version));
+            scripts.add(new MigrationScript(version, matcher.group(2).replace('_', ' '),
+                    SchemaMigrator.readResource(fileName.trim())));
+        }
+        return scripts;
+    }
+
+    // line endings are normalized so that checksums do not depend on the platform the scripts were checked out on
+    private static String readResource(final String name) throws IOException {
+        final InputStream stream = SchemaMigrator.class.getClassLoader()
+                .getResourceAsStream(SchemaMigrator.MIGRATIONS_DIRECTORY + name);
+        if (stream == null)
+            throw new FileNotFoundException(SchemaMigrator.MIGRATIONS_DIRECTORY + name);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    public static class MigrationScript {
+
+        private final int version;
+        private final String description;
+        private final String content;
+        private final String checksum;
+
+        private MigrationScript(final int version, final String description, final String content) {
+            this.version = version;
+            this.description = description;
+            this.content = content;
+            try {
+                this.checksum = String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256")
+                        .digest(content.getBytes(StandardCharsets.UTF_8))));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private SchemaMigration toSchemaMigration() {
+            return new SchemaMigration()
+                    .setVersion(this.version)
+                    .setDescription(this.description)
+                    .setChecksum(this.checksum)
+                    .setAppliedOn(new Date());
+        }
+
+        /* statements are separated by semicolons, and comment lines start with two dashes */
+        private List<String> getStatements() {
+            final String script = Arrays.stream(this.content.split("\n"))
+                    .filter(line -> !line.trim().startsWith("--"))
+                    .collect(Collectors.joining("\n"));
+            return Arrays.stream(script.split(";"))
+                    .map(String::trim)
+                    .filter(statement -> !statement.isEmpty())
+                    .collect(Collectors.toList());
+        }
+
+    }
+
+}
@@ -0,0 +1,8 @@
+-- history of the applied scripts, created along with the first of them
+CREATE TABLE schema_migration (
+    version INTEGER NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    checksum VARCHAR(64) NOT NULL,
+    appliedOn TIMESTAMP NOT NULL,
+    PRIMARY KEY (version)
+);
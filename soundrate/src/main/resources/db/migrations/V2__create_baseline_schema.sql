@@ -0,0 +1,38 @@
+-- schema of the databases created before the migrations, recorded without being run on them
+CREATE TABLE user (
+    username VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    signUpDate TIMESTAMP NOT NULL,
+    pictureUrl VARCHAR(255),
+    role VARCHAR(255) NOT NULL,
+    PRIMARY KEY (username),
+    UNIQUE (email)
+);
+CREATE TABLE review (
+    reviewerUsername VARCHAR(255) NOT NULL,
+    reviewedAlbumId BIGINT NOT NULL,
+    content VARCHAR(5000) NOT NULL,
+    rating INTEGER NOT NULL,
+    publicationDate TIMESTAMP NOT NULL,
+    PRIMARY KEY (reviewerUsername, reviewedAlbumId)
+);
+CREATE TABLE vote (
+    voterUsername VARCHAR(255) NOT NULL,
+    reviewerUsername VARCHAR(255) NOT NULL,
+    reviewedAlbumId BIGINT NOT NULL,
+    value INTEGER NOT NULL,
+    PRIMARY KEY (voterUsername, reviewerUsername, reviewedAlbumId)
+);
+CREATE TABLE report (
+    reporterUsername VARCHAR(255) NOT NULL,
+    reviewerUsername VARCHAR(255) NOT NULL,
+    reviewedAlbumId BIGINT NOT NULL,
+    PRIMARY KEY (reporterUsername, reviewerUsername, reviewedAlbumId)
+);
+CREATE TABLE backlogEntry (
+    username VARCHAR(255) NOT NULL,
+    albumId BIGINT NOT NULL,
+    insertionName TIMESTAMP NOT NULL,
+    PRIMARY KEY (username, albumId)
+);
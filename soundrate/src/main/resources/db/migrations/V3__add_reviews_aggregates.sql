@@ -0,0 +1,8 @@
+-- artist and main genre of the reviewed album, filled in by the ReviewedAlbumsBackfill for the existing reviews
+ALTER TABLE review ADD COLUMN reviewedArtistId BIGINT;
+ALTER TABLE review ADD COLUMN reviewedGenreId BIGINT;
+-- votes and reports aggregates, computed for the existing reviews by V5
+ALTER TABLE review ADD COLUMN upvotesCount INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE review ADD COLUMN downvotesCount INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE review ADD COLUMN score INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE review ADD COLUMN reportsCount INTEGER DEFAULT 0 NOT NULL;
@@ -0,0 +1,14 @@
+-- ratings aggregates per album, rebuilt from the reviews by the StatisticsAgent
+CREATE TABLE album_stats (
+    albumId BIGINT NOT NULL,
+    reviewsCount INTEGER NOT NULL,
+    ratingsSum BIGINT NOT NULL,
+    ratingsHistogram VARCHAR(255) NOT NULL,
+    PRIMARY KEY (albumId)
+);
+-- replication lag probe of the replica routing
+CREATE TABLE replica_heartbeat (
+    id INTEGER NOT NULL,
+    beat BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
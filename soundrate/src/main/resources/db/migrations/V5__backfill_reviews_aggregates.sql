@@ -0,0 +1,8 @@
+-- votes and reports counts of the existing reviews, upvotes being stored as +1 and downvotes as -1
+UPDATE review SET upvotesCount = (SELECT COUNT(*) FROM vote v WHERE v.reviewerUsername = review.reviewerUsername
+    AND v.reviewedAlbumId = review.reviewedAlbumId AND v.value > 0);
+UPDATE review SET downvotesCount = (SELECT COUNT(*) FROM vote v WHERE v.reviewerUsername = review.reviewerUsername
+    AND v.reviewedAlbumId = review.reviewedAlbumId AND v.value < 0);
+UPDATE review SET score = upvotesCount - downvotesCount;
+UPDATE review SET reportsCount = (SELECT COUNT(*) FROM report r WHERE r.reviewerUsername = review.reviewerUsername
+    AND r.reviewedAlbumId = review.reviewedAlbumId);
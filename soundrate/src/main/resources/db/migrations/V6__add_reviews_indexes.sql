@@ -0,0 +1,10 @@
+-- top reviews, and reviews of an album by score
+CREATE INDEX review_score ON review (score);
+CREATE INDEX review_reviewedAlbumId_score ON review (reviewedAlbumId, score);
+-- artist and genre rollups, covering the ratings they aggregate
+CREATE INDEX review_reviewedArtistId ON review (reviewedArtistId, reviewedAlbumId, rating);
+CREATE INDEX review_reviewedGenreId ON review (reviewedGenreId, reviewedAlbumId, rating);
+-- moderation queue
+CREATE INDEX review_reportsCount ON review (reportsCount);
+-- reviews of a user by publication date
+CREATE INDEX review_reviewerUsername_publicationDate ON review (reviewerUsername, publicationDate);
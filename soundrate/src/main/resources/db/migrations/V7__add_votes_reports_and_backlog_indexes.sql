@@ -0,0 +1,5 @@
+-- votes and reports of a review, the primary keys starting with the voter and the reporter
+CREATE INDEX vote_review_voterUsername ON vote (reviewerUsername, reviewedAlbumId, voterUsername);
+CREATE INDEX report_review_reporterUsername ON report (reviewerUsername, reviewedAlbumId, reporterUsername);
+-- backlog of a user by insertion time
+CREATE INDEX backlogEntry_username_insertionName ON backlogEntry (username, insertionName);
@@ -92,11 +92,10 @@
                     </c:when>
                     <c:otherwise>
                         <div class="ui six doubling cards">
-                            <c:set var="albumReviewsCountMap" value="${requestScope.albumReviewsCountMap}"/>
-                            <c:set var="albumAverageRatingMap" value="${requestScope.albumAverageRatingMap}"/>
+                            <c:set var="albumsStatistics" value="${requestScope.albumsStatistics}"/>
                             <c:forEach items="${artistAlbums}" var="album">
-                                <c:set var="albumReviewsCount" value="${albumReviewsCountMap[album]}"/>
-                                <c:set var="albumAverageRating" value="${albumAverageRatingMap[album]}"/>
+                                <c:set var="albumReviewsCount" value="${albumsStatistics.getReviewsCount(album.id)}"/>
+                                <c:set var="albumAverageRating" value="${albumsStatistics.getAverageRating(album.id)}"/>
                                 <div class="card">
                                     <a class="image" href="${context}/album?id=${album.id}">
                                         <img src="${album.bigCover}" alt="artwork">
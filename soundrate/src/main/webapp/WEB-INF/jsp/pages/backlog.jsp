@@ -55,14 +55,13 @@
             </c:when>
             <c:otherwise>
                 <c:set var="albumGenreMap" value="${requestScope.albumGenreMap}"/>
-                <c:set var="albumReviewsCountMap" value="${requestScope.albumReviewsCountMap}"/>
-                <c:set var="albumAverageRatingMap" value="${requestScope.albumAverageRatingMap}"/>
+                <c:set var="albumsStatistics" value="${requestScope.albumsStatistics}"/>
                 <div class="ui fluid segment">
                     <div class="ui four doubling cards">
                         <c:forEach items="${backlogAlbums}" var="album">
                             <c:set var="albumGenre" value="${albumGenreMap[album]}"/>
-                            <c:set var="albumReviewsCount" value="${albumReviewsCountMap[album]}"/>
-                            <c:set var="albumAverageRating" value="${albumAverageRatingMap[album]}"/>
+                            <c:set var="albumReviewsCount" value="${albumsStatistics.getReviewsCount(album.id)}"/>
+                            <c:set var="albumAverageRating" value="${albumsStatistics.getAverageRating(album.id)}"/>
                             <div class="ui card" data-type="album" data-album="${album.id}">
                                 <a class="image" href="${context}/album?id=${album.id}">
                                     <img src="${album.bigCover}" alt="artwork">
@@ -41,16 +41,15 @@
             <div class="ten wide column">
                 <!-- @todo display placeholder or message if empty -->
                 <c:if test="${not empty albums}">
-                    <c:set var="albumReviewsCountMap" value="${requestScope.albumReviewsCountMap}"/>
-                    <c:set var="albumAverageRatingMap" value="${requestScope.albumAverageRatingMap}"/>
+                    <c:set var="albumsStatistics" value="${requestScope.albumsStatistics}"/>
                     <div class="ui segment">
                         <div class="ui large blue header">
                             <fmt:message key="label.topAlbums"/>
                         </div>
                         <div class="ui four doubling cards">
                             <c:forEach items="${albums}" var="album">
-                                <c:set var="albumReviewsCount" value="${albumReviewsCount[album]}"/>
-                                <c:set var="albumAverageRating" value="${albumAverageRatingMap[album]}"/>
+                                <c:set var="albumReviewsCount" value="${albumsStatistics.getReviewsCount(album.id)}"/>
+                                <c:set var="albumAverageRating" value="${albumsStatistics.getAverageRating(album.id)}"/>
                                 <div class="card">
                                     <a class="image" href="${context}/album?id=${album.id}">
                                         <img src="${album.bigCover}" alt="artwork">
@@ -104,12 +104,11 @@
                     </div>
                 </c:when>
                 <c:otherwise>
-                    <c:set var="albumsReviewsCountMap" value="${requestScope.albumsReviewsCountMap}"/>
-                    <c:set var="albumsAverageRatingsMap" value="${requestScope.albumsAverageRatingsMap}"/>
+                    <c:set var="albumsStatistics" value="${requestScope.albumsStatistics}"/>
                     <div class="ui six doubling cards">
                         <c:forEach items="${albums}" var="album">
-                            <c:set var="albumReviewsCount" value="${albumsReviewsCountMap[album]}"/>
-                            <c:set var="albumAverageRating" value="${albumsAverageRatingsMap[album]}"/>
+                            <c:set var="albumReviewsCount" value="${albumsStatistics.getReviewsCount(album.id)}"/>
+                            <c:set var="albumAverageRating" value="${albumsStatistics.getAverageRating(album.id)}"/>
                             <div class="card">
                                 <a class="image" href="${context}/album?id=${album.id}">
                                     <img src="${album.bigCover}" alt="artwork">
@@ -39,11 +39,10 @@
             </div>
             <div class="ui divided list">
                 <!-- @todo add placeholder or message if no albums are available -->
-                <c:set var="albumsReviewsCountMap" value="${requestScope.albumsReviewsCountMap}"/>
-                <c:set var="albumsAverageRatingsMap" value="${requestScope.albumsAverageRatingsMap}"/>
+                <c:set var="albumsStatistics" value="${requestScope.albumsStatistics}"/>
                 <c:forEach items="${albums}" var="album">
-                    <c:set var="albumsReviewsCount" value="${albumsReviewsCountMap[album]}"/>
-                    <c:set var="albumAverageRating" value="${albumsAverageRatingsMap[album]}"/>
+                    <c:set var="albumsReviewsCount" value="${albumsStatistics.getReviewsCount(album.id)}"/>
+                    <c:set var="albumAverageRating" value="${albumsStatistics.getAverageRating(album.id)}"/>
                     <div class="item">
                         <img class="ui tiny image" src="${album.bigCover}" alt="artwork">
                         <div class="content">
@@ -0,0 +1,43 @@
+<%@ page contentType="text/html; charset=utf-8" pageEncoding="utf-8" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
+<fmt:setBundle basename="i18n/strings/strings"/>
+<c:set var="context" value="${pageContext.request.contextPath}"/>
+<c:set var="sessionUser" value="${sessionScope.user}"/>
+<!DOCTYPE html>
+<html lang="en">
+<head>
+    <meta charset="utf-8">
+    <meta http-equiv="X-UA-Compatible" content="IE=edge,chrome=1">
+    <meta name="viewport" content="width=device-width, initial-scale=1.0">
+    <meta name="theme-color" content="#2962FF">
+    <link rel="icon" href="${context}/favicon.ico">
+    <link rel="stylesheet" type="text/css" href="https://cdn.jsdelivr.net/npm/fomantic-ui@2.8.3/dist/semantic.min.css">
+    <script src="https://code.jquery.com/jquery-3.4.1.min.js"></script>
+    <script src="https://cdn.jsdelivr.net/npm/fomantic-ui@2.8.3/dist/semantic.min.js"></script>
+    <script src="${context}/content/javascript/toast.js"></script>
+    <script src="${context}/content/javascript/sign-user.js"></script>
+    <script src="${context}/content/javascript/search.js"></script>
+    <script src="${context}/content/javascript/user-settings.js"></script>
+    <title><fmt:message key="page.unavailable"/></title>
+</head>
+<body>
+    <c:import url="/header"/>
+    <c:choose>
+        <c:when test="${empty sessionUser}">
+            <c:import url="/sign-in-modal"/>
+        </c:when>
+        <c:otherwise>
+            <c:import url="/user-settings-modal"/>
+        </c:otherwise>
+    </c:choose>
+    <div class="ui container">
+        <div class="ui placeholder segment">
+            <div class="ui large icon header">
+                <i class="ui circular orange hourglass half icon"></i>
+                <fmt:message key="error.quotaExceeded"/>
+            </div>
+        </div>
+    </div>
+</body>
+</html>
@@ -0,0 +1,212 @@
+package application.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BoundedCacheTest {
+
+    private static BoundedCache<Long, String> createCache(final long maximumSize) {
+        return new BoundedCache<>(new CacheConfiguration()
+                .setMaximumSize(maximumSize)
+                .setExpireAfterAccess(Duration.ofMinutes(5)));
+    }
+
+    @Test
+    public void shouldReturnCachedValue() {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(10);
+        cache.put(1L, "one");
+        Assert.assertEquals("one", cache.getIfPresent(1L));
+        Assert.assertNull(cache.getIfPresent(2L));
+        Assert.assertEquals(1, cache.stats().getHitCount());
+        Assert.assertEquals(1, cache.stats().getMissCount());
+    }
+
+    @Test
+    public void shouldNeverExceedMaximumSize() {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(100);
+        for (long key = 0; key < 10_000; key++)
+            cache.put(key, String.valueOf(key));
+        Assert.assertEquals(100, cache.estimatedSize());
+        Assert.assertEquals(9_900, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    public void shouldRetainFrequentlyAccessedEntries() {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(100);
+        for (long key = 0; key < 50; key++)
+            cache.put(key, String.valueOf(key));
+        for (int i = 0; i < 10; i++)
+            for (long key = 0; key < 50; key++)
+                cache.getIfPresent(key);
+        // a scan of one-hit wonders must not flush the popular entries
+        for (long key = 1_000; key < 11_000; key++)
+            cache.put(key, String.valueOf(key));
+        int retainedEntries = 0;
+        for (long key = 0; key < 50; key++)
+            if (cache.getIfPresent(key) != null)
+                retainedEntries++;
+        Assert.assertTrue(retainedEntries >= 45);
+    }
+
+    @Test
+    public void shouldInvalidateEntries() {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(10);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.invalidate(1L);
+        Assert.assertNull(cache.getIfPresent(1L));
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.estimatedSize());
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentLoads() throws Exception {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(10);
+        final int callers = 16;
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get(1L, key -> {
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                try {
+                    releaseLoad.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "one";
+            })));
+            loadStarted.await();
+            for (int i = 1; i < callers; i++)
+                results.add(executor.submit(() -> cache.get(1L, key -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            while (cache.stats().getCoalescedCount() < callers - 1)
+                Thread.yield();
+            releaseLoad.countDown();
+            for (Future<String> result : results)
+                Assert.assertEquals("one", result.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.stats().getLoadCount());
+        Assert.assertEquals(Long.valueOf(callers - 1), cache.coalescedLoads().get(1L));
+    }
+
+    @Test
+    public void shouldPropagateLoadFailures() throws Exception {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(10);
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> leader = executor.submit(() -> cache.get(1L, key -> {
+                loadStarted.countDown();
+                try {
+                    releaseLoad.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new UnsupportedOperationException("unavailable");
+            }));
+            loadStarted.await();
+            final Future<String> waiter = executor.submit(() -> cache.get(1L, key -> "one"));
+            while (cache.stats().getCoalescedCount() < 1)
+                Thread.yield();
+            releaseLoad.countDown();
+            for (Future<String> result : Arrays.asList(leader, waiter)) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    Assert.fail();
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof UnsupportedOperationException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // failures are not cached, the next caller loads again
+        Assert.assertEquals("one", cache.get(1L, key -> "one"));
+    }
+
+    @Test
+    public void shouldRememberAbsentKeys() {
+        final BoundedCache<Long, String> cache = new BoundedCache<>(new CacheConfiguration()
+                .setMaximumSize(10)
+                .setNegativeMaximumSize(10)
+                .setNegativeExpireAfterWrite(Duration.ofMinutes(1)));
+        final AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 5; i++)
+            Assert.assertNull(cache.get(1L, key -> {
+                loads.incrementAndGet();
+                return null;
+            }));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(4, cache.stats().getNegativeHitCount());
+        Assert.assertEquals(1, cache.stats().getNegativeEstimatedSize());
+        Assert.assertEquals(0, cache.estimatedSize());
+        // an explicit put replaces the negative entry
+        cache.put(1L, "one");
+        Assert.assertEquals("one", cache.get(1L, key -> null));
+        Assert.assertEquals(0, cache.stats().getNegativeEstimatedSize());
+    }
+
+    @Test
+    public void shouldServeStaleEntriesWhileRefreshing() throws Exception {
+        final List<Runnable> refreshes = new ArrayList<>();
+        final BoundedCache<Long, String> cache = new BoundedCache<>(new CacheConfiguration()
+                .setMaximumSize(10)
+                .setRefreshAfterWrite(Duration.ofMillis(1)), refreshes::add);
+        cache.put(1L, "one");
+        Thread.sleep(5);
+        Assert.assertEquals("one", cache.get(1L, key -> "uno"));
+        Assert.assertEquals("one", cache.get(1L, key -> "uno"));
+        Assert.assertEquals(1, refreshes.size());
+        refreshes.get(0).run();
+        Assert.assertEquals("uno", cache.getIfPresent(1L));
+        Assert.assertEquals(1, cache.stats().getRefreshCount());
+    }
+
+    @Test
+    public void shouldLoadMissingKeysInParallel() {
+        final BoundedCache<Long, String> cache = BoundedCacheTest.createCache(100);
+        cache.put(2L, "two");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final Map<Long, String> values;
+        try {
+            values = cache.getAll(Arrays.asList(3L, 2L, 1L, 3L, 4L),
+                    key -> key == 4L ? null : String.valueOf(key), executor, 4);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(Arrays.asList(3L, 2L, 1L, 4L), new ArrayList<>(values.keySet()));
+        Assert.assertEquals(Arrays.asList("3", "two", "1", null), new ArrayList<>(values.values()));
+        Assert.assertEquals(1, cache.stats().getHitCount());
+        Assert.assertEquals(3, cache.stats().getLoadCount());
+    }
+
+    @Test
+    public void shouldNeverExceedMaximumWeight() {
+        final BoundedCache<Long, String> cache = new BoundedCache<>(new CacheConfiguration()
+                .setMaximumSize(100)
+                .setMaximumWeight(1_000), Runnable::run, String::length);
+        for (long key = 0; key < 1_000; key++)
+            cache.put(key, key % 2 == 0 ? "a" : "abcdefghijklmnopqrstuvwxyz");
+        Assert.assertTrue(cache.weightedSize() <= 1_000);
+        Assert.assertTrue(cache.estimatedSize() > 38);
+    }
+
+}
@@ -0,0 +1,160 @@
+package application.interceptors;
+
+import application.cache.AlbumsHolder;
+import application.cache.BoundedCache;
+import application.cache.CacheConfiguration;
+import deezer.model.Album;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/*
+ * Measures the per-call cost of the @Cacheable `GetAlbumInterceptor#interceptGetAlbumCall` for cached albums, invoked
+ * through a stub InvocationContext on an AlbumsHolder whose cache is already warm. The former implementation, which
+ * walked the stack trace to detect re-entry before delegating, is reproduced in front of the same interceptor.
+ * Calls are issued from a configurable stack depth, since application server stacks are usually deep.
+ * Run with `mvn -P benchmarks test-compile exec:java` (see the `benchmarks` profile).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheableInterceptorBenchmark {
+
+    private static final long ALBUM_ID = 302127L;
+    private static final int ALBUMS_COUNT = 20;
+
+    @Param({"20", "150"})
+    private int stackDepth;
+
+    private GetAlbumInterceptor interceptor;
+    private InvocationContext albumContext;
+    private InvocationContext albumsContext;
+
+    @Setup
+    public void setUp() throws Exception {
+        final BoundedCache<Long, Album> albumsCache =
+                new BoundedCache<>(new CacheConfiguration().setMaximumSize(1_000));
+        final Function<Long, Album> albumLoader = albumId -> new Album();
+        final List<Long> albumIds = LongStream.range(0, CacheableInterceptorBenchmark.ALBUMS_COUNT)
+                .map(i -> CacheableInterceptorBenchmark.ALBUM_ID + i)
+                .boxed()
+                .collect(Collectors.toList());
+        albumIds.forEach(albumId -> albumsCache.put(albumId, albumLoader.apply(albumId)));
+        final AlbumsHolder albumsHolder = new AlbumsHolder();
+        CacheableInterceptorBenchmark.inject(albumsHolder, "albumsCache", albumsCache);
+        CacheableInterceptorBenchmark.inject(albumsHolder, "albumLoader", albumLoader);
+        this.interceptor = new GetAlbumInterceptor();
+        CacheableInterceptorBenchmark.inject(this.interceptor, "albumsHolder", albumsHolder);
+        this.albumContext = new StubInvocationContext(CacheableInterceptorBenchmark.ALBUM_ID);
+        this.albumsContext = new StubInvocationContext(albumIds);
+    }
+
+    // stands in for the container injection, the holder is used without its @PostConstruct initialization
+    private static void inject(final Object target, final String fieldName, final Object value) throws Exception {
+        final Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @Benchmark
+    public Object albumLookup() throws Exception {
+        return this.callAtDepth(this.stackDepth, this.albumContext, false);
+    }
+
+    @Benchmark
+    public Object stackWalkingAlbumLookup() throws Exception {
+        return this.callAtDepth(this.stackDepth, this.albumContext, true);
+    }
+
+    @Benchmark
+    public Object albumsLookup() throws Exception {
+        return this.callAtDepth(this.stackDepth, this.albumsContext, false);
+    }
+
+    private Object callAtDepth(final int depth, final InvocationContext invocationContext, final boolean walkStack)
+            throws Exception {
+        if (depth > 0)
+            return this.callAtDepth(depth - 1, invocationContext, walkStack);
+        if (walkStack)
+            for (StackTraceElement stackTraceElement : Thread.currentThread().getStackTrace())
+                if (AlbumsHolder.class.getName().equals(stackTraceElement.getClassName()))
+                    return invocationContext.proceed();
+        return this.interceptor.interceptGetAlbumCall(invocationContext);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheableInterceptorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // the intercepted call is never expected to proceed, as every requested album is cached
+    private static class StubInvocationContext implements InvocationContext {
+
+        private Object[] parameters;
+        private final Map<String, Object> contextData = new HashMap<>();
+
+        private StubInvocationContext(final Object... parameters) {
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object getTarget() {
+            return null;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return null;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return this.parameters;
+        }
+
+        @Override
+        public void setParameters(Object[] parameters) {
+            this.parameters = Arrays.copyOf(parameters, parameters.length);
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return this.contextData;
+        }
+
+        @Override
+        public Object proceed() {
+            throw new IllegalStateException("The cached call was not expected to proceed");
+        }
+
+    }
+
+}
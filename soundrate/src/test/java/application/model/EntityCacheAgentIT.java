@@ -0,0 +1,81 @@
+package application.model;
+
+import application.entities.Review;
+import application.entities.User;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.spi.CDI;
+import java.util.Date;
+
+@RunWith(Arquillian.class)
+public class EntityCacheAgentIT {
+
+    private static final Long ALBUM_ID = 302127L;
+
+    @Deployment
+    public static Archive<?> createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addPackages(true, "application.model", "application.entities")
+                .addAsResource(EmptyAsset.INSTANCE, "META-INF/beans.xml")
+                .addAsResource("META-INF/persistence.xml", "META-INF/persistence.xml")
+                .addAsResource("META-INF/resources.xml", "META-INF/resources.xml");
+    }
+
+    @BeforeClass
+    public static void init() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        for (String username : new String[]{"reader", "reviewer"})
+            usersAgent.createUser(new User()
+                    .setUsername(username)
+                    .setEmail(username + "@soundrate.com")
+                    .setPassword("password123")
+                    .setSignUpDate(new Date())
+                    .setRole(User.Role.USER));
+        reviewsAgent.createReview(new Review()
+                .setReviewer(usersAgent.getUser("reviewer"))
+                .setReviewedAlbumId(EntityCacheAgentIT.ALBUM_ID)
+                .setContent("content")
+                .setRating(7)
+                .setPublicationDate(new Date()));
+    }
+
+    @Test
+    public void shouldServeUserLookupsFromCache() {
+        final EntityCacheAgent entityCacheAgent = CDI.current().select(EntityCacheAgent.class).get();
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        Assert.assertNotNull(usersAgent.getUser("reader"));
+        Assert.assertTrue(entityCacheAgent.contains(User.class, "reader"));
+        final long hitsCount = entityCacheAgent.getHitsCount(User.class);
+        final long missesCount = entityCacheAgent.getMissesCount(User.class);
+        Assert.assertNotNull(usersAgent.getUser("reader"));
+        Assert.assertNotNull(usersAgent.getUser("reader"));
+        Assert.assertEquals(hitsCount + 2, entityCacheAgent.getHitsCount(User.class));
+        Assert.assertEquals(missesCount, entityCacheAgent.getMissesCount(User.class));
+    }
+
+    @Test
+    public void shouldEvictBulkDeletedReviews() {
+        final EntityCacheAgent entityCacheAgent = CDI.current().select(EntityCacheAgent.class).get();
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        final Review.ReviewId reviewId = new Review.ReviewId()
+                .setReviewerUsername("reviewer")
+                .setReviewedAlbumId(EntityCacheAgentIT.ALBUM_ID);
+        Assert.assertNotNull(reviewsAgent.getReview("reviewer", EntityCacheAgentIT.ALBUM_ID));
+        Assert.assertTrue(entityCacheAgent.contains(Review.class, reviewId));
+        usersAgent.deleteUserReviews(usersAgent.getUser("reviewer"));
+        Assert.assertFalse(entityCacheAgent.contains(Review.class, reviewId));
+        Assert.assertNull(reviewsAgent.getReview("reviewer", EntityCacheAgentIT.ALBUM_ID));
+    }
+
+}
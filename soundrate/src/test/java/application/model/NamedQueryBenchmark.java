@@ -0,0 +1,108 @@
+package application.model;
+
+import application.entities.Review;
+import application.entities.Review_;
+import application.entities.User;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the per-call cost of the album reviews query when its Criteria tree is rebuilt on each call, as the agents
+ * formerly did, and when it is issued as a named query, whose compilation and SQL are cached by OpenJPA.
+ * The persistence context is cleared on each call so that both variants materialize the same entities.
+ * Run with `mvn -P benchmarks test-compile exec:java` (see the `benchmarks` profile).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NamedQueryBenchmark {
+
+    private static final long ALBUM_ID = 302127L;
+
+    @Param({"1", "20"})
+    private int reviewsCount;
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+
+    @Setup
+    public void setUp() {
+        this.entityManagerFactory = OpenJPAPersistence.createEntityManagerFactory(
+                "soundratePersistenceUnitBenchmark", "META-INF/benchmark-persistence.xml");
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.entityManager.getTransaction().begin();
+        for (int i = 0; i < this.reviewsCount; i++) {
+            final User reviewer = new User()
+                    .setUsername("reviewer" + i)
+                    .setEmail("reviewer" + i + "@soundrate.com")
+                    .setPassword("password")
+                    .setSignUpDate(new Date())
+                    .setRole(User.Role.USER);
+            this.entityManager.persist(reviewer);
+            this.entityManager.persist(new Review()
+                    .setReviewer(reviewer)
+                    .setReviewedAlbumId(NamedQueryBenchmark.ALBUM_ID)
+                    .setContent("content")
+                    .setRating(i % 10 + 1)
+                    .setPublicationDate(new Date()));
+        }
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Review> criteriaQuery() {
+        this.entityManager.clear();
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Review> query = builder.createQuery(Review.class);
+        Root<Review> review = query.from(Review.class);
+        ParameterExpression<Long> reviewedAlbumIdParameter = builder.parameter(Long.class);
+        query
+                .select(review)
+                .where(builder.equal(
+                        review.get(Review_.reviewedAlbumId),
+                        reviewedAlbumIdParameter
+                ))
+                .orderBy(builder.desc(review.get(Review_.score)));
+        return this.entityManager.createQuery(query)
+                .setParameter(reviewedAlbumIdParameter, NamedQueryBenchmark.ALBUM_ID)
+                .getResultList();
+    }
+
+    @Benchmark
+    public List<Review> namedQuery() {
+        this.entityManager.clear();
+        return this.entityManager.createNamedQuery(Review.FIND_BY_REVIEWED_ALBUM_ID, Review.class)
+                .setParameter("reviewedAlbumId", NamedQueryBenchmark.ALBUM_ID)
+                .getResultList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NamedQueryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
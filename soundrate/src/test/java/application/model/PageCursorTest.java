@@ -0,0 +1,39 @@
+package application.model;
+
+import application.model.exceptions.InvalidCursorException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+public class PageCursorTest {
+
+    @Test
+    public void shouldDecodeEncodedCursor() {
+        final Date date = new Date(1_600_000_000_000L);
+        final String cursor = new PageCursor("user.name/\u00fc", 42, 7L, date).encode();
+        Assert.assertTrue(cursor.matches("[A-Za-z0-9_.-]+"));
+        Assert.assertEquals(cursor, PageCursor.decode(cursor).encode());
+    }
+
+    @Test
+    public void shouldStartFromFirstPageOnEmptyCursor() {
+        Assert.assertNull(PageCursor.decode(""));
+    }
+
+    @Test(expected = InvalidCursorException.class)
+    public void shouldRejectUnknownValueType() {
+        PageCursor.decode("xAAA");
+    }
+
+    @Test(expected = InvalidCursorException.class)
+    public void shouldRejectMalformedValue() {
+        PageCursor.decode("l" + new PageCursor("not a number").encode().substring(1));
+    }
+
+    @Test(expected = InvalidCursorException.class)
+    public void shouldRejectEmptyToken() {
+        PageCursor.decode("sYQ..sYQ");
+    }
+
+}
@@ -0,0 +1,277 @@
+package application.model;
+
+import application.entities.*;
+import deezer.model.Album;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.spi.CDI;
+import javax.json.bind.JsonbBuilder;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Walks every keyset paginated listing through the returned cursors and checks that the pages, put together, hold
+ * the full listing in its documented order. Most rows share the ordering value of the first sort key (publication
+ * dates, insertion times, scores and reports counts), so that only the tie-breaking keys tell them apart.
+ */
+@RunWith(Arquillian.class)
+public class PaginationIT {
+
+    private static final String USERNAME_PREFIX = "paged";
+    private static final int USERS_COUNT = 6;
+    private static final Long[] ALBUM_IDS = {302127L, 103248L, 6575789L, 119606L, 7824595L};
+    private static final Date TIED_DATE = new Date(1_500_000_000_000L);
+    private static final Date LATER_DATE = new Date(PaginationIT.TIED_DATE.getTime() + TimeUnit.DAYS.toMillis(1));
+    private static final int LIMIT = 2;
+
+    private static final Comparator<Review> REVIEW_ID_ORDER = Comparator
+            .comparing(Review::getReviewerUsername)
+            .thenComparing(Review::getReviewedAlbumId);
+
+    @Deployment
+    public static Archive<?> createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addPackages(true, "application.model", "application.entities")
+                .addAsResource(EmptyAsset.INSTANCE, "META-INF/beans.xml")
+                .addAsResource("META-INF/persistence.xml", "META-INF/persistence.xml")
+                .addAsResource("META-INF/resources.xml", "META-INF/resources.xml");
+    }
+
+    /*
+     * paged0 reviews every album, one review being published later than the others, and backlogs every album, one
+     * entry being inserted later than the others; paged1 to paged4 review the first album too.
+     * paged5 and paged1 to paged4 vote on the first review of paged0, paged5 upvotes the review of paged2 too.
+     * paged5, paged3 and paged4 report reviews so that several of them share the same reports count.
+     */
+    @BeforeClass
+    public static void init() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        final CatalogAgent catalogAgent = CDI.current().select(CatalogAgent.class).get();
+        final User[] users = new User[PaginationIT.USERS_COUNT];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User()
+                    .setUsername(PaginationIT.USERNAME_PREFIX + i)
+                    .setEmail(PaginationIT.USERNAME_PREFIX + i + "@soundrate.com")
+                    .setPassword("password123")
+                    .setSignUpDate(new Date())
+                    .setRole(User.Role.USER);
+            usersAgent.createUser(users[i]);
+        }
+        final Map<String, Review> reviews = new HashMap<>();
+        for (int i = 0; i < PaginationIT.ALBUM_IDS.length; i++)
+            reviews.put("0/" + i, PaginationIT.createReview(reviewsAgent, users[0], PaginationIT.ALBUM_IDS[i],
+                    i == 2 ? PaginationIT.LATER_DATE : PaginationIT.TIED_DATE));
+        for (int i = 1; i <= 4; i++)
+            reviews.put(i + "/0", PaginationIT.createReview(reviewsAgent, users[i], PaginationIT.ALBUM_IDS[0],
+                    PaginationIT.TIED_DATE));
+
+        for (int i = 1; i <= 5; i++)
+            reviewsAgent.createVote(new Vote()
+                    .setVoter(users[i])
+                    .setReview(reviews.get("0/0"))
+                    .setValue(i % 2 == 1));
+        for (String reviewKey : new String[]{"2/0", "0/1", "0/3"})
+            reviewsAgent.createVote(new Vote()
+                    .setVoter(users[5])
+                    .setReview(reviews.get(reviewKey))
+                    .setValue(true));
+
+        for (int reporter : new int[]{5, 3})
+            for (String reviewKey : new String[]{"1/0", "2/0", "4/0"})
+                PaginationIT.createReport(reviewsAgent, users[reporter], reviews.get(reviewKey));
+        for (int reporter : new int[]{5, 4})
+            PaginationIT.createReport(reviewsAgent, users[reporter], reviews.get("0/1"));
+        PaginationIT.createReport(reviewsAgent, users[4], reviews.get("0/2"));
+
+        for (int i = 0; i < PaginationIT.ALBUM_IDS.length; i++)
+            catalogAgent.createBacklogEntry(new BacklogEntry()
+                    .setUser(users[0])
+                    .setAlbumId(PaginationIT.ALBUM_IDS[i])
+                    .setInsertionTime(i == 3 ? PaginationIT.LATER_DATE : PaginationIT.TIED_DATE));
+    }
+
+    @Test
+    public void shouldWalkUserReviews() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final User user = usersAgent.getUser(PaginationIT.USERNAME_PREFIX + 0);
+        final List<Review> expected = PaginationIT.sorted(usersAgent.getUserReviews(user), Comparator
+                .comparing(Review::getPublicationDate, Comparator.reverseOrder())
+                .thenComparing(Review::getReviewedAlbumId));
+        final List<Review> actual = PaginationIT.walk(cursor ->
+                usersAgent.getUserReviewsPage(user, cursor, PaginationIT.LIMIT));
+        Assert.assertEquals(PaginationIT.ALBUM_IDS.length, expected.size());
+        PaginationIT.assertSameKeys(expected, actual, PaginationIT::reviewKey);
+    }
+
+    @Test
+    public void shouldWalkAlbumReviews() {
+        final CatalogAgent catalogAgent = CDI.current().select(CatalogAgent.class).get();
+        final Album album = JsonbBuilder.create().fromJson("{\"id\":" + PaginationIT.ALBUM_IDS[0] + "}", Album.class);
+        final List<Review> expected = PaginationIT.sorted(catalogAgent.getAlbumReviews(album), Comparator
+                .comparing(Review::getScore, Comparator.reverseOrder())
+                .thenComparing(Review::getReviewerUsername));
+        final List<Review> actual = PaginationIT.walk(cursor ->
+                catalogAgent.getAlbumReviewsPage(album, cursor, PaginationIT.LIMIT));
+        PaginationIT.assertSameKeys(expected, actual, PaginationIT::reviewKey);
+    }
+
+    @Test
+    public void shouldWalkReportedReviews() {
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        final List<Review> expected = PaginationIT.sorted(reviewsAgent.getReportedReviews(), Comparator
+                .comparing(Review::getReportsCount, Comparator.reverseOrder())
+                .thenComparing(PaginationIT.REVIEW_ID_ORDER));
+        final List<Review> actual = PaginationIT.walk(cursor ->
+                reviewsAgent.getReportedReviewsPage(cursor, PaginationIT.LIMIT));
+        /* other tests may have reported reviews too, only the relative order of the reviews of this test is checked */
+        final Function<List<Review>, List<String>> ownKeys = reviews -> reviews.stream()
+                .filter(review -> review.getReviewerUsername().startsWith(PaginationIT.USERNAME_PREFIX))
+                .map(PaginationIT::reviewKey)
+                .collect(Collectors.toList());
+        Assert.assertEquals(5, ownKeys.apply(expected).size());
+        Assert.assertEquals(ownKeys.apply(expected), ownKeys.apply(actual));
+        Assert.assertEquals(expected.size(), actual.size());
+    }
+
+    @Test
+    public void shouldWalkUserBacklog() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final User user = usersAgent.getUser(PaginationIT.USERNAME_PREFIX + 0);
+        final List<BacklogEntry> expected = PaginationIT.sorted(usersAgent.getUserBacklog(user), Comparator
+                .comparing(BacklogEntry::getInsertionTime, Comparator.reverseOrder())
+                .thenComparing(BacklogEntry::getAlbumId));
+        final List<BacklogEntry> actual = PaginationIT.walk(cursor ->
+                usersAgent.getUserBacklogPage(user, cursor, PaginationIT.LIMIT));
+        Assert.assertEquals(PaginationIT.ALBUM_IDS.length, expected.size());
+        PaginationIT.assertSameKeys(expected, actual, BacklogEntry::getAlbumId);
+    }
+
+    @Test
+    public void shouldWalkUserVotes() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final User user = usersAgent.getUser(PaginationIT.USERNAME_PREFIX + 5);
+        final List<Vote> expected = PaginationIT.sorted(usersAgent.getUserVotes(user), Comparator
+                .comparing(Vote::getReviewerUsername)
+                .thenComparing(Vote::getReviewedAlbumId));
+        final List<Vote> actual = PaginationIT.walk(cursor ->
+                usersAgent.getUserVotesPage(user, cursor, PaginationIT.LIMIT));
+        Assert.assertEquals(4, expected.size());
+        PaginationIT.assertSameKeys(expected, actual, PaginationIT::voteKey);
+    }
+
+    @Test
+    public void shouldWalkUserReports() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final User user = usersAgent.getUser(PaginationIT.USERNAME_PREFIX + 5);
+        final List<Report> expected = PaginationIT.sorted(usersAgent.getUserReports(user), Comparator
+                .comparing(Report::getReviewerUsername)
+                .thenComparing(Report::getReviewedAlbumId));
+        final List<Report> actual = PaginationIT.walk(cursor ->
+                usersAgent.getUserReportsPage(user, cursor, PaginationIT.LIMIT));
+        Assert.assertEquals(4, expected.size());
+        PaginationIT.assertSameKeys(expected, actual, PaginationIT::reportKey);
+    }
+
+    @Test
+    public void shouldWalkReviewVotes() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        final Review review = reviewsAgent
+                .getReview(PaginationIT.USERNAME_PREFIX + 0, PaginationIT.ALBUM_IDS[0])
+                .setReviewer(usersAgent.getUser(PaginationIT.USERNAME_PREFIX + 0));
+        final List<Vote> expected =
+                PaginationIT.sorted(reviewsAgent.getReviewVotes(review), Comparator.comparing(Vote::getVoterUsername));
+        final List<Vote> actual = PaginationIT.walk(cursor ->
+                reviewsAgent.getReviewVotesPage(review, cursor, PaginationIT.LIMIT));
+        Assert.assertEquals(5, expected.size());
+        PaginationIT.assertSameKeys(expected, actual, PaginationIT::voteKey);
+    }
+
+    @Test
+    public void shouldWalkReviewReports() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        final Review review = reviewsAgent
+                .getReview(PaginationIT.USERNAME_PREFIX + 1, PaginationIT.ALBUM_IDS[0])
+                .setReviewer(usersAgent.getUser(PaginationIT.USERNAME_PREFIX + 1));
+        final List<Report> expected = PaginationIT.sorted(reviewsAgent.getReviewReports(review),
+                Comparator.comparing(Report::getReporterUsername));
+        final List<Report> actual = PaginationIT.walk(cursor ->
+                reviewsAgent.getReviewReportsPage(review, cursor, PaginationIT.LIMIT));
+        Assert.assertEquals(2, expected.size());
+        PaginationIT.assertSameKeys(expected, actual, PaginationIT::reportKey);
+    }
+
+    // follows the next page cursors from the first page until the last one
+    private static <T> List<T> walk(final Function<String, Page<T>> pageFunction) {
+        final List<T> elements = new ArrayList<>();
+        String cursor = "";
+        for (int pages = 0; cursor != null; pages++) {
+            Assert.assertTrue("The cursors do not reach the last page", pages < 100);
+            final Page<T> page = pageFunction.apply(cursor);
+            if (page.getElements() != null) {
+                Assert.assertTrue(page.getElements().size() <= PaginationIT.LIMIT);
+                elements.addAll(page.getElements());
+            } else
+                Assert.assertNull(page.getNextCursor());
+            cursor = page.getNextCursor();
+        }
+        return elements;
+    }
+
+    private static <T> List<T> sorted(final List<T> elements, final Comparator<T> order) {
+        Assert.assertNotNull(elements);
+        final List<T> sortedElements = new ArrayList<>(elements);
+        sortedElements.sort(order);
+        return sortedElements;
+    }
+
+    private static <T> void assertSameKeys(final List<T> expected, final List<T> actual, final Function<T, ?> key) {
+        Assert.assertEquals(
+                expected.stream().map(key).collect(Collectors.toList()),
+                actual.stream().map(key).collect(Collectors.toList()));
+    }
+
+    private static String reviewKey(final Review review) {
+        return review.getReviewerUsername() + "/" + review.getReviewedAlbumId();
+    }
+
+    private static String voteKey(final Vote vote) {
+        return vote.getVoterUsername() + ">" + vote.getReviewerUsername() + "/" + vote.getReviewedAlbumId();
+    }
+
+    private static String reportKey(final Report report) {
+        return report.getReporterUsername() + ">" + report.getReviewerUsername() + "/" + report.getReviewedAlbumId();
+    }
+
+    private static Review createReview(final ReviewsAgent reviewsAgent, final User reviewer, final Long albumId,
+                                       final Date publicationDate) {
+        final Review review = new Review()
+                .setReviewer(reviewer)
+                .setReviewedAlbumId(albumId)
+                .setContent("content")
+                .setRating(7)
+                .setPublicationDate(publicationDate);
+        reviewsAgent.createReview(review);
+        return review;
+    }
+
+    private static void createReport(final ReviewsAgent reviewsAgent, final User reporter, final Review review) {
+        reviewsAgent.createReport(new Report()
+                .setReporter(reporter)
+                .setReview(review));
+    }
+
+}
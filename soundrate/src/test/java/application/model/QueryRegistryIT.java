@@ -0,0 +1,59 @@
+package application.model;
+
+import application.entities.Review;
+import application.entities.User;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+@RunWith(Arquillian.class)
+public class QueryRegistryIT {
+
+    @Inject
+    private QueryRegistry queryRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Deployment
+    public static Archive<?> createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addClass(QueryRegistry.class)
+                .addPackages(true, "application.entities")
+                .addAsResource(EmptyAsset.INSTANCE, "META-INF/beans.xml")
+                .addAsResource("META-INF/persistence.xml", "META-INF/persistence.xml")
+                .addAsResource("META-INF/resources.xml", "META-INF/resources.xml");
+    }
+
+    @Test
+    public void shouldCompileNamedQueriesAtDeployment() {
+        Assert.assertTrue(this.queryRegistry.getNamedQueries().contains(User.FIND_BY_EMAIL));
+        Assert.assertTrue(this.queryRegistry.getNamedQueries().contains(Review.DELETE_BY_REVIEWED_ALBUM_ID));
+        Assert.assertTrue(this.queryRegistry.getCompiledQueriesCount() >= this.queryRegistry.getNamedQueries().size());
+    }
+
+    @Test
+    public void shouldReusePreparedSql() {
+        this.entityManager.createNamedQuery(User.FIND_BY_EMAIL, User.class)
+                .setParameter("email", "first@soundrate.com")
+                .getResultList();
+        final long executionsCount = this.queryRegistry.getExecutionsCount(User.FIND_BY_EMAIL);
+        final long preparedHitsCount = this.queryRegistry.getPreparedHitsCount(User.FIND_BY_EMAIL);
+        this.entityManager.createNamedQuery(User.FIND_BY_EMAIL, User.class)
+                .setParameter("email", "second@soundrate.com")
+                .getResultList();
+        Assert.assertEquals(executionsCount + 1, this.queryRegistry.getExecutionsCount(User.FIND_BY_EMAIL));
+        Assert.assertEquals(preparedHitsCount + 1, this.queryRegistry.getPreparedHitsCount(User.FIND_BY_EMAIL));
+    }
+
+}
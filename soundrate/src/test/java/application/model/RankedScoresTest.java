@@ -0,0 +1,69 @@
+package application.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class RankedScoresTest {
+
+    private static RankedScores<String> createScores() {
+        return new RankedScores<>(String::compareTo);
+    }
+
+    @Test
+    public void shouldRankHighestScoresFirst() {
+        final RankedScores<String> scores = RankedScoresTest.createScores();
+        scores.put("b", 3);
+        scores.put("a", 5);
+        scores.put("c", -1);
+        scores.put("d", 3);
+        Assert.assertEquals(Arrays.asList("a", "b", "d", "c"), scores.getKeys(0, 10));
+        Assert.assertEquals(Arrays.asList("b", "d"), scores.getKeys(1, 2));
+        Assert.assertEquals(Integer.valueOf(1), scores.getRank("a"));
+        Assert.assertEquals(Integer.valueOf(3), scores.getRank("d"));
+        Assert.assertNull(scores.getRank("e"));
+        Assert.assertTrue(scores.getKeys(4, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldMoveUpdatedScores() {
+        final RankedScores<String> scores = RankedScoresTest.createScores();
+        scores.put("a", 2);
+        scores.put("b", 1);
+        Assert.assertTrue(scores.add("b", 2));
+        Assert.assertEquals(Arrays.asList("b", "a"), scores.getKeys(0, 2));
+        Assert.assertEquals(Long.valueOf(3), scores.getScore("b"));
+        Assert.assertFalse(scores.add("c", 1));
+        Assert.assertEquals(2, scores.size());
+        Assert.assertEquals(Long.valueOf(3), scores.remove("b"));
+        Assert.assertNull(scores.remove("b"));
+        Assert.assertEquals(Collections.singletonList("a"), scores.getKeys(0, 2));
+    }
+
+    @Test
+    public void shouldMatchSortedScores() {
+        final RankedScores<String> scores = RankedScoresTest.createScores();
+        final Map<String, Long> expectedScores = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            final String key = String.valueOf(random.nextInt(300));
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals(expectedScores.remove(key), scores.remove(key));
+            } else {
+                final long score = random.nextInt(40) - 20;
+                scores.put(key, score);
+                expectedScores.put(key, score);
+            }
+        }
+        final List<String> expectedKeys = new ArrayList<>(expectedScores.keySet());
+        expectedKeys.sort(Comparator
+                .comparing((String key) -> -expectedScores.get(key))
+                .thenComparing(Comparator.naturalOrder()));
+        Assert.assertEquals(expectedKeys, scores.getKeys(0, expectedKeys.size()));
+        Assert.assertEquals(expectedKeys.subList(10, 30), scores.getKeys(10, 20));
+        for (int rank = 1; rank <= expectedKeys.size(); rank++)
+            Assert.assertEquals(Integer.valueOf(rank), scores.getRank(expectedKeys.get(rank - 1)));
+    }
+
+}
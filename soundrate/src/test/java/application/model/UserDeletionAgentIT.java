@@ -0,0 +1,105 @@
+package application.model;
+
+import application.entities.BacklogEntry;
+import application.entities.Review;
+import application.entities.User;
+import application.entities.Vote;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.spi.CDI;
+import java.util.Date;
+
+@RunWith(Arquillian.class)
+public class UserDeletionAgentIT {
+
+    private static final Long[] ALBUM_IDS = {302127L, 103248L, 6575789L};
+
+    @Deployment
+    public static Archive<?> createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addPackages(true, "application.model", "application.entities")
+                .addAsResource(EmptyAsset.INSTANCE, "META-INF/beans.xml")
+                .addAsResource("META-INF/persistence.xml", "META-INF/persistence.xml")
+                .addAsResource("META-INF/resources.xml", "META-INF/resources.xml");
+    }
+
+    @Test
+    public void shouldDeleteUserAlongWithDependentRows() {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        UserDeletionAgentIT.createUserData("deleted", "voter");
+        usersAgent.deleteUser(usersAgent.getUser("deleted"));
+        Assert.assertNull(usersAgent.getUser("deleted"));
+        Assert.assertNull(reviewsAgent.getReview("deleted", UserDeletionAgentIT.ALBUM_IDS[0]));
+        Assert.assertEquals(0, (int) usersAgent.getUserVotesCount(usersAgent.getUser("voter")));
+        Assert.assertEquals(0, (int) reviewsAgent.getReview("voter", UserDeletionAgentIT.ALBUM_IDS[0]).getScore());
+    }
+
+    @Test
+    public void shouldDeleteUserInBackground() throws InterruptedException {
+        final UserDeletionAgent userDeletionAgent = CDI.current().select(UserDeletionAgent.class).get();
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        UserDeletionAgentIT.createUserData("scheduled", "scheduledVoter");
+        final UserDeletionProgress progress =
+                userDeletionAgent.scheduleUserDeletion(usersAgent.getUser("scheduled"));
+        Assert.assertEquals(UserDeletionAgentIT.ALBUM_IDS.length * 2 + 1, progress.getTotalCount());
+        for (int i = 0; i < 100 && progress.getState() == UserDeletionProgress.State.RUNNING; i++)
+            Thread.sleep(100);
+        Assert.assertEquals(UserDeletionProgress.State.COMPLETED, progress.getState());
+        Assert.assertSame(progress, userDeletionAgent.getUserDeletionProgress("scheduled"));
+        Assert.assertEquals(1, progress.getCompletion(), 0);
+        Assert.assertNull(usersAgent.getUser("scheduled"));
+        Assert.assertEquals(0, (int) usersAgent.getUserVotesCount(usersAgent.getUser("scheduledVoter")));
+    }
+
+    // reviews and backlog entries of the user, a vote of the user and votes on the user reviews
+    private static void createUserData(final String username, final String voterUsername) {
+        final UsersAgent usersAgent = CDI.current().select(UsersAgent.class).get();
+        final ReviewsAgent reviewsAgent = CDI.current().select(ReviewsAgent.class).get();
+        final CatalogAgent catalogAgent = CDI.current().select(CatalogAgent.class).get();
+        for (String name : new String[]{username, voterUsername})
+            usersAgent.createUser(new User()
+                    .setUsername(name)
+                    .setEmail(name + "@soundrate.com")
+                    .setPassword("password123")
+                    .setSignUpDate(new Date())
+                    .setRole(User.Role.USER));
+        final User user = usersAgent.getUser(username);
+        final User voter = usersAgent.getUser(voterUsername);
+        for (Long albumId : UserDeletionAgentIT.ALBUM_IDS) {
+            reviewsAgent.createReview(new Review()
+                    .setReviewer(user)
+                    .setReviewedAlbumId(albumId)
+                    .setContent("content")
+                    .setRating(7)
+                    .setPublicationDate(new Date()));
+            reviewsAgent.createVote(new Vote()
+                    .setVoter(voter)
+                    .setReview(reviewsAgent.getReview(username, albumId))
+                    .setValue(true));
+            catalogAgent.createBacklogEntry(new BacklogEntry()
+                    .setUser(user)
+                    .setAlbumId(albumId)
+                    .setInsertionTime(new Date()));
+        }
+        reviewsAgent.createReview(new Review()
+                .setReviewer(voter)
+                .setReviewedAlbumId(UserDeletionAgentIT.ALBUM_IDS[0])
+                .setContent("content")
+                .setRating(5)
+                .setPublicationDate(new Date()));
+        reviewsAgent.createVote(new Vote()
+                .setVoter(user)
+                .setReview(reviewsAgent.getReview(voterUsername, UserDeletionAgentIT.ALBUM_IDS[0]))
+                .setValue(true));
+    }
+
+}
@@ -0,0 +1,144 @@
+package storage;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import javax.transaction.UserTransaction;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+@RunWith(Arquillian.class)
+public class ReplicaRoutingDataSourceIT {
+
+    private static final String ROUTING_DATA_SOURCE = "openejb:Resource/jdbc/soundrateRoutingDataSourceTest";
+    private static final String USER_TRANSACTION = "java:comp/UserTransaction";
+    private static final String PRIMARY_URL = "jdbc:hsqldb:mem:soundratePrimary";
+    private static final String REPLICA_URL = "jdbc:hsqldb:mem:soundrateReplica";
+    private static final String CREATE_HEARTBEAT_TABLE =
+            "CREATE TABLE replica_heartbeat (id INTEGER PRIMARY KEY, beat BIGINT NOT NULL)";
+
+    @Deployment
+    public static Archive<?> createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addClass(ReplicaRoutingDataSource.class)
+                .addAsResource("META-INF/replica-resources.xml", "META-INF/resources.xml");
+    }
+
+    @BeforeClass
+    public static void createHeartbeatTables() throws SQLException {
+        for (String url : new String[]{ReplicaRoutingDataSourceIT.PRIMARY_URL, ReplicaRoutingDataSourceIT.REPLICA_URL})
+            try (Connection connection = DriverManager.getConnection(url, "SA", "");
+                 Statement statement = connection.createStatement()) {
+                statement.executeUpdate(ReplicaRoutingDataSourceIT.CREATE_HEARTBEAT_TABLE);
+            }
+    }
+
+    @Test
+    public void shouldRouteCallsToPrimary() throws NamingException, SQLException {
+        final ReplicaRoutingDataSource dataSource = ReplicaRoutingDataSourceIT.getRoutingDataSource();
+        ReplicaRoutingDataSourceIT.catchUpReplica(dataSource);
+        Assert.assertEquals(ReplicaRoutingDataSourceIT.PRIMARY_URL, ReplicaRoutingDataSourceIT.getUrl(dataSource));
+    }
+
+    @Test
+    public void shouldRouteReadOnlyCallsToReplica() throws Exception {
+        final ReplicaRoutingDataSource dataSource = ReplicaRoutingDataSourceIT.getRoutingDataSource();
+        ReplicaRoutingDataSourceIT.catchUpReplica(dataSource);
+        Assert.assertEquals(ReplicaRoutingDataSourceIT.REPLICA_URL,
+                ReplicaRoutingDataSource.callReadOnly(() -> ReplicaRoutingDataSourceIT.getUrl(dataSource)));
+    }
+
+    @Test
+    public void shouldRouteReadOnlyCallsWithinTransactionsToPrimary() throws Exception {
+        final ReplicaRoutingDataSource dataSource = ReplicaRoutingDataSourceIT.getRoutingDataSource();
+        ReplicaRoutingDataSourceIT.catchUpReplica(dataSource);
+        final UserTransaction transaction =
+                (UserTransaction) new InitialContext().lookup(ReplicaRoutingDataSourceIT.USER_TRANSACTION);
+        transaction.begin();
+        try {
+            Assert.assertEquals(ReplicaRoutingDataSourceIT.PRIMARY_URL,
+                    ReplicaRoutingDataSource.callReadOnly(() -> ReplicaRoutingDataSourceIT.getUrl(dataSource)));
+        } finally {
+            transaction.commit();
+        }
+    }
+
+    @Test
+    public void shouldRouteReadOnlyCallsToPrimaryUntilReplicaCatchesUp() throws Exception {
+        final ReplicaRoutingDataSource dataSource = ReplicaRoutingDataSourceIT.getRoutingDataSource();
+        ReplicaRoutingDataSourceIT.catchUpReplica(dataSource);
+        final UserTransaction transaction =
+                (UserTransaction) new InitialContext().lookup(ReplicaRoutingDataSourceIT.USER_TRANSACTION);
+        transaction.begin();
+        ReplicaRoutingDataSourceIT.getUrl(dataSource);
+        transaction.commit();
+        Assert.assertEquals(ReplicaRoutingDataSourceIT.PRIMARY_URL,
+                ReplicaRoutingDataSource.callReadOnly(() -> ReplicaRoutingDataSourceIT.getUrl(dataSource)));
+        ReplicaRoutingDataSourceIT.catchUpReplica(dataSource);
+        Assert.assertEquals(ReplicaRoutingDataSourceIT.REPLICA_URL,
+                ReplicaRoutingDataSource.callReadOnly(() -> ReplicaRoutingDataSourceIT.getUrl(dataSource)));
+    }
+
+    @Test
+    public void shouldRouteReadOnlyCallsToPrimaryWhenReplicaLags() throws Exception {
+        final ReplicaRoutingDataSource dataSource = ReplicaRoutingDataSourceIT.getRoutingDataSource();
+        ReplicaRoutingDataSourceIT.catchUpReplica(dataSource);
+        ReplicaRoutingDataSourceIT.replicate(System.currentTimeMillis() - 120_000);
+        dataSource.probeReplica();
+        Assert.assertEquals(ReplicaRoutingDataSourceIT.PRIMARY_URL,
+                ReplicaRoutingDataSource.callReadOnly(() -> ReplicaRoutingDataSourceIT.getUrl(dataSource)));
+    }
+
+    private static ReplicaRoutingDataSource getRoutingDataSource() throws NamingException, SQLException {
+        return ((DataSource) new InitialContext().lookup(ReplicaRoutingDataSourceIT.ROUTING_DATA_SOURCE))
+                .unwrap(ReplicaRoutingDataSource.class);
+    }
+
+    private static String getUrl(final DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+
+    // writes a heartbeat on the primary, a millisecond later than any commit, and replicates it
+    private static void catchUpReplica(final ReplicaRoutingDataSource dataSource) throws SQLException {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dataSource.writeHeartbeat();
+        try (Connection connection = DriverManager.getConnection(ReplicaRoutingDataSourceIT.PRIMARY_URL, "SA", "");
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT beat FROM replica_heartbeat WHERE id = 1")) {
+            resultSet.next();
+            ReplicaRoutingDataSourceIT.replicate(resultSet.getLong(1));
+        }
+        dataSource.probeReplica();
+    }
+
+    private static void replicate(final long beat) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(ReplicaRoutingDataSourceIT.REPLICA_URL, "SA", "");
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM replica_heartbeat");
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO replica_heartbeat VALUES (1, ?)")) {
+            delete.executeUpdate();
+            insert.setLong(1, beat);
+            insert.executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package storage;
+
+import application.entities.Report;
+import application.entities.Review;
+import application.entities.SchemaMigration;
+import application.entities.Vote;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.enterprise.inject.spi.CDI;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+@RunWith(Arquillian.class)
+public class SchemaMigratorIT {
+
+    private static final String DATA_SOURCE = "openejb:Resource/jdbc/soundrateDataSourceTest";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Deployment
+    public static Archive<?> createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addClass(SchemaMigrator.class)
+                .addPackages(true, "application.entities")
+                .addAsResource("db/migrations", "db/migrations")
+                .addAsResource(EmptyAsset.INSTANCE, "META-INF/beans.xml")
+                .addAsResource("META-INF/persistence.xml", "META-INF/persistence.xml")
+                .addAsResource("META-INF/resources.xml", "META-INF/resources.xml");
+    }
+
+    // the migrations start from a database predating them, with the baseline tables only and some rows to backfill
+    @BeforeClass
+    public static void migrate() throws IOException, NamingException, SQLException {
+        SchemaMigratorIT.execute(Collections.singletonList("DROP SCHEMA PUBLIC CASCADE"));
+        SchemaMigratorIT.execute(SchemaMigratorIT.readStatements("db/migrations/V2__create_baseline_schema.sql"));
+        SchemaMigratorIT.execute(Arrays.asList(
+                "INSERT INTO user VALUES ('reviewer', 'reviewer@soundrate.com', 'password'," +
+                        " TIMESTAMP '2020-01-01 00:00:00', NULL, 'USER')",
+                "INSERT INTO user VALUES ('upvoter', 'upvoter@soundrate.com', 'password'," +
+                        " TIMESTAMP '2020-01-01 00:00:00', NULL, 'USER')",
+                "INSERT INTO user VALUES ('downvoter', 'downvoter@soundrate.com', 'password'," +
+                        " TIMESTAMP '2020-01-01 00:00:00', NULL, 'USER')",
+                "INSERT INTO review VALUES ('reviewer', 1, 'content', 8, TIMESTAMP '2020-01-02 00:00:00')",
+                "INSERT INTO vote VALUES ('upvoter', 'reviewer', 1, 1)",
+                "INSERT INTO vote VALUES ('downvoter', 'reviewer', 1, -1)",
+                "INSERT INTO report VALUES ('upvoter', 'reviewer', 1)",
+                "INSERT INTO report VALUES ('downvoter', 'reviewer', 1)"));
+        CDI.current().select(SchemaMigrator.class).get().migrate();
+    }
+
+    @Test
+    public void shouldNotReapplyMigrations() throws IOException {
+        final SchemaMigrator schemaMigrator = CDI.current().select(SchemaMigrator.class).get();
+        final List<SchemaMigration> appliedMigrations = schemaMigrator.getAppliedMigrations();
+        Assert.assertFalse(appliedMigrations.isEmpty());
+        Assert.assertEquals(0, schemaMigrator.migrate());
+        Assert.assertEquals(appliedMigrations, schemaMigrator.getAppliedMigrations());
+    }
+
+    @Test
+    public void shouldRecordBaselineWithoutRunningIt() {
+        final List<SchemaMigration> appliedMigrations =
+                CDI.current().select(SchemaMigrator.class).get().getAppliedMigrations();
+        Assert.assertTrue(appliedMigrations.stream().anyMatch(migration -> migration.getVersion() == 2));
+        Assert.assertTrue(appliedMigrations.stream().anyMatch(migration -> migration.getVersion() == 3));
+    }
+
+    @Test
+    public void shouldBackfillReviewsAggregates() throws NamingException, SQLException {
+        final DataSource dataSource = (DataSource) new InitialContext().lookup(SchemaMigratorIT.DATA_SOURCE);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT upvotesCount, downvotesCount, score, reportsCount," +
+                     " reviewedArtistId FROM review WHERE reviewerUsername = 'reviewer' AND reviewedAlbumId = 1")) {
+            Assert.assertTrue(resultSet.next());
+            Assert.assertEquals(1, resultSet.getInt(1));
+            Assert.assertEquals(1, resultSet.getInt(2));
+            Assert.assertEquals(0, resultSet.getInt(3));
+            Assert.assertEquals(2, resultSet.getInt(4));
+            resultSet.getLong(5);
+            Assert.assertTrue(resultSet.wasNull());
+        }
+    }
+
+    /*
+     *  Query plans tests
+     */
+
+    @Test
+    public void shouldUseIndexForAlbumReviews() throws NamingException, SQLException {
+        Assert.assertTrue(this.explain(
+                this.entityManager.createNamedQuery(Review.FIND_BY_REVIEWED_ALBUM_ID),
+                Collections.singletonMap("reviewedAlbumId", 1L))
+                .contains("REVIEW_REVIEWEDALBUMID_SCORE"));
+    }
+
+    @Test
+    public void shouldUseIndexForArtistReviews() throws NamingException, SQLException {
+        Assert.assertTrue(this.explain(
+                this.entityManager.createNamedQuery(Review.FIND_ALBUMS_STATISTICS_BY_ARTIST_IDS),
+                Collections.singletonMap("groupIds", Collections.singletonList(1L)))
+                .contains("REVIEW_REVIEWEDARTISTID"));
+    }
+
+    @Test
+    public void shouldUseIndexForReportedReviews() throws NamingException, SQLException {
+        Assert.assertTrue(this.explain(
+                this.entityManager.createNamedQuery(Review.FIND_REPORTED),
+                Collections.emptyMap())
+                .contains("REVIEW_REPORTSCOUNT"));
+    }
+
+    @Test
+    public void shouldUseIndexForReviewVotes() throws NamingException, SQLException {
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("reviewerUsername", "user");
+        parameters.put("reviewedAlbumId", 1L);
+        Assert.assertTrue(this.explain(this.entityManager.createNamedQuery(Vote.FIND_BY_REVIEW), parameters)
+                .contains("VOTE_REVIEW_VOTERUSERNAME"));
+    }
+
+    @Test
+    public void shouldUseIndexForReviewReports() throws NamingException, SQLException {
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("reviewerUsername", "user");
+        parameters.put("reviewedAlbumId", 1L);
+        Assert.assertTrue(this.explain(this.entityManager.createNamedQuery(Report.FIND_BY_REVIEW), parameters)
+                .contains("REPORT_REVIEW_REPORTERUSERNAME"));
+    }
+
+    // plan of the SQL that OpenJPA generates for the query, the parameters being inlined as literals
+    private String explain(final Query query, final Map<String, ?> parameters) throws NamingException, SQLException {
+        final String[] statements = query.unwrap(OpenJPAQuery.class).getDataStoreActions(parameters);
+        Assert.assertEquals(1, statements.length);
+        return SchemaMigratorIT.explain(statements[0]);
+    }
+
+    private static void execute(final List<String> statements) throws NamingException, SQLException {
+        final DataSource dataSource = (DataSource) new InitialContext().lookup(SchemaMigratorIT.DATA_SOURCE);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements)
+                statement.execute(sql);
+        }
+    }
+
+    // statements of the resource, separated by semicolons, the comment lines starting with two dashes
+    private static List<String> readStatements(final String resource) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SchemaMigratorIT.class.getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+            return Arrays.stream(reader.lines()
+                    .filter(line -> !line.trim().startsWith("--"))
+                    .collect(Collectors.joining("\n"))
+                    .split(";"))
+                    .map(String::trim)
+                    .filter(statement -> !statement.isEmpty())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // plan of the query as described by HSQLDB, upper case unquoted index names included
+    private static String explain(final String query) throws NamingException, SQLException {
+        final DataSource dataSource = (DataSource) new InitialContext().lookup(SchemaMigratorIT.DATA_SOURCE);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN PLAN FOR " + query)) {
+            final StringJoiner plan = new StringJoiner("\n");
+            while (resultSet.next())
+                plan.add(resultSet.getString(1));
+            return plan.toString();
+        }
+    }
+
+}